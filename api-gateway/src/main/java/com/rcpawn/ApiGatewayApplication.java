@@ -3,10 +3,12 @@ package com.rcpawn;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 // 👇 加上 exclude 参数，告诉它：我有数据库的包，但我不用，别给我自动配置！
 @SpringBootApplication(exclude = {DataSourceAutoConfiguration.class})
+@EnableScheduling // 开启定时任务 (指标批量刷写等)
 public class ApiGatewayApplication {
 
     public static void main(String[] args) {
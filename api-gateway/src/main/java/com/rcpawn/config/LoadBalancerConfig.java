@@ -0,0 +1,16 @@
+package com.rcpawn.config;
+
+import com.rcpawn.gateway.loadbalance.EwmaLoadBalancerConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 负载均衡策略
+ * 默认所有 lb:// 服务使用延迟感知的 EwmaLoadBalancer；gateway.loadbalancer.strategy=round-robin 时回退到 Spring Cloud 默认轮询
+ */
+@Configuration
+@ConditionalOnProperty(name = "gateway.loadbalancer.strategy", havingValue = "ewma", matchIfMissing = true)
+@LoadBalancerClients(defaultConfiguration = EwmaLoadBalancerConfiguration.class)
+public class LoadBalancerConfig {
+}
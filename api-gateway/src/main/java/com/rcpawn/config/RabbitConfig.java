@@ -1,5 +1,7 @@
 package com.rcpawn.config;
 
+import com.rcpawn.common.util.GatewayLogBatchCodec;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
@@ -14,4 +16,10 @@ public class RabbitConfig {
     public MessageConverter messageConverter() {
         return new Jackson2JsonMessageConverter();
     }
-}
\ No newline at end of file
+
+    // 访问日志批量队列 (与 service-log 声明一致，谁先连上谁创建)
+    @Bean
+    public Queue logBatchQueue() {
+        return new Queue(GatewayLogBatchCodec.QUEUE, true);
+    }
+}
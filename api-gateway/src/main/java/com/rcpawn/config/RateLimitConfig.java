@@ -7,8 +7,12 @@ import org.springframework.context.annotation.Primary; // 导入这个包
 import reactor.core.publisher.Mono;
 import java.util.Objects;
 
-// 拥抱 sentinel 暂时不用这个文件
-//@Configuration
+/**
+ * 限流 Key 解析器
+ * 供 RequestRateLimiter (默认使用 HybridRateLimiter 集群限流) 按路由选择：key-resolver: "#{@ipKeyResolver}"
+ * Sentinel 网关流控规则继续作为单节点兜底保护
+ */
+@Configuration
 public class RateLimitConfig {
 
     /**
@@ -32,4 +36,18 @@ public class RateLimitConfig {
                 Objects.requireNonNull(exchange.getRequest().getRemoteAddress()).getAddress().getHostAddress()
         );
     }
+
+    /**
+     * 按用户限流 (X-User-Id 由 CoreGlobalFilter 鉴权通过后写入，未登录请求退化为按 IP)
+     */
+    @Bean
+    public KeyResolver userKeyResolver() {
+        return exchange -> {
+            String userId = exchange.getRequest().getHeaders().getFirst("X-User-Id");
+            if (userId != null) {
+                return Mono.just("user:" + userId);
+            }
+            return Mono.just("ip:" + Objects.requireNonNull(exchange.getRequest().getRemoteAddress()).getAddress().getHostAddress());
+        };
+    }
 }
\ No newline at end of file
@@ -2,13 +2,11 @@ package com.rcpawn.config;
 
 import com.alibaba.csp.sentinel.adapter.gateway.sc.callback.GatewayCallbackManager;
 import com.alibaba.csp.sentinel.slots.block.degrade.DegradeException;
+import com.rcpawn.gateway.response.RejectionResponse;
 import com.rcpawn.util.LogBuffer;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.MediaType;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.server.ServerResponse;
 
 import java.util.Objects;
 
@@ -37,10 +35,9 @@ public class SentinelConfig {
             // 2. 【新增】打上标记
             exchange.getAttributes().put(LogBuffer.LOG_ALREADY_HANDLED, true);
 
-            // 返回自定义的 JSON 响应
-            return ServerResponse.status(429)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue("{\"code\":429, \"msg\":\"" + msg + "\"}"));
+            // 返回预编码的 JSON 响应 (路径只记录在日志里，不拼进响应体)
+            RejectionResponse rejection = "FUSE".equals(type) ? RejectionResponse.DEGRADED : RejectionResponse.FLOW_LIMITED;
+            return rejection.toServerResponse();
         });
     }
 }
\ No newline at end of file
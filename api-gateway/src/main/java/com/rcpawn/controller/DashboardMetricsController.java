@@ -2,19 +2,34 @@ package com.rcpawn.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rcpawn.common.util.Result;
+import com.rcpawn.filter.AdaptiveConcurrencyFilter;
+import com.rcpawn.gateway.cache.ResponseCacheStore;
+import com.rcpawn.gateway.loadbalance.InstanceStatsRegistry;
+import com.rcpawn.gateway.metrics.DashboardMetricsPublisher;
+import com.rcpawn.gateway.metrics.LatencyHistogram;
+import com.rcpawn.gateway.metrics.MetricsAggregator;
+import com.rcpawn.gateway.upstream.UpstreamPoolRegistry;
 import com.rcpawn.service.SkyWalkingService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.text.DecimalFormat;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+@Slf4j
 @RestController
 @RequestMapping("/dashboard/metrics")
 public class DashboardMetricsController {
@@ -23,94 +38,181 @@ public class DashboardMetricsController {
     private StringRedisTemplate redisTemplate;
     @Autowired
     private SkyWalkingService skyWalkingService;
+    @Autowired
+    private DashboardMetricsPublisher metricsPublisher;
+    @Autowired
+    private AdaptiveConcurrencyFilter concurrencyFilter;
+    @Autowired
+    private ResponseCacheStore responseCacheStore;
+    @Autowired
+    private InstanceStatsRegistry instanceStatsRegistry;
+    @Autowired
+    private UpstreamPoolRegistry upstreamPoolRegistry;
 
-    private static final String KEY_METRICS_PREFIX = "gateway:metrics:";
-    private static final String KEY_ROUTE_RANK = "gateway:metrics:routes:rank";
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("HHmm");
+    // 直方图 Key 只保留 5 分钟
+    private static final int MAX_LATENCY_MINUTES = 5;
 
+    /**
+     * 服务拓扑：带上次收到的 version 时只返回变化的节点和连线
+     */
     @GetMapping("/topology")
-    public Result<Map<String, Object>> getTopology() {
-        return Result.success(skyWalkingService.getTopology());
+    public Mono<Result<Map<String, Object>>> getTopology(@RequestParam(required = false) String since) {
+        return skyWalkingService.getTopology(since).map(Result::success);
     }
 
-    @GetMapping("/realtime")
-    public Result<Map<String, Object>> getRealtimeMetrics() {
-        Map<String, Object> data = new HashMap<>();
-        LocalDateTime now = LocalDateTime.now();
+    /**
+     * 本节点各路由的自适应并发上限、在途请求数与 RTT
+     */
+    @GetMapping("/concurrency")
+    public Result<List<Map<String, Object>>> getConcurrencyLimits() {
+        return Result.success(concurrencyFilter.snapshot());
+    }
 
-        try {
-            // ===== 1. 获取实时 QPS (最近 5 秒平均) =====
-            // 这里用秒级 Key
-            int qps = 0;
-            for (int i = 0; i < 5; i++) {
-                String second = now.minusSeconds(i).format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-                String val = redisTemplate.opsForValue().get(KEY_METRICS_PREFIX + "qps:" + second);
-                if (val != null) qps += Integer.parseInt(val);
-            }
-            qps = qps / 5; // 取平均，避免波动太大
+    /**
+     * 本节点响应缓存的各路由命中率与堆内/堆外内存占用
+     */
+    @GetMapping("/cache")
+    public Result<Map<String, Object>> getCacheStats() {
+        return Result.success(responseCacheStore.snapshot());
+    }
 
-            // ===== 2. 获取延迟和错误率 (取当前分钟的数据) =====
-            // 这里用分钟级 Key (HHmm)
-            String timeWindow = now.format(DateTimeFormatter.ofPattern("HHmm"));
+    /**
+     * 本节点各上游实例的熔断状态、窗口内失败率/慢调用率与负载
+     */
+    @GetMapping("/breakers")
+    public Result<List<Map<String, Object>>> getBreakers() {
+        return Result.success(instanceStatsRegistry.snapshot());
+    }
 
-            // 获取总请求数
-            String reqCountStr = redisTemplate.opsForValue().get(KEY_METRICS_PREFIX + "req_count:" + timeWindow);
-            long totalReq = reqCountStr == null ? 0 : Long.parseLong(reqCountStr);
+    /**
+     * 本节点各上游连接池的活跃/空闲/排队连接数与获取连接耗时
+     */
+    @GetMapping("/pools")
+    public Result<List<Map<String, Object>>> getUpstreamPools() {
+        return Result.success(upstreamPoolRegistry.snapshot());
+    }
 
-            long avgLatency = 0;
-            double errorRateVal = 0.0;
+    /**
+     * 实时指标 (兼容轮询)：返回推送任务生成的最近快照，一个推送周期内的重复请求不会再读 Redis
+     */
+    @GetMapping("/realtime")
+    public Mono<Result<Map<String, Object>>> getRealtimeMetrics() {
+        // 快照过期时需要同步读 Redis，放到弹性线程池，不占用 Netty IO 线程
+        return Mono.fromCallable(() -> Result.success(metricsPublisher.latest()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error("获取监控数据失败", e);
+                    return Mono.just(Result.error("获取监控数据失败"));
+                });
+    }
 
-            if (totalReq > 0) {
-                // 计算平均延迟
-                String latencySumStr = redisTemplate.opsForValue().get(KEY_METRICS_PREFIX + "latency_sum:" + timeWindow);
-                long totalLatency = latencySumStr == null ? 0 : Long.parseLong(latencySumStr);
-                avgLatency = totalLatency / totalReq;
+    /**
+     * 实时指标推送 (SSE)：所有订阅者共享同一份快照，连接建立后立即收到最近一份
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamMetrics() {
+        return metricsPublisher.stream()
+                .map(snapshot -> ServerSentEvent.<Map<String, Object>>builder()
+                        .event("metrics")
+                        .data(snapshot)
+                        .build());
+    }
 
-                // 计算错误率
-                String errorCountStr = redisTemplate.opsForValue().get(KEY_METRICS_PREFIX + "error_count:" + timeWindow);
-                long totalError = errorCountStr == null ? 0 : Long.parseLong(errorCountStr);
-                errorRateVal = (double) totalError / totalReq * 100;
-            }
+    /**
+     * 按路由、按分钟窗口返回延迟分位数 (p50/p95/p99/p999)
+     * 数据来自各网关节点合并后的直方图，route 为空时返回该分钟内所有路由
+     */
+    @GetMapping("/latency")
+    public Mono<Result<List<Map<String, Object>>>> getLatencyPercentiles(
+            @RequestParam(defaultValue = "1") int minutes,
+            @RequestParam(required = false) String route) {
+        // 同步读 Redis，放到弹性线程池，不占用 Netty IO 线程
+        return Mono.fromCallable(() -> Result.success(readLatencyWindows(minutes, route)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error("获取延迟分位数失败", e);
+                    return Mono.just(Result.error("获取延迟分位数失败"));
+                });
+    }
 
-            // 格式化错误率 (保留2位小数)
-            DecimalFormat df = new DecimalFormat("0.00");
-            String errorRateStr = df.format(errorRateVal) + "%";
+    /**
+     * 最多两次 Pipeline：先取各分钟有数据的路由，再一次取回所有 (分钟, 路由) 的直方图
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> readLatencyWindows(int minutes, String route) {
+        LocalDateTime now = LocalDateTime.now();
+        int windowCount = Math.max(1, Math.min(minutes, MAX_LATENCY_MINUTES));
+        List<String> timeWindows = new ArrayList<>();
+        for (int i = 0; i < windowCount; i++) {
+            timeWindows.add(now.minusMinutes(i).format(MINUTE_FORMATTER));
+        }
 
-            // ===== 3. 获取 Top 路由 =====
-            Set<ZSetOperations.TypedTuple<String>> topRoutes = redisTemplate.opsForZSet()
-                    .reverseRangeWithScores(KEY_ROUTE_RANK, 0, 9);
-            List<Map<String, Object>> routeList = new ArrayList<>();
-            if (topRoutes != null && !topRoutes.isEmpty()) {
-                double maxScore = topRoutes.iterator().next().getScore();
-                if (maxScore == 0) maxScore = 1;
-                for (ZSetOperations.TypedTuple<String> tuple : topRoutes) {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("name", tuple.getValue());
-                    map.put("count", tuple.getScore().intValue());
-                    map.put("percent", (int)((tuple.getScore() / maxScore) * 100));
-                    routeList.add(map);
+        // 1. 找到每分钟有数据的路由
+        List<List<String>> routeIds = new ArrayList<>();
+        if (route != null) {
+            timeWindows.forEach(timeWindow -> routeIds.add(Collections.singletonList(route)));
+        } else {
+            List<Object> members = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String timeWindow : timeWindows) {
+                    connection.setCommands().sMembers(bytes(MetricsAggregator.KEY_LATENCY_ROUTES_PREFIX + timeWindow));
                 }
+                return null;
+            });
+            for (Object ids : members) {
+                routeIds.add(ids != null ? new ArrayList<>((Set<String>) ids) : Collections.emptyList());
             }
+        }
 
-            // 组装数据
-            data.put("qps", qps);
-            data.put("latency", avgLatency); // 返回 long 类型
-            data.put("errorRate", errorRateStr); // 返回 String 类型 "0.00%"
-            data.put("topRoutes", routeList);
+        // 2. 一次取回所有路由的直方图
+        List<Object> hashes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < timeWindows.size(); i++) {
+                for (String routeId : routeIds.get(i)) {
+                    connection.hashCommands().hGetAll(bytes(MetricsAggregator.KEY_LATENCY_HIST_PREFIX + timeWindows.get(i) + ":" + routeId));
+                }
+            }
+            return null;
+        });
+
+        // 3. 按路由计算分位数
+        List<Map<String, Object>> windows = new ArrayList<>();
+        int next = 0;
+        for (int i = 0; i < timeWindows.size(); i++) {
+            List<Map<String, Object>> routeList = new ArrayList<>();
+            for (String routeId : routeIds.get(i)) {
+                LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+                snapshot.merge((Map<Object, Object>) hashes.get(next++));
+                if (snapshot.getTotal() == 0) continue;
+
+                Map<String, Object> map = new HashMap<>();
+                map.put("route", routeId);
+                map.put("count", snapshot.getTotal());
+                map.put("p50", snapshot.percentile(0.50));
+                map.put("p95", snapshot.percentile(0.95));
+                map.put("p99", snapshot.percentile(0.99));
+                map.put("p999", snapshot.percentile(0.999));
+                map.put("max", snapshot.max());
+                routeList.add(map);
+            }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return Result.error("获取监控数据失败");
+            Map<String, Object> window = new HashMap<>();
+            window.put("window", timeWindows.get(i));
+            window.put("routes", routeList);
+            windows.add(window);
         }
+        return windows;
+    }
 
-        return Result.success(data);
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
     }
 
     @GetMapping("/logs")
-    public Result<List<Map<String, String>>> getRecentLogs() {
+    public Result<List<Map<String, Object>>> getRecentLogs() {
         // 从 Redis 取出最近 20 条
         List<String> logs = redisTemplate.opsForList().range("gateway:dashboard:logs", 0, 19);
 
-        List<Map<String, String>> result = new ArrayList<>();
+        List<Map<String, Object>> result = new ArrayList<>();
         ObjectMapper mapper = new ObjectMapper();
 
         if (logs != null) {
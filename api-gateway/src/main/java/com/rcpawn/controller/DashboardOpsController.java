@@ -2,10 +2,13 @@ package com.rcpawn.controller;
 
 import com.rcpawn.common.util.Result;
 import com.rcpawn.filter.WafFilter;
+import com.rcpawn.gateway.waf.CidrTrie;
+import com.rcpawn.gateway.waf.WafRuleManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -41,6 +44,30 @@ public class DashboardOpsController { // 建议拆分一个新 Controller，或
         }
     }
 
+    // 2.1 WAF: 黑名单新增 (CIDR 或单个 IP)，各节点在下一个轮询周期重建前缀树
+    @PostMapping("/waf/blacklist")
+    public Result<String> addBlacklist(@RequestParam String cidr) {
+        try {
+            CidrTrie.parse(cidr);
+        } catch (IllegalArgumentException e) {
+            return Result.error(e.getMessage());
+        }
+        redisTemplate.opsForSet().add(WafRuleManager.WAF_BLACKLIST_KEY, cidr.trim());
+        redisTemplate.opsForValue().increment(WafRuleManager.WAF_VERSION_KEY);
+        return Result.success("已加入黑名单: " + cidr.trim());
+    }
+
+    // 2.2 WAF: 黑名单移除
+    @DeleteMapping("/waf/blacklist")
+    public Result<String> removeBlacklist(@RequestParam String cidr) {
+        Long removed = redisTemplate.opsForSet().remove(WafRuleManager.WAF_BLACKLIST_KEY, cidr.trim());
+        if (removed == null || removed == 0) {
+            return Result.error("黑名单中不存在: " + cidr.trim());
+        }
+        redisTemplate.opsForValue().increment(WafRuleManager.WAF_VERSION_KEY);
+        return Result.success("已移出黑名单: " + cidr.trim());
+    }
+
     // 3. SAMPLE: 开启 60秒 日志采样
     @PostMapping("/sample")
     public Result<String> startSampling() {
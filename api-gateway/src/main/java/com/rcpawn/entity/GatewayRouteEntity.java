@@ -16,6 +16,10 @@ public class GatewayRouteEntity {
     private int order;
     private List<PredicateEntity> predicates = new ArrayList<>();
     private List<FilterEntity> filters = new ArrayList<>();
+    // 对冲请求配置，为空表示不对冲 (加载时转换为 Hedge 过滤器追加到 filters 末尾)
+    private HedgeEntity hedge;
+    // 上游连接池配置，为空的字段使用 gateway.upstream.pool 默认值 (加载时转换为 metadata.upstream-pool)
+    private PoolEntity pool;
 
     // ================= 内部类结构 =================
     @Data
@@ -29,4 +33,27 @@ public class GatewayRouteEntity {
         private String name;
         private Map<String, String> args = new LinkedHashMap<>();
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class HedgeEntity {
+        // 对冲延迟取路由耗时的哪个分位数
+        private double percentile = 0.95;
+        // 对冲延迟下限
+        private long minDelayMs = 10;
+        // 对冲请求占正常请求的比例上限
+        private double budgetRatio = 0.1;
+    }
+
+    @Data
+    public static class PoolEntity {
+        // 连接池名，相同名称的路由共享连接池；为空时按上游服务共享
+        private String name;
+        private Integer maxConnections;
+        private Integer pendingAcquireMaxCount;
+        private Long pendingAcquireTimeoutMs;
+        private Long maxIdleTimeMs;
+        private Long maxLifeTimeMs;
+        // 是否以 h2c 连接上游
+        private Boolean h2c;
+    }
+}
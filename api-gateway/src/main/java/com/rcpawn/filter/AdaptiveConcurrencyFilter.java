@@ -0,0 +1,150 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.gateway.concurrency.GradientLimiter;
+import com.rcpawn.gateway.response.RejectionResponse;
+import com.rcpawn.util.LogBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按路由的自适应并发限制
+ * 核心逻辑：转发前占用路由的在途名额 -> 已满直接返回 503 -> 上游响应写完后释放名额并上报 RTT -> GradientLimiter 根据 RTT 变化调整上限
+ * 1. 不需要为每个资源手工配置 QPS 阈值，上游扩缩容或变慢后上限自动跟随
+ * 2. 排在鉴权/WAF/防重放之后、负载均衡之前，被前面拦截的请求不占用名额
+ * 3. 当前上限、在途数、RTT 通过 /dashboard/metrics/concurrency 展示
+ * 4. 默认关闭；开启前确认 initial-limit 不低于路由平时的并发量，否则上限学起来之前会误拒请求
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyFilter implements GlobalFilter, Ordered {
+
+    // 因超过并发上限被拒绝 (请求没有发往上游)
+    public static final String CONCURRENCY_LIMITED_ATTR = AdaptiveConcurrencyFilter.class.getName() + ".limited";
+
+    @Autowired
+    private LogBuffer logBuffer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.concurrency.enabled:false}")
+    private boolean enabled;
+
+    @Value("${gateway.concurrency.initial-limit:200}")
+    private int initialLimit;
+
+    @Value("${gateway.concurrency.min-limit:4}")
+    private int minLimit;
+
+    @Value("${gateway.concurrency.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${gateway.concurrency.rtt-tolerance:1.5}")
+    private double rttTolerance;
+
+    @Value("${gateway.concurrency.smoothing:0.2}")
+    private double smoothing;
+
+    // routeId -> 限制器 (路由数量有限，不做淘汰)
+    private final Map<String, GradientLimiter> limiters = new ConcurrentHashMap<>();
+
+    private Counter shedCounter;
+
+    @PostConstruct
+    public void init() {
+        shedCounter = Counter.builder("gateway.concurrency.shed")
+                .description("超过自适应并发上限被 503 拒绝的请求数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!enabled || route == null) {
+            return chain.filter(exchange);
+        }
+
+        // 1. 占用名额，已满直接拒绝
+        GradientLimiter limiter = limiters.computeIfAbsent(route.getId(), this::createLimiter);
+        if (!limiter.tryAcquire()) {
+            shedCounter.increment();
+            InetSocketAddress remote = exchange.getRequest().getRemoteAddress();
+            String ip = remote != null ? remote.getAddress().getHostAddress() : "unknown";
+            logBuffer.record(ip, "SHED", "Concurrency Limit: " + route.getId());
+            exchange.getAttributes().put(LogBuffer.LOG_ALREADY_HANDLED, true);
+            exchange.getAttributes().put(CONCURRENCY_LIMITED_ATTR, Boolean.TRUE);
+            return RejectionResponse.CONCURRENCY_LIMITED.writeTo(exchange.getResponse());
+        }
+
+        // 2. 响应写完后释放名额并上报 RTT；出错 (连接失败、超时等) 和客户端取消的请求只释放名额，不作为样本
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL || signal == SignalType.ON_ERROR) {
+                        limiter.onIgnore();
+                    } else {
+                        limiter.onSuccess(System.nanoTime() - start);
+                    }
+                });
+    }
+
+    /**
+     * 各路由当前的并发上限 (Dashboard 展示)
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        limiters.forEach((routeId, limiter) -> {
+            Map<String, Object> map = new HashMap<>();
+            map.put("route", routeId);
+            map.put("limit", limiter.getLimit());
+            map.put("inflight", limiter.getInflight());
+            map.put("rtt", Math.round(limiter.getRttMillis() * 10) / 10.0);
+            map.put("baselineRtt", Math.round(limiter.getBaselineRttMillis() * 10) / 10.0);
+            map.put("rejected", limiter.getRejected());
+            result.add(map);
+        });
+        result.sort((a, b) -> ((String) a.get("route")).compareTo((String) b.get("route")));
+        return result;
+    }
+
+    private GradientLimiter createLimiter(String routeId) {
+        GradientLimiter limiter = new GradientLimiter(initialLimit, minLimit, maxLimit, rttTolerance, smoothing);
+        Gauge.builder("gateway.concurrency.limit", limiter, GradientLimiter::getLimit)
+                .tag("route", routeId)
+                .description("路由当前的自适应并发上限")
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.inflight", limiter, GradientLimiter::getInflight)
+                .tag("route", routeId)
+                .description("路由当前的在途请求数")
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    @Override
+    public int getOrder() {
+        // 负载均衡之前，RTT 覆盖选实例 + 转发 + 写回响应
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 50;
+    }
+}
@@ -1,30 +1,29 @@
 package com.rcpawn.filter;
 
-import com.rcpawn.common.util.JwtUtil;
+import com.rcpawn.gateway.auth.JwtTokenCache;
+import com.rcpawn.gateway.loadbalance.InstanceStatsRegistry;
+import com.rcpawn.gateway.metrics.MetricsAggregator;
+import com.rcpawn.gateway.response.RejectionResponse;
 import com.rcpawn.util.LogBuffer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.SignalType;
 
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Objects;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 修复版：回归高性能 Reactive Pipeline 模式
@@ -34,21 +33,22 @@ import java.util.concurrent.ThreadLocalRandom;
 public class CoreGlobalFilter implements GlobalFilter, Ordered {
 
     @Autowired
-    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private MetricsAggregator metricsAggregator;
 
     @Autowired
     private LogBuffer logBuffer;
 
-    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("HHmm");
-    private static final DateTimeFormatter SECOND_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    @Autowired
+    private JwtTokenCache jwtTokenCache;
+
+    @Autowired
+    private InstanceStatsRegistry instanceStatsRegistry;
 
-    private static final String KEY_ROUTE_RANK = "gateway:metrics:routes:rank";
-    private static final String KEY_METRICS_PREFIX = "gateway:metrics:";
     private static final String SW_HEADER = "sw8";
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         exchange.getAttributes().put("startTime", startTime);
 
         ServerHttpRequest request = exchange.getRequest();
@@ -58,12 +58,12 @@ public class CoreGlobalFilter implements GlobalFilter, Ordered {
         // 白名单放行
         if (isWhiteList(path)) {
             return chain.filter(exchange)
-                    .then(Mono.defer(() -> recordMetrics(exchange, startTime)));
+                    .doFinally(signal -> onComplete(exchange, startTime, signal));
         }
 
-        // JWT 鉴权
+        // JWT 鉴权 (优先命中本地校验缓存)
         String token = getToken(request);
-        String userId = (token != null) ? JwtUtil.getUserId(token) : null;
+        String userId = (token != null) ? jwtTokenCache.getUserId(token) : null;
 
         if (userId == null) {
             return handleAuthFail(exchange);
@@ -82,77 +82,66 @@ public class CoreGlobalFilter implements GlobalFilter, Ordered {
         }
 
         return chain.filter(exchange.mutate().request(requestBuilder.build()).build())
-                .then(Mono.defer(() -> recordMetrics(exchange, startTime)));
+                .doFinally(signal -> onComplete(exchange, startTime, signal));
+    }
+
+    /**
+     * 转发结束 (成功/出错/取消)：记录指标，并把本次耗时回报给负载均衡选中的实例
+     * 出错时响应码尚未写入，按 500 统计；取消的请求只释放实例的在途数
+     * 本地连接池耗尽的 503 计入路由指标，但请求没有到达实例，同样只释放在途数
+     * 对冲请求胜出时，实例耗时从它自己发出时算起 (路由指标仍按客户端看到的总耗时)
+     */
+    private void onComplete(ServerWebExchange exchange, long startTime, SignalType signal) {
+        Response<ServiceInstance> lbResponse = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (signal == SignalType.CANCEL) {
+            if (lbResponse != null && lbResponse.hasServer()) {
+                instanceStatsRegistry.onCancel(lbResponse.getServer());
+            }
+            return;
+        }
+
+        long durationNanos = recordMetrics(exchange, startTime);
+        if (lbResponse != null && lbResponse.hasServer() && exchange.getAttribute(PooledNettyRoutingFilter.POOL_EXHAUSTED_ATTR) != null) {
+            instanceStatsRegistry.onCancel(lbResponse.getServer());
+        } else if (lbResponse != null && lbResponse.hasServer()) {
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            boolean failure = signal == SignalType.ON_ERROR || status == null || status.is5xxServerError();
+            Long attemptStart = exchange.getAttribute(HedgeGatewayFilterFactory.ATTEMPT_START_ATTR);
+            long instanceNanos = attemptStart != null ? System.nanoTime() - attemptStart : durationNanos;
+            instanceStatsRegistry.onComplete(lbResponse.getServer(), instanceNanos, failure);
+        }
     }
 
     /**
-     * 使用 Reactive Pipeline 批量写入，避免 Lua 阻塞
+     * 指标只写入本地聚合器，由 MetricsAggregator 定时批量刷到 Redis
+     *
+     * @return 本次请求耗时 (纳秒)
      */
-    private Mono<Void> recordMetrics(ServerWebExchange exchange, long startTime) {
+    private long recordMetrics(ServerWebExchange exchange, long startTime) {
+        long durationNanos = System.nanoTime() - startTime;
         try {
-            long duration = System.currentTimeMillis() - startTime;
             ServerHttpResponse response = exchange.getResponse();
             int statusCode = response.getStatusCode() != null ? response.getStatusCode().value() : 500;
             boolean isError = statusCode >= 400;
 
-            LocalDateTime now = LocalDateTime.now();
-            String minuteWindow = now.format(MINUTE_FORMATTER);
-            String secondWindow = now.format(SECOND_FORMATTER);
-
-            String keyReq = KEY_METRICS_PREFIX + "req_count:" + minuteWindow;
-            String keyLat = KEY_METRICS_PREFIX + "latency_sum:" + minuteWindow;
-            String keyErr = KEY_METRICS_PREFIX + "error_count:" + minuteWindow;
-            String keyQps = KEY_METRICS_PREFIX + "qps:" + secondWindow;
-
-            Object routeObj = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
-            String routeId = (routeObj != null) ? ((org.springframework.cloud.gateway.route.Route) routeObj).getId() : null;
-
-            // 构建命令流 (Pipeline)
-            // 使用 Flux.merge 或 concat 将多个命令合并，Lettuce 会自动优化网络传输
-            return Flux.merge(
-                            // 1. 总请求 (带过期)
-                            reactiveRedisTemplate.opsForValue().increment(keyReq).flatMap(c -> c == 1 ? reactiveRedisTemplate.expire(keyReq, Duration.ofMinutes(5)) : Mono.empty()),
-
-                            // 2. 耗时
-                            reactiveRedisTemplate.opsForValue().increment(keyLat, duration).flatMap(c -> c == duration ? reactiveRedisTemplate.expire(keyLat, Duration.ofMinutes(5)) : Mono.empty()),
-
-                            // 3. QPS
-                            reactiveRedisTemplate.opsForValue().increment(keyQps).flatMap(c -> c == 1 ? reactiveRedisTemplate.expire(keyQps, Duration.ofMinutes(1)) : Mono.empty()),
-
-                            // 4. 错误 (条件执行)
-                            isError ? reactiveRedisTemplate.opsForValue().increment(keyErr).flatMap(c -> c == 1 ? reactiveRedisTemplate.expire(keyErr, Duration.ofMinutes(5)) : Mono.empty()) : Mono.empty(),
-
-                            // 5. 路由排行
-                            routeId != null ? reactiveRedisTemplate.opsForZSet().incrementScore(KEY_ROUTE_RANK, routeId, 1) : Mono.empty()
-                    )
-                    .then() // 等待所有操作完成
-                    .subscribeOn(Schedulers.boundedElastic()) // 依然保持异步调度，防止极少数情况下的阻塞
-                    .onErrorResume(e -> {
-                        log.error("Metrics write error", e);
-                        return Mono.empty();
-                    });
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            String routeId = (route != null) ? route.getId() : null;
 
+            metricsAggregator.record(routeId, TimeUnit.NANOSECONDS.toMillis(durationNanos), isError);
         } catch (Exception e) {
             log.error("Metrics logic error", e);
-            return Mono.empty();
         }
+        return durationNanos;
     }
 
     private Mono<Void> handleAuthFail(ServerWebExchange exchange) {
-        if (ThreadLocalRandom.current().nextInt(10) == 0) {
-            String ip = Objects.requireNonNull(exchange.getRequest().getRemoteAddress()).getAddress().getHostAddress();
-            logBuffer.record(ip, "AUTH", "Token Invalid");
-        }
-
-        ServerHttpResponse response = exchange.getResponse();
-        response.setStatusCode(HttpStatus.UNAUTHORIZED);
-        response.getHeaders().add("Content-Type", "application/json;charset=UTF-8");
-        String message = "{\"code\": 401, \"message\": \"非法访问\"}";
-        DataBuffer buffer = response.bufferFactory().wrap(message.getBytes(StandardCharsets.UTF_8));
+        // LogBuffer 本地合并计数，不再需要抽样
+        String ip = Objects.requireNonNull(exchange.getRequest().getRemoteAddress()).getAddress().getHostAddress();
+        logBuffer.record(ip, "AUTH", "Token Invalid");
 
         long startTime = (long) exchange.getAttributes().get("startTime");
-        return response.writeWith(Mono.just(buffer))
-                .then(Mono.defer(() -> recordMetrics(exchange, startTime)));
+        return RejectionResponse.UNAUTHORIZED.writeTo(exchange.getResponse())
+                .then(Mono.fromRunnable(() -> recordMetrics(exchange, startTime)));
     }
 
     private String getToken(ServerHttpRequest request) {
@@ -0,0 +1,452 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.gateway.hedge.HedgePolicy;
+import com.rcpawn.gateway.hedge.HedgeRegistry;
+import com.rcpawn.gateway.loadbalance.InstanceStatsRegistry;
+import com.rcpawn.gateway.response.RejectionResponse;
+import lombok.Data;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 路由级对冲请求 (只对冲幂等且不带请求体的请求)
+ * 核心逻辑：发出首个请求 -> 超过路由延迟分位数 (网关自己统计) 仍未返回响应头时，从预算扣一个令牌 -> 向另一个实例发出对冲请求 -> 先返回响应头的一方写给客户端，另一方取消
+ * 1. 每次尝试使用独立的 exchange 属性和响应头，负载均衡、NettyRoutingFilter 互不干扰；胜出方的属性合并回原 exchange，CoreGlobalFilter 照常回报耗时
+ *    (实例耗时从胜出那次尝试开始算，对冲请求胜出时不含等待对冲延迟的时间)
+ * 2. 对冲请求通过 EXCLUDED_INSTANCE_ATTR 避开首个请求选中的实例 (EwmaLoadBalancer 读取)
+ * 3. 预算按比例发放 (budgetRatio=0.1 表示额外请求不超过 10%)，上游整体变慢时不会把流量翻倍
+ * 4. 需要排在 ResponseCache/RequestCoalescing 之后；通过 GatewayRouteEntity.hedge 声明时会自动追加到 filters 末尾
+ * 5. 网关本地的拒绝 (连接池耗尽、并发超限) 不是上游的响应，另一方仍在进行时不能胜出，按失败等待另一方
+ *
+ * 路由配置示例 (Nacos 路由 JSON)：
+ * "hedge": {"percentile": 0.95, "minDelayMs": 10, "budgetRatio": 0.1}
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+    // 对冲请求不选用的实例
+    public static final String EXCLUDED_INSTANCE_ATTR = HedgeGatewayFilterFactory.class.getName() + ".excludedInstance";
+    // 本次尝试的开始时间 (System.nanoTime)，随胜出方的属性合并回原 exchange，CoreGlobalFilter 按它回报实例耗时
+    public static final String ATTEMPT_START_ATTR = HedgeGatewayFilterFactory.class.getName() + ".attemptStart";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+            HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+    @Autowired
+    private HedgeRegistry registry;
+
+    @Autowired
+    private InstanceStatsRegistry instanceStatsRegistry;
+
+    public HedgeGatewayFilterFactory() {
+        super(Config.class);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("percentile", "budgetRatio");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // 每次尝试都要经过 NettyWriteResponseFilter 写到各自的响应包装上
+        return new OrderedGatewayFilter((exchange, chain) -> filter(exchange, chain, config),
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        // 1. 非幂等或带请求体 (无法重放) 的请求不对冲
+        ServerHttpRequest request = exchange.getRequest();
+        HttpHeaders requestHeaders = request.getHeaders();
+        if (!IDEMPOTENT_METHODS.contains(request.getMethod()) || requestHeaders.getContentLength() > 0
+                || requestHeaders.containsKey(HttpHeaders.TRANSFER_ENCODING)) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : "unknown";
+
+        // 2. 存入预算，读取当前的对冲延迟 (样本不足时为 -1，只统计不对冲)
+        HedgePolicy policy = registry.policy(routeId, config.getPercentile(), config.getMinDelay().toMillis(), config.getBudgetRatio());
+        policy.deposit(registry.getMaxTokens());
+        return new HedgedCall(exchange, chain, routeId, policy).run(policy.getDelayMs());
+    }
+
+    /**
+     * 一个客户端请求的所有尝试 (首个请求 + 最多一个对冲请求)
+     */
+    private class HedgedCall {
+
+        private final ServerWebExchange exchange;
+        private final GatewayFilterChain chain;
+        private final String routeId;
+        private final HedgePolicy policy;
+        private final long startNanos = System.nanoTime();
+
+        private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+        private MonoSink<Void> sink;
+        private volatile Disposable hedgeTimer;
+        private volatile boolean budgetExhausted;
+        private volatile boolean cancelled;
+
+        HedgedCall(ServerWebExchange exchange, GatewayFilterChain chain, String routeId, HedgePolicy policy) {
+            this.exchange = exchange;
+            this.chain = chain;
+            this.routeId = routeId;
+            this.policy = policy;
+        }
+
+        Mono<Void> run(long delayMs) {
+            return Mono.create(sink -> {
+                this.sink = sink;
+                sink.onCancel(this::cancelAll);
+                Attempt primary = start(exchange.getRequest(), null);
+                if (delayMs >= 0) {
+                    hedgeTimer = Mono.delay(Duration.ofMillis(delayMs)).subscribe(t -> hedge(primary));
+                }
+            });
+        }
+
+        /**
+         * 到达对冲延迟仍没有响应：扣预算，向另一个实例发出对冲请求
+         */
+        private void hedge(Attempt primary) {
+            if (winner.get() != null || primary.done) {
+                return;
+            }
+            if (!policy.tryWithdraw()) {
+                budgetExhausted = true;
+                return;
+            }
+            Response<ServiceInstance> chosen = primary.exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            ServiceInstance excluded = chosen != null && chosen.hasServer() ? chosen.getServer() : null;
+            // 首个请求已经订阅过请求体，对冲请求不再读取 (只对冲不带请求体的请求)
+            start(new ServerHttpRequestDecorator(exchange.getRequest()) {
+                @Override
+                public Flux<DataBuffer> getBody() {
+                    return Flux.empty();
+                }
+            }, excluded);
+        }
+
+        private Attempt start(ServerHttpRequest request, ServiceInstance excluded) {
+            Attempt attempt = new Attempt(this, request, excluded);
+            attempts.add(attempt);
+            // 先登记再检查：hedge() 判断之后、登记之前已经有一方胜出 (或客户端已取消) 时不再发出；
+            // 登记之后才胜出的，claim/cancelAll 遍历时一定能看到这次尝试
+            if (attempts.get(0) != attempt && (winner.get() != null || cancelled)) {
+                attempts.remove(attempt);
+                attempt.done = true;
+                return attempt;
+            }
+            attempt.subscription = chain.filter(attempt.exchange)
+                    .contextWrite(sink.contextView())
+                    .subscribe(null, e -> onError(attempt, e), () -> onComplete(attempt));
+            // 启动期间另一方已经胜出 (或客户端已取消)
+            if (attempt.done && winner.get() != attempt) {
+                attempt.subscription.dispose();
+            }
+            return attempt;
+        }
+
+        /**
+         * 认定胜出的尝试 (写出响应头时，或所有尝试都已结束时)：合并属性，取消其余尝试
+         */
+        boolean claim(Attempt attempt, boolean success) {
+            if (!winner.compareAndSet(null, attempt)) {
+                return winner.get() == attempt;
+            }
+            Disposable timer = hedgeTimer;
+            if (timer != null) timer.dispose();
+            exchange.getAttributes().putAll(attempt.exchange.getAttributes());
+            if (success) {
+                policy.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+            for (Attempt other : attempts) {
+                if (other != attempt && !other.done) {
+                    other.cancel();
+                    // 被取消的首个请求已经慢于对冲延迟，按已耗时计入；被取消的对冲请求只释放在途数
+                    report(other, other == attempts.get(0) ? Outcome.SLOW : Outcome.CANCELLED);
+                }
+            }
+            boolean hedged = attempts.size() > 1;
+            registry.record(routeId, attempt != attempts.get(0) ? HedgeRegistry.RESULT_HEDGE_WON
+                    : hedged ? HedgeRegistry.RESULT_PRIMARY_WON
+                    : budgetExhausted ? HedgeRegistry.RESULT_BUDGET_EXHAUSTED : HedgeRegistry.RESULT_PRIMARY);
+            return true;
+        }
+
+        private void onComplete(Attempt attempt) {
+            attempt.done = true;
+            if (attempt.rejected) {
+                onRejected(attempt);
+                return;
+            }
+            if (claim(attempt, true)) {
+                sink.success();
+            } else {
+                // 写出时已经输给另一方
+                report(attempt, Outcome.CANCELLED);
+            }
+        }
+
+        /**
+         * 尝试失败：另一方仍在进行时等待它，否则把错误交给上层
+         */
+        private void onError(Attempt attempt, Throwable e) {
+            attempt.done = true;
+            boolean othersDone = attempts.stream().allMatch(a -> a.done);
+            if (winner.get() == attempt || (othersDone && claim(attempt, false))) {
+                sink.error(e);
+            } else {
+                report(attempt, Outcome.FAILED);
+            }
+        }
+
+        /**
+         * 尝试被网关本地拒绝且写出时另一方仍在进行：另一方也已结束 (失败) 时把拒绝响应写给客户端，否则等待它
+         * 请求没有到达实例，只释放在途数
+         */
+        private void onRejected(Attempt attempt) {
+            boolean othersDone = attempts.stream().allMatch(a -> a.done);
+            if (othersDone && claim(attempt, false)) {
+                attempt.rejection().writeTo(exchange.getResponse()).subscribe(null, sink::error, sink::success);
+            } else {
+                report(attempt, Outcome.CANCELLED);
+            }
+        }
+
+        private boolean othersRunning(Attempt attempt) {
+            return attempts.stream().anyMatch(a -> a != attempt && !a.done);
+        }
+
+        /**
+         * 客户端取消：所有尝试 (包括已经在写响应的胜出方) 都断开上游；胜出方的在途数由 CoreGlobalFilter 释放，其余在这里释放
+         */
+        private void cancelAll() {
+            cancelled = true;
+            Disposable timer = hedgeTimer;
+            if (timer != null) timer.dispose();
+            Attempt won = winner.get();
+            for (Attempt attempt : attempts) {
+                boolean running = !attempt.done;
+                attempt.cancel();
+                if (attempt != won && running) {
+                    report(attempt, Outcome.CANCELLED);
+                }
+            }
+        }
+
+        /**
+         * 没有胜出的尝试由这里回报给负载均衡 (胜出方由 CoreGlobalFilter 回报)
+         */
+        private void report(Attempt attempt, Outcome outcome) {
+            if (!attempt.reported.compareAndSet(false, true)) {
+                return;
+            }
+            Response<ServiceInstance> lbResponse = attempt.exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            if (lbResponse == null || !lbResponse.hasServer()) {
+                return;
+            }
+            if (outcome == Outcome.CANCELLED) {
+                instanceStatsRegistry.onCancel(lbResponse.getServer());
+            } else {
+                instanceStatsRegistry.onComplete(lbResponse.getServer(), System.nanoTime() - attempt.startNanos,
+                        outcome == Outcome.FAILED);
+            }
+        }
+    }
+
+    private enum Outcome { SLOW, FAILED, CANCELLED }
+
+    /**
+     * 单次尝试：独立的属性表和响应包装
+     */
+    private static class Attempt {
+        final AttemptExchange exchange;
+        final long startNanos = System.nanoTime();
+        final AtomicBoolean reported = new AtomicBoolean();
+        volatile boolean done;
+        // 写出的是网关本地拒绝，且当时另一方仍在进行 (响应已丢弃)
+        volatile boolean rejected;
+        volatile Disposable subscription;
+
+        Attempt(HedgedCall call, ServerHttpRequest request, ServiceInstance excluded) {
+            ServerWebExchange original = call.exchange;
+            Map<String, Object> attributes = new ConcurrentHashMap<>(original.getAttributes());
+            attributes.put(ATTEMPT_START_ATTR, startNanos);
+            if (excluded != null) {
+                attributes.put(EXCLUDED_INSTANCE_ATTR, excluded);
+            }
+            this.exchange = new AttemptExchange(original, request, new AttemptResponse(original.getResponse(), call, this), attributes);
+        }
+
+        void cancel() {
+            done = true;
+            Disposable s = subscription;
+            if (s != null) s.dispose();
+        }
+
+        /**
+         * 本次尝试写出的网关本地拒绝，不是本地拒绝时返回 null
+         */
+        RejectionResponse rejection() {
+            if (exchange.getAttribute(PooledNettyRoutingFilter.POOL_EXHAUSTED_ATTR) != null) {
+                return RejectionResponse.UPSTREAM_POOL_EXHAUSTED;
+            }
+            if (exchange.getAttribute(AdaptiveConcurrencyFilter.CONCURRENCY_LIMITED_ATTR) != null) {
+                return RejectionResponse.CONCURRENCY_LIMITED;
+            }
+            return null;
+        }
+    }
+
+    private static class AttemptExchange extends ServerWebExchangeDecorator {
+
+        private final ServerHttpRequest request;
+        private final ServerHttpResponse response;
+        private final Map<String, Object> attributes;
+
+        AttemptExchange(ServerWebExchange delegate, ServerHttpRequest request, ServerHttpResponse response,
+                        Map<String, Object> attributes) {
+            super(delegate);
+            this.request = request;
+            this.response = response;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public ServerHttpRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public ServerHttpResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+    }
+
+    /**
+     * 尝试的响应包装：状态码和响应头先写在自己这里，第一个写出响应体的尝试胜出，才复制到真正的响应上 (本地拒绝除外)
+     */
+    private static class AttemptResponse extends ServerHttpResponseDecorator {
+
+        private final HedgedCall call;
+        private final Attempt attempt;
+        private final HttpHeaders headers = new HttpHeaders();
+        private volatile HttpStatusCode status;
+
+        AttemptResponse(ServerHttpResponse delegate, HedgedCall call, Attempt attempt) {
+            super(delegate);
+            this.call = call;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean setStatusCode(HttpStatusCode status) {
+            this.status = status;
+            return true;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return status;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!win()) {
+                return Flux.from(body).doOnNext(DataBufferUtils::release).then();
+            }
+            return getDelegate().writeWith(body);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            if (!win()) {
+                return Flux.from(body).flatMap(p -> Flux.from(p).doOnNext(DataBufferUtils::release)).then();
+            }
+            return getDelegate().writeAndFlushWith(body);
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return win() ? getDelegate().setComplete() : Mono.empty();
+        }
+
+        private boolean win() {
+            if (attempt.rejected) {
+                return false;
+            }
+            // 本地拒绝不抢先胜出，结束后由 onRejected 决定是否写给客户端
+            if (attempt.rejection() != null && call.othersRunning(attempt)) {
+                attempt.rejected = true;
+                return false;
+            }
+            if (!call.claim(attempt, true)) {
+                return false;
+            }
+            ServerHttpResponse delegate = getDelegate();
+            if (status != null) {
+                delegate.setStatusCode(status);
+            }
+            delegate.getHeaders().addAll(headers);
+            return true;
+        }
+    }
+
+    @Data
+    public static class Config {
+        // 对冲延迟取路由耗时的哪个分位数
+        private double percentile = 0.95;
+        // 对冲延迟下限 (分位数很小时避免几乎每个请求都对冲)
+        private Duration minDelay = Duration.ofMillis(10);
+        // 对冲请求占正常请求的比例上限
+        private double budgetRatio = 0.1;
+    }
+}
@@ -1,25 +1,28 @@
 package com.rcpawn.filter;
 
 import com.rcpawn.common.entity.GatewayLogDTO; // 注意引入的是 common 里的类
+import com.rcpawn.gateway.accesslog.AccessLogShipper;
 import com.rcpawn.util.LogBuffer;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
 import java.util.Date;
 
-//@Component
+@Component
 public class LogGlobalFilter implements GlobalFilter, Ordered {
 
-//    @Autowired
-    private RabbitTemplate rabbitTemplate;
+    @Autowired
+    private AccessLogShipper accessLogShipper;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -43,34 +46,31 @@ public class LogGlobalFilter implements GlobalFilter, Ordered {
             // 1. 检查是否有拦截标记
             boolean handled = exchange.getAttribute(LogBuffer.LOG_ALREADY_HANDLED) != null;
             // 2. 或者检查状态码 (比如不记录 401, 403, 429)
-            boolean isBlockCode = response.getStatusCode() == HttpStatus.UNAUTHORIZED
-                    || response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+            HttpStatusCode statusCode = response.getStatusCode();
+            boolean isBlockCode = statusCode == HttpStatus.UNAUTHORIZED
+                    || statusCode == HttpStatus.TOO_MANY_REQUESTS;
 
             if (handled || isBlockCode) {
                 return; // 跳过 MQ
             }
 
             long endTime = System.currentTimeMillis();
-            
+            ServerHttpRequest request = exchange.getRequest();
+            InetSocketAddress remote = request.getRemoteAddress();
+
             // 3. 封装日志对象
             GatewayLogDTO log = new GatewayLogDTO();
-            log.setPath(exchange.getRequest().getURI().getPath());
-            log.setMethod(exchange.getRequest().getMethod().name());
-            log.setIp(exchange.getRequest().getRemoteAddress().getAddress().getHostAddress());
-            log.setUserId(exchange.getRequest().getHeaders().getFirst("X-User-Id"));
-            log.setStatus(exchange.getResponse().getStatusCode().value());
+            log.setPath(path);
+            log.setMethod(request.getMethod().name());
+            log.setIp(remote != null ? remote.getAddress().getHostAddress() : null);
+            log.setUserId(request.getHeaders().getFirst("X-User-Id"));
+            log.setStatus(statusCode != null ? statusCode.value() : 200);
             log.setResponseTime(endTime - startTime);
             log.setRequestTime(new Date(startTime));
             // TraceID 暂时留空，或者从 SkyWalking 上下文取(如果有)
-            
-            // 4. 发送 MQ (异步)
-            try {
-                rabbitTemplate.convertAndSend("gateway_log_queue", log);
-//                Thread.sleep(50);
-//                System.out.println("✅ [网关] 异步日志已发送 MQ: " + log.getPath());
-            } catch (Exception e) {
-                System.err.println("❌ [网关] 日志发送失败: " + e.getMessage());
-            }
+
+            // 4. 写入本地缓冲区，由投递线程攒批发送 MQ (不阻塞事件循环)
+            accessLogShipper.submit(log);
         }));
     }
 
@@ -0,0 +1,61 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.gateway.response.RejectionResponse;
+import com.rcpawn.gateway.upstream.UpstreamPoolRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+
+/**
+ * 按上游连接池转发
+ * 核心逻辑：排在默认的 NettyRoutingFilter 之前 -> 转发逻辑不变，只是 HttpClient 换成路由所属上游连接池的 -> 标记已路由，默认过滤器随之跳过 -> 连接池排队超限/等待超时返回 503
+ * 1. 不能通过 global-filter.netty-routing.enabled=false 关掉默认过滤器：NettyWriteResponseFilter 与它共用这个开关
+ * 2. WebSocket 升级请求交给 WebsocketRoutingFilter，不在这里转发
+ * 3. 连接池的创建、配置与指标见 UpstreamPoolRegistry；连接池耗尽是网关侧拒绝，直接返回 503，不走默认异常处理 (500)
+ * 4. 拒绝时在 exchange 上打标记，CoreGlobalFilter 据此不把这次 503 算作负载均衡选中实例的失败
+ */
+@Component
+public class PooledNettyRoutingFilter extends NettyRoutingFilter {
+
+    // 因本地连接池耗尽被拒绝 (请求没有发到上游实例)
+    public static final String POOL_EXHAUSTED_ATTR = PooledNettyRoutingFilter.class.getName() + ".poolExhausted";
+
+    private final UpstreamPoolRegistry poolRegistry;
+
+    public PooledNettyRoutingFilter(HttpClient httpClient, ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                                    HttpClientProperties properties, UpstreamPoolRegistry poolRegistry) {
+        super(httpClient, headersFilters, properties);
+        this.poolRegistry = poolRegistry;
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyRoutingFilter.ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if ("websocket".equalsIgnoreCase(exchange.getRequest().getHeaders().getUpgrade())) {
+            return chain.filter(exchange);
+        }
+        return super.filter(exchange, chain)
+                .onErrorResume(e -> UpstreamPoolRegistry.isPoolExhausted(e) && !exchange.getResponse().isCommitted(), e -> {
+                    exchange.getAttributes().put(POOL_EXHAUSTED_ATTR, Boolean.TRUE);
+                    return RejectionResponse.UPSTREAM_POOL_EXHAUSTED.writeTo(exchange.getResponse());
+                });
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        return poolRegistry.client(route);
+    }
+}
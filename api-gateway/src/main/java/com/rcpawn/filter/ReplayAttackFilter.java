@@ -1,30 +1,84 @@
 package com.rcpawn.filter;
 
+import com.rcpawn.gateway.replay.NonceBloomFilter;
+import com.rcpawn.gateway.response.RejectionResponse;
 import com.rcpawn.util.RedisUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
-
+/**
+ * 防重放过滤器
+ * 核心逻辑：校验 Timestamp 有效期 -> 本地布隆过滤器判重 -> 只有"可能见过"的 Nonce 才到 Redis 原子确认
+ * 1. 布隆过滤器按有效期轮换 (当前 + 上一代)，"确定没见过"的 Nonce 直接放行，同时异步写入 Redis 供其他请求确认
+ * 2. "可能见过"的 Nonce 可能是误判，由 Redis SETNX 脚本 (EVALSHA) 给出最终结论
+ * 3. 严格模式 (gateway.replay.strict=true) 下每个 Nonce 都等待 Redis 确认，跨节点重放也能同步拦截
+ */
 @Slf4j
-//@Component
+@Component
 public class ReplayAttackFilter implements GlobalFilter, Ordered {
 
-//    @Autowired
+    @Autowired
     private RedisUtil redisUtil;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     // 限制请求时间必须在 5 分钟内
     private static final long MAX_REQUEST_TIME = 5 * 60 * 1000;
+    // 允许客户端时钟比网关快 10 秒
+    private static final long MAX_CLOCK_SKEW = 10 * 1000;
+    // Nonce 需要保留到对应请求的时间戳过期为止
+    private static final long NONCE_TTL_SECONDS = (MAX_REQUEST_TIME + MAX_CLOCK_SKEW) / 1000;
+    private static final String NONCE_KEY_PREFIX = "gateway:nonce:";
+
+    // 严格模式：每个 Nonce 都同步到 Redis 确认
+    @Value("${gateway.replay.strict:false}")
+    private boolean strict;
+
+    // 每个窗口预计的请求量，决定布隆过滤器大小
+    @Value("${gateway.replay.expected-nonces:1000000}")
+    private long expectedNonces;
+
+    @Value("${gateway.replay.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private NonceBloomFilter nonceFilter;
+
+    private Counter localPassCounter;
+    private Counter redisCheckCounter;
+    private Counter rejectedCounter;
+    private Counter lateDetectedCounter;
+
+    @PostConstruct
+    public void init() {
+        nonceFilter = new NonceBloomFilter(MAX_REQUEST_TIME + MAX_CLOCK_SKEW, expectedNonces, falsePositiveRate);
+        log.info("防重放布隆过滤器初始化，strict={}，每代 {} KB", strict, nonceFilter.bytesPerGeneration() / 1024);
+
+        localPassCounter = Counter.builder("gateway.replay.local_pass")
+                .description("本地判定为新 Nonce 直接放行的请求数")
+                .register(meterRegistry);
+        redisCheckCounter = Counter.builder("gateway.replay.redis_checks")
+                .description("同步到 Redis 确认的 Nonce 数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("gateway.replay.rejected")
+                .description("被判定为重放而拦截的请求数")
+                .register(meterRegistry);
+        lateDetectedCounter = Counter.builder("gateway.replay.late_detected")
+                .description("本地放行后异步写 Redis 时发现重复的 Nonce 数 (跨节点重放)")
+                .register(meterRegistry);
+    }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -42,15 +96,9 @@ public class ReplayAttackFilter implements GlobalFilter, Ordered {
         String timestamp = exchange.getRequest().getHeaders().getFirst("Timestamp");
         String nonce = exchange.getRequest().getHeaders().getFirst("Nonce");
 
-        // 👇👇👇【新增后门】👇👇👇
-        // 如果 Nonce 是 "test-skip"，直接放行，不存 Redis，不检查重复
-                if ("test-skip".equals(nonce)) {
-                    return chain.filter(exchange);
-                }
-
         // 简单校验非空
         if (!StringUtils.hasText(timestamp) || !StringUtils.hasText(nonce)) {
-            return errorResponse(exchange, "缺少安全头(Timestamp/Nonce)");
+            return errorResponse(exchange, RejectionResponse.REPLAY_MISSING_HEADERS);
         }
 
         // 3. 校验时间戳 (防止太旧的请求)
@@ -58,44 +106,57 @@ public class ReplayAttackFilter implements GlobalFilter, Ordered {
         try {
             requestTime = Long.parseLong(timestamp);
         } catch (NumberFormatException e) {
-            return errorResponse(exchange, "时间戳格式错误");
+            return errorResponse(exchange, RejectionResponse.REPLAY_BAD_TIMESTAMP);
         }
 
         long now = System.currentTimeMillis();
         // 如果请求时间比现在还晚(未来时间)，或者请求太老(超过5分钟)
-        if (now - requestTime > MAX_REQUEST_TIME || requestTime > now + 10000) { // 宽容10秒误差
-            return errorResponse(exchange, "请求已过期，拒绝访问");
+        if (now - requestTime > MAX_REQUEST_TIME || requestTime > now + MAX_CLOCK_SKEW) {
+            return errorResponse(exchange, RejectionResponse.REPLAY_EXPIRED);
+        }
+
+        // 4. 本地判重：确定没见过的 Nonce 直接放行，Redis 写入不阻塞请求
+        String key = NONCE_KEY_PREFIX + nonce;
+        boolean fresh = nonceFilter.add(nonce, now);
+        if (fresh && !strict) {
+            localPassCounter.increment();
+            redisUtil.setIfAbsent(key, "1", NONCE_TTL_SECONDS)
+                    .subscribe(success -> {
+                        if (!success) {
+                            lateDetectedCounter.increment();
+                        }
+                    }, e -> log.debug("Nonce 异步写入 Redis 失败: {}", e.getMessage()));
+            return chain.filter(exchange);
         }
 
-        // 4. 校验 Nonce (原子性升级版)
-        // 利用 Lua 脚本原子执行：如果有，返回 false；如果没有，存入并返回 true
-        return redisUtil.setIfAbsent(nonce, "1", 300)
+        // 5. 可能见过 (或严格模式)：利用 Lua 脚本原子执行，已存在返回 false，不存在则存入并返回 true
+        redisCheckCounter.increment();
+        return redisUtil.setIfAbsent(key, "1", NONCE_TTL_SECONDS)
+                .onErrorResume(e -> {
+                    log.warn("Nonce 校验失败: {}", e.getMessage());
+                    return Mono.just(false);
+                })
                 .flatMap(success -> {
                     if (success) {
-                        // 成功存入 -> 说明是第一次 -> 放行
-                        log.info("Nonce 检查通过，已存入Redis，nonce: {}", nonce);
+                        // 布隆过滤器误判或严格模式下的新 Nonce -> 放行
                         return chain.filter(exchange);
-                    } else {
-                        // 存入失败 -> 说明 Redis 里已经有了 -> 拦截
-                        return errorResponse(exchange, "检测到重放攻击(Nonce重复)");
                     }
+                    // Redis 里已经有了 (或 Redis 不可用，无法排除重放) -> 拦截
+                    rejectedCounter.increment();
+                    return errorResponse(exchange, RejectionResponse.REPLAY_DETECTED);
                 });
     }
 
     /**
-     * 返回错误 JSON
+     * 返回错误 JSON (预编码的 403 响应)
      */
-    private Mono<Void> errorResponse(ServerWebExchange exchange, String msg) {
-        ServerHttpResponse response = exchange.getResponse();
-        response.setStatusCode(HttpStatus.FORBIDDEN); // 403
-        response.getHeaders().add("Content-Type", "application/json;charset=UTF-8");
-        String json = "{\"code\": 403, \"msg\": \"" + msg + "\"}";
-        DataBuffer buffer = response.bufferFactory().wrap(json.getBytes(StandardCharsets.UTF_8));
-        return response.writeWith(Mono.just(buffer));
+    private Mono<Void> errorResponse(ServerWebExchange exchange, RejectionResponse rejection) {
+        return rejection.writeTo(exchange.getResponse());
     }
 
     @Override
     public int getOrder() {
-        return 0; // 优先级高一点，排在鉴权之前或之后都可以
+        // 排在鉴权 (CoreGlobalFilter) 之后，未登录请求不会占用 Nonce；排在响应缓存之前，重放的请求不会命中缓存
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 10;
     }
-}
\ No newline at end of file
+}
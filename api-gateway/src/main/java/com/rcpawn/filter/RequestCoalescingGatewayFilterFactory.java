@@ -0,0 +1,186 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.gateway.coalesce.CoalescingRegistry;
+import com.rcpawn.gateway.coalesce.InflightCall;
+import lombok.Data;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 路由级请求合并 (single-flight，只合并 GET/HEAD)
+ * 核心逻辑：按 路由 + 方法 + 路径 + 查询串 + 指定请求头 生成 Key -> 没有相同的在途请求时登记并回源 -> 有则等待它的响应 -> 首个请求的响应体写完后，所有等待者共享同一份响应体写出
+ * 1. 突发流量下大量相同请求同时到达时，上游只收到一次调用；不保存已完成的响应，与 ResponseCache 可以同时使用
+ * 2. 响应体超过 maxBodyBytes、全局共享内存超过 gateway.coalesce.max-total-bytes、响应带 Set-Cookie 或回源失败时不共享，等待者各自回源
+ * 3. 与 ResponseCache 相同的共享限制：Key 含 X-User-Id 时只在同一用户之间共享，不受限制；否则 private 不共享，带 Authorization 的请求只有上游声明 public 或 s-maxage 时共享
+ *
+ * 路由配置示例 (Nacos 路由 JSON 的 filters)：
+ * {"name": "RequestCoalescing", "args": {"varyHeaders": "X-User-Id", "maxBodyBytes": "262144"}}
+ */
+@Component
+public class RequestCoalescingGatewayFilterFactory extends AbstractGatewayFilterFactory<RequestCoalescingGatewayFilterFactory.Config> {
+
+    @Autowired
+    private CoalescingRegistry registry;
+
+    // 路由未配置 maxBodyBytes 时的单个响应体上限
+    @Value("${gateway.coalesce.max-body-bytes:262144}")
+    private int defaultMaxBodyBytes;
+
+    // 等待首个请求响应的最长时间，超时后自己回源
+    @Value("${gateway.coalesce.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    public RequestCoalescingGatewayFilterFactory() {
+        super(Config.class);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("varyHeaders");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // 与 ResponseCache 一样需要排在 NettyWriteResponseFilter 之前
+        return new OrderedGatewayFilter((exchange, chain) -> filter(exchange, chain, config),
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : "unknown";
+        String key = ResponseCacheGatewayFilterFactory.requestKey(routeId, exchange.getRequest(), config.getVaryHeaders());
+
+        // 1. 登记为首个请求，或加入已有的在途调用
+        int maxBodyBytes = config.getMaxBodyBytes() != null ? config.getMaxBodyBytes() : defaultMaxBodyBytes;
+        InflightCall call = registry.newCall(maxBodyBytes);
+        InflightCall existing = registry.register(key, call);
+        if (existing == null) {
+            registry.record(routeId, CoalescingRegistry.RESULT_LEADER);
+            return lead(exchange, chain, config, key, call);
+        }
+        if (!existing.tryJoin()) {
+            registry.record(routeId, CoalescingRegistry.RESULT_FALLBACK);
+            return chain.filter(exchange);
+        }
+
+        // 2. 等待首个请求的响应；没有可共享的结果 (或等待超时) 时自己回源
+        AtomicBoolean left = new AtomicBoolean();
+        Runnable leave = () -> {
+            if (left.compareAndSet(false, true)) existing.leave();
+        };
+        return existing.result()
+                .timeout(waitTimeout, Mono.empty())
+                .flatMap(shared -> {
+                    registry.record(routeId, CoalescingRegistry.RESULT_JOINED);
+                    return writeShared(exchange.getResponse(), shared, leave).thenReturn(true);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    leave.run();
+                    registry.record(routeId, CoalescingRegistry.RESULT_FALLBACK);
+                    return chain.filter(exchange).thenReturn(true);
+                }))
+                .doFinally(signal -> leave.run())
+                .then();
+    }
+
+    /**
+     * 首个请求：包装响应，上游响应体边写边拷贝；结束后移出在途表
+     */
+    private Mono<Void> lead(ServerWebExchange exchange, GatewayFilterChain chain, Config config, String key, InflightCall call) {
+        SharingResponse response = new SharingResponse(exchange.getResponse(), exchange.getRequest().getHeaders(), config, call);
+        return chain.filter(exchange.mutate().response(response).build())
+                .doFinally(signal -> {
+                    registry.unregister(key, call);
+                    // 没有写出响应体 (出错、取消、流式响应) 时放弃共享，已发布的结果不受影响
+                    call.abandon();
+                    call.leave();
+                });
+    }
+
+    /**
+     * 跟随者：写出共享的状态码、响应头和响应体切片；取到切片后即可离开
+     */
+    private Mono<Void> writeShared(ServerHttpResponse response, InflightCall shared, Runnable leave) {
+        DataBuffer body = shared.bodySlice();
+        leave.run();
+        response.setStatusCode(shared.getStatus());
+        HttpHeaders headers = response.getHeaders();
+        ResponseCacheGatewayFilterFactory.applyStoredHeaders(shared.getHeaders(), headers);
+        headers.setContentLength(body.readableByteCount());
+        return response.writeWith(Mono.just(body));
+    }
+
+    /**
+     * 响应是否可以共享给其他请求
+     */
+    private static boolean shareable(HttpHeaders requestHeaders, HttpHeaders headers, Config config) {
+        return !headers.containsKey(HttpHeaders.SET_COOKIE)
+                && ResponseCacheGatewayFilterFactory.sharedAllowed(requestHeaders, headers, config.getVaryHeaders());
+    }
+
+    /**
+     * 首个请求的响应包装：NettyWriteResponseFilter 写出上游响应时拷贝一份供跟随者共享
+     */
+    private static class SharingResponse extends ServerHttpResponseDecorator {
+
+        private final HttpHeaders requestHeaders;
+        private final Config config;
+        private final InflightCall call;
+
+        SharingResponse(ServerHttpResponse delegate, HttpHeaders requestHeaders, Config config, InflightCall call) {
+            super(delegate);
+            this.requestHeaders = requestHeaders;
+            this.config = config;
+            this.call = call;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpHeaders headers = getHeaders();
+            if (getStatusCode() == null || !shareable(requestHeaders, headers, config)
+                    || !call.start(getStatusCode(), ResponseCacheGatewayFilterFactory.storedHeaders(headers), headers.getContentLength())) {
+                call.abandon();
+                return super.writeWith(body);
+            }
+            Flux<? extends DataBuffer> shared = Flux.from(body)
+                    .doOnNext(call::append)
+                    .doOnComplete(call::complete);
+            return super.writeWith(shared);
+        }
+    }
+
+    @Data
+    public static class Config {
+        // 参与 Key 的请求头 (如 X-User-Id 只合并同一用户的请求)
+        private List<String> varyHeaders = new ArrayList<>();
+        // 可共享的响应体上限，为空时使用 gateway.coalesce.max-body-bytes
+        private Integer maxBodyBytes;
+    }
+}
@@ -0,0 +1,451 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.gateway.cache.CachedResponse;
+import com.rcpawn.gateway.cache.ResponseCacheStore;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 路由级响应缓存 (只缓存 GET)
+ * 核心逻辑：按 路由 + 方法 + 路径 + 查询串 + 指定请求头 生成 Key -> 新鲜命中直接返回 -> 未命中/过期时同 Key 只放一个请求回源 (过期且有 ETag 时带 If-None-Match 重新验证) -> 可缓存的 200 响应边转发边保存
+ * 1. 遵守 Cache-Control：请求 no-store 不走缓存，no-cache/max-age=0 强制回源；响应 no-store、Set-Cookie、Vary: * 不缓存，s-maxage/max-age 覆盖路由 TTL
+ * 2. 共享缓存的限制 (RFC 9111 3.5)：Key 含 X-User-Id (按用户缓存，X-User-Id 由鉴权从 Token 写入) 时条目只给同一用户使用，不受限制；否则 private 不缓存，带 Authorization 的请求只有上游声明 public 或 s-maxage 时缓存
+ * 3. 回源出错或返回 5xx 时，在 stale-if-error 窗口内返回旧响应 (X-Cache: STALE)
+ * 4. 排在鉴权/WAF/防重放之后，缓存命中的请求同样经过这些检查；命中时不再经过限流、自适应并发和负载均衡
+ *
+ * 路由配置示例 (Nacos 路由 JSON 的 filters，varyHeaders 逗号分隔，X-User-Id 即按用户缓存)：
+ * {"name": "ResponseCache", "args": {"ttl": "30s", "staleIfError": "5m", "varyHeaders": "X-User-Id"}}
+ */
+@Slf4j
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    // CoreGlobalFilter 鉴权通过后写入的用户 ID，Key 含这个头才算按用户区分
+    static final String USER_KEY_HEADER = "X-User-Id";
+
+    // serve() 准备好的响应体 (304 时为 FALSE)，由 writeBody 写出
+    private static final String CACHE_BODY_ATTR = ResponseCacheGatewayFilterFactory.class.getName() + ".body";
+
+    // 不随缓存保存的逐跳头
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "transfer-encoding", "te", "trailer", "upgrade",
+            "proxy-authenticate", "proxy-authorization", "content-length");
+
+    // CorsWebFilter 按每个请求的 Origin 写入的 Vary 值，不参与可缓存判断，也不随缓存保存
+    private static final Set<String> CORS_VARY_HEADERS = Set.of(
+            "origin", "access-control-request-method", "access-control-request-headers");
+
+    @Autowired
+    private ResponseCacheStore store;
+
+    // 路由未配置 ttl 时的默认新鲜期
+    @Value("${gateway.cache.default-ttl:10s}")
+    private Duration defaultTtl;
+
+    @Value("${gateway.cache.default-stale-if-error:60s}")
+    private Duration defaultStaleIfError;
+
+    // 等待同 Key 回源结果的最长时间，超时后自己回源
+    @Value("${gateway.cache.coalesce-timeout:5s}")
+    private Duration coalesceTimeout;
+
+    public ResponseCacheGatewayFilterFactory() {
+        super(Config.class);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("ttl", "varyHeaders");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // 必须排在 NettyWriteResponseFilter 之前，它写出上游响应时拿到的才是包装后的 response
+        return new OrderedGatewayFilter((exchange, chain) -> filter(exchange, chain, config),
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : "unknown";
+
+        // 1. 请求声明 no-store 时完全绕过缓存
+        String requestCacheControl = cacheControl(request.getHeaders());
+        if (requestCacheControl.contains("no-store")) {
+            store.record(routeId, ResponseCacheStore.RESULT_BYPASS);
+            return chain.filter(exchange);
+        }
+        boolean forceRevalidate = requestCacheControl.contains("no-cache") || requestCacheControl.contains("max-age=0")
+                || "no-cache".equalsIgnoreCase(request.getHeaders().getPragma());
+
+        // 2. 新鲜命中直接返回 (客户端的 If-None-Match 先取出来，回源时会被替换成缓存条目的 ETag)
+        List<String> clientEtags = request.getHeaders().getIfNoneMatch();
+        String key = requestKey(routeId, request, config.getVaryHeaders());
+        CachedResponse entry = store.lookup(key);
+        if (entry != null && !forceRevalidate && entry.isFresh(System.currentTimeMillis())
+                && serve(exchange, entry, ResponseCacheStore.RESULT_HIT, routeId, clientEtags)) {
+            return writeBody(exchange);
+        }
+
+        // 3. 已有同 Key 请求在回源：等它的结果，没有可缓存结果 (或等待超时) 时自己回源
+        Mono<CachedResponse> pending = store.join(key);
+        if (pending != null) {
+            return pending.timeout(coalesceTimeout, Mono.empty())
+                    .flatMap(result -> serve(exchange, result, ResponseCacheStore.RESULT_HIT, routeId, clientEtags)
+                            ? writeBody(exchange).thenReturn(true)
+                            : Mono.<Boolean>empty())
+                    .switchIfEmpty(Mono.defer(() -> forward(exchange, chain, config, routeId, key, entry, clientEtags, false).thenReturn(true)))
+                    .then();
+        }
+
+        // 4. 当前请求负责回源，结束后唤醒等待者
+        return forward(exchange, chain, config, routeId, key, entry, clientEtags, true);
+    }
+
+    /**
+     * 回源：过期条目有 ETag 时附带 If-None-Match；包装响应，在写出时决定 保存 / 用缓存替换 304 / 用旧响应替换 5xx
+     */
+    private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, Config config, String routeId,
+                               String key, CachedResponse stale, List<String> clientEtags, boolean leader) {
+        ServerHttpRequest request = exchange.getRequest();
+        boolean revalidating = stale != null && stale.getEtag() != null;
+        if (revalidating) {
+            request = request.mutate().headers(h -> h.setIfNoneMatch(stale.getEtag())).build();
+        }
+        CachingResponse response = new CachingResponse(exchange, config, routeId, key, stale, revalidating, clientEtags);
+        ServerWebExchange mutated = exchange.mutate().request(request).response(response).build();
+
+        return chain.filter(mutated)
+                .onErrorResume(e -> {
+                    // 连接失败/超时：响应还未提交时返回旧响应
+                    long now = System.currentTimeMillis();
+                    if (stale == null || !stale.isUsableOnError(now) || exchange.getResponse().isCommitted()
+                            || !serve(exchange, stale, ResponseCacheStore.RESULT_STALE, routeId, clientEtags)) {
+                        return Mono.error(e);
+                    }
+                    log.warn("路由 {} 回源失败，返回缓存的旧响应: {}", routeId, e.getMessage());
+                    return writeBody(exchange);
+                })
+                .doFinally(signal -> {
+                    if (leader) store.complete(key, response.stored);
+                });
+    }
+
+    /**
+     * 把缓存条目的状态码和响应头写入响应；客户端 If-None-Match 与 ETag 相同时改为 304
+     * 堆外条目已被释放时返回 false
+     */
+    private boolean serve(ServerWebExchange exchange, CachedResponse entry, String result, String routeId,
+                          List<String> clientEtags) {
+        long now = System.currentTimeMillis();
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        String etag = entry.getEtag();
+        if (etag != null && clientEtags.contains(etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.setETag(etag);
+            exchange.getAttributes().put(CACHE_BODY_ATTR, Boolean.FALSE);
+        } else {
+            DataBuffer body = entry.body();
+            if (body == null) {
+                return false;
+            }
+            response.setStatusCode(entry.getStatus());
+            applyStoredHeaders(entry.getHeaders(), headers);
+            headers.setContentLength(entry.getBodyLength());
+            exchange.getAttributes().put(CACHE_BODY_ATTR, body);
+        }
+        headers.set(HttpHeaders.AGE, String.valueOf(entry.getAgeSeconds(now)));
+        headers.set(CACHE_STATUS_HEADER, result.toUpperCase(Locale.ROOT));
+        store.record(routeId, result);
+        return true;
+    }
+
+    private Mono<Void> writeBody(ServerWebExchange exchange) {
+        Object body = exchange.getAttributes().remove(CACHE_BODY_ATTR);
+        ServerHttpResponse response = exchange.getResponse();
+        if (body instanceof DataBuffer buffer) {
+            return response.writeWith(Mono.just(buffer));
+        }
+        return response.setComplete();
+    }
+
+    /**
+     * Key：路由 + 方法 + 原始路径和查询串 + 配置的请求头取值 (请求合并使用同样的 Key)
+     */
+    static String requestKey(String routeId, ServerHttpRequest request, List<String> varyHeaders) {
+        StringBuilder key = new StringBuilder(128)
+                .append(routeId).append('|')
+                .append(request.getMethod().name()).append('|')
+                .append(request.getURI().getRawPath());
+        String query = request.getURI().getRawQuery();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        for (String header : varyHeaders) {
+            String value = request.getHeaders().getFirst(header);
+            key.append('|').append(header).append('=').append(value != null ? value : "");
+        }
+        return key.toString();
+    }
+
+    /**
+     * 需要随响应保存的头：去掉逐跳头、CORS 头 (CorsWebFilter 按请求写入) 和 X-Cache
+     */
+    static HttpHeaders storedHeaders(HttpHeaders source) {
+        HttpHeaders headers = new HttpHeaders();
+        source.forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP_HEADERS.contains(lower) || lower.startsWith("access-control-") || CACHE_STATUS_HEADER.equalsIgnoreCase(name)) {
+                return;
+            }
+            List<String> kept = HttpHeaders.VARY.equalsIgnoreCase(name)
+                    ? values.stream().filter(v -> !CORS_VARY_HEADERS.contains(v.toLowerCase(Locale.ROOT))).toList()
+                    : values;
+            if (!kept.isEmpty()) {
+                headers.put(name, new ArrayList<>(kept));
+            }
+        });
+        return headers;
+    }
+
+    /**
+     * 把保存的响应头写入当前响应，Vary 与 CorsWebFilter 已写入的值合并
+     */
+    static void applyStoredHeaders(HttpHeaders stored, HttpHeaders target) {
+        stored.forEach((name, values) -> {
+            if (HttpHeaders.VARY.equalsIgnoreCase(name)) {
+                values.stream().filter(v -> !target.getVary().contains(v)).forEach(v -> target.add(HttpHeaders.VARY, v));
+            } else {
+                target.put(name, new ArrayList<>(values));
+            }
+        });
+    }
+
+    /**
+     * 响应能否在不同请求之间共享 (响应缓存与请求合并共用)
+     * 1. Key 按 X-User-Id 区分：只在同一用户的请求之间共享，相当于私有缓存，private 和 Authorization 都不限制
+     * 2. private：只属于某个用户，Key 不按用户区分时不共享
+     * 3. 请求带 Authorization：响应可能因身份而异，只有上游显式声明 public 或 s-maxage 才共享
+     */
+    static boolean sharedAllowed(HttpHeaders requestHeaders, HttpHeaders responseHeaders, List<String> varyHeaders) {
+        if (varyHeaders.stream().anyMatch(USER_KEY_HEADER::equalsIgnoreCase)) {
+            return true;
+        }
+        String cacheControl = cacheControl(responseHeaders);
+        if (cacheControl.contains("private")) {
+            return false;
+        }
+        return !requestHeaders.containsKey(HttpHeaders.AUTHORIZATION)
+                || cacheControl.contains("public") || cacheControl.contains("s-maxage");
+    }
+
+    private static String cacheControl(HttpHeaders headers) {
+        String value = headers.getCacheControl();
+        return value != null ? value.toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * 响应的新鲜期 (毫秒)；返回 -1 表示不可缓存
+     */
+    private long freshMillis(HttpHeaders requestHeaders, HttpHeaders headers, Config config) {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE) || !sharedAllowed(requestHeaders, headers, config.getVaryHeaders())) {
+            return -1;
+        }
+        for (String vary : headers.getVary()) {
+            if (CORS_VARY_HEADERS.contains(vary.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            if ("*".equals(vary) || config.getVaryHeaders().stream().noneMatch(vary::equalsIgnoreCase)) {
+                return -1;
+            }
+        }
+        String cacheControl = cacheControl(headers);
+        if (cacheControl.contains("no-store")) {
+            return -1;
+        }
+        if (cacheControl.contains("no-cache")) {
+            // 可以保存，但每次使用前都要重新验证
+            return headers.getETag() != null ? 0 : -1;
+        }
+        long seconds = directiveSeconds(cacheControl, "s-maxage=");
+        if (seconds < 0) {
+            seconds = directiveSeconds(cacheControl, "max-age=");
+        }
+        Duration ttl = config.getTtl() != null ? config.getTtl() : defaultTtl;
+        return seconds >= 0 ? seconds * 1000 : ttl.toMillis();
+    }
+
+    private static long directiveSeconds(String cacheControl, String directive) {
+        int index = cacheControl.indexOf(directive);
+        if (index < 0) {
+            return -1;
+        }
+        int start = index + directive.length();
+        int end = start;
+        while (end < cacheControl.length() && Character.isDigit(cacheControl.charAt(end))) {
+            end++;
+        }
+        return end > start ? Long.parseLong(cacheControl.substring(start, end)) : -1;
+    }
+
+    private long staleIfErrorMillis(Config config) {
+        return (config.getStaleIfError() != null ? config.getStaleIfError() : defaultStaleIfError).toMillis();
+    }
+
+    /**
+     * 转发响应的包装：NettyWriteResponseFilter 写出上游响应时按状态码处理
+     * 1. 304 (网关发起的重新验证)：刷新缓存条目，返回缓存的完整响应
+     * 2. 5xx 且有可用旧响应：返回旧响应
+     * 3. 可缓存的 200：边写边拷贝，超过单条上限就放弃保存
+     */
+    private class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+        private final Config config;
+        private final String routeId;
+        private final String key;
+        private final CachedResponse stale;
+        private final boolean revalidating;
+        private final List<String> clientEtags;
+        // 回源前网关已写入的响应头 (CorsWebFilter 的 Access-Control-*、Vary: Origin 等)，替换上游响应时保留
+        private final HttpHeaders gatewayHeaders = new HttpHeaders();
+
+        // 本次回源保存的条目，唤醒等待者时使用
+        volatile CachedResponse stored;
+
+        CachingResponse(ServerWebExchange exchange, Config config, String routeId, String key,
+                        CachedResponse stale, boolean revalidating, List<String> clientEtags) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.config = config;
+            this.routeId = routeId;
+            this.key = key;
+            this.stale = stale;
+            this.revalidating = revalidating;
+            this.clientEtags = clientEtags;
+            exchange.getResponse().getHeaders().forEach((name, values) -> gatewayHeaders.put(name, new ArrayList<>(values)));
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = getStatusCode();
+            long now = System.currentTimeMillis();
+
+            // 1. 重新验证通过
+            if (revalidating && status == HttpStatus.NOT_MODIFIED) {
+                long fresh = freshMillis(exchange.getRequest().getHeaders(), getHeaders(), config);
+                CachedResponse entry = stale.revalidated(now, Math.max(fresh, 0), staleIfErrorMillis(config));
+                store.put(key, entry);
+                stored = entry;
+                return replaceWith(body, entry, ResponseCacheStore.RESULT_REVALIDATED);
+            }
+
+            // 2. 上游 5xx，返回旧响应
+            if (status != null && status.is5xxServerError() && stale != null && stale.isUsableOnError(now)) {
+                log.warn("路由 {} 上游返回 {}，返回缓存的旧响应", routeId, status.value());
+                return replaceWith(body, stale, ResponseCacheStore.RESULT_STALE);
+            }
+
+            store.record(routeId, ResponseCacheStore.RESULT_MISS);
+            long fresh = status == HttpStatus.OK ? freshMillis(exchange.getRequest().getHeaders(), getHeaders(), config) : -1;
+            long contentLength = getHeaders().getContentLength();
+            if (fresh < 0 || contentLength > store.getMaxEntryBytes()) {
+                return super.writeWith(body);
+            }
+
+            // 3. 边写边拷贝，上游正常结束后保存
+            HttpHeaders headers = storedHeaders(getHeaders());
+            getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+            ByteArrayOutputStream copy = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : 256);
+            int limit = store.getMaxEntryBytes();
+            boolean[] overflow = {false};
+            Flux<? extends DataBuffer> captured = Flux.from(body)
+                    .doOnNext(buffer -> {
+                        int readable = buffer.readableByteCount();
+                        if (overflow[0] || copy.size() + readable > limit) {
+                            overflow[0] = true;
+                            return;
+                        }
+                        byte[] bytes = new byte[readable];
+                        int position = buffer.readPosition();
+                        buffer.read(bytes);
+                        buffer.readPosition(position);
+                        copy.write(bytes, 0, readable);
+                    })
+                    .doOnComplete(() -> {
+                        if (!overflow[0]) {
+                            CachedResponse entry = CachedResponse.heap(status, headers, copy.toByteArray(),
+                                    System.currentTimeMillis(), fresh, staleIfErrorMillis(config));
+                            store.put(key, entry);
+                            stored = entry;
+                        }
+                    });
+            return super.writeWith(captured);
+        }
+
+        /**
+         * 丢弃上游响应 (状态码、响应头、响应体)，改为写出缓存条目；网关自己写入的响应头保留
+         */
+        private Mono<Void> replaceWith(Publisher<? extends DataBuffer> body, CachedResponse entry, String result) {
+            return Flux.from(body)
+                    .doOnNext(DataBufferUtils::release)
+                    .then(Mono.defer(() -> {
+                        getHeaders().clear();
+                        getHeaders().putAll(gatewayHeaders);
+                        if (!serve(exchange, entry, result, routeId, clientEtags)) {
+                            setStatusCode(HttpStatus.BAD_GATEWAY);
+                            return super.setComplete();
+                        }
+                        Object buffer = exchange.getAttributes().remove(CACHE_BODY_ATTR);
+                        return buffer instanceof DataBuffer data ? super.writeWith(Mono.just(data)) : super.setComplete();
+                    }));
+        }
+    }
+
+    @Data
+    public static class Config {
+        // 新鲜期，为空时使用 gateway.cache.default-ttl；响应的 s-maxage/max-age 优先
+        private Duration ttl;
+        // 过期后上游出错时还能返回旧响应的时长
+        private Duration staleIfError;
+        // 参与 Key 的请求头 (如 X-User-Id 按用户缓存)
+        private List<String> varyHeaders = new ArrayList<>();
+    }
+}
@@ -0,0 +1,154 @@
+package com.rcpawn.gateway.accesslog;
+
+import com.rcpawn.common.entity.GatewayLogDTO;
+import com.rcpawn.common.util.GatewayLogBatchCodec;
+import com.rcpawn.util.RingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志批量投递
+ * 核心逻辑：请求线程只把日志写入无锁环形缓冲区 -> 独立投递线程攒批 (满 batch-size 条或等待 flush-interval-ms) -> 整批 GZIP 后发一条 MQ 消息
+ * 1. 缓冲区满时直接丢弃并计数 (gateway.accesslog.dropped)，代理链路永远不会因为日志阻塞
+ * 2. MQ 发送失败同样丢弃整批并计数，不重试，避免日志积压拖垮网关
+ */
+@Slf4j
+@Component
+public class AccessLogShipper {
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.access-log.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${gateway.access-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${gateway.access-log.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    // 缓冲区为空时投递线程的休眠时间
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private RingBuffer<GatewayLogDTO> buffer;
+    private Thread shipperThread;
+    private volatile boolean running;
+
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private Counter shippedCounter;
+    private Counter batchCounter;
+
+    @PostConstruct
+    public void init() {
+        buffer = new RingBuffer<>(bufferSize);
+
+        droppedCounter = Counter.builder("gateway.accesslog.dropped")
+                .description("缓冲区已满被丢弃的访问日志条数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("gateway.accesslog.failed")
+                .description("MQ 发送失败被丢弃的访问日志条数")
+                .register(meterRegistry);
+        shippedCounter = Counter.builder("gateway.accesslog.shipped")
+                .description("已发送的访问日志条数")
+                .register(meterRegistry);
+        batchCounter = Counter.builder("gateway.accesslog.batches")
+                .description("已发送的批次数")
+                .register(meterRegistry);
+        Gauge.builder("gateway.accesslog.buffered", buffer, RingBuffer::size)
+                .description("缓冲区中待发送的访问日志条数")
+                .register(meterRegistry);
+
+        running = true;
+        shipperThread = new Thread(this::runLoop, "access-log-shipper");
+        shipperThread.setDaemon(true);
+        shipperThread.start();
+    }
+
+    /**
+     * 提交一条访问日志 (热路径，无锁、不阻塞)
+     */
+    public void submit(GatewayLogDTO accessLog) {
+        if (!buffer.offer(accessLog)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void runLoop() {
+        List<GatewayLogDTO> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+
+        while (running) {
+            try {
+                // 1. 尽量攒满一批
+                int drained = buffer.drainTo(batch, batchSize - batch.size());
+                if (!batch.isEmpty() && batchStart == 0) {
+                    batchStart = System.nanoTime();
+                }
+
+                // 2. 满批或等待超时则发送
+                if (batch.size() >= batchSize
+                        || (!batch.isEmpty() && System.nanoTime() - batchStart >= TimeUnit.MILLISECONDS.toNanos(flushIntervalMs))) {
+                    ship(batch);
+                    batch = new ArrayList<>(batchSize);
+                    batchStart = 0;
+                } else if (drained == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (Throwable e) {
+                // 投递线程不能退出，出错的批次直接丢弃
+                log.error("访问日志投递线程异常", e);
+                batch = new ArrayList<>(batchSize);
+                batchStart = 0;
+            }
+        }
+
+        // 3. 停机前把剩余日志发完
+        buffer.drainTo(batch, Integer.MAX_VALUE);
+        if (!batch.isEmpty()) {
+            ship(batch);
+        }
+    }
+
+    private void ship(List<GatewayLogDTO> batch) {
+        try {
+            Message message = MessageBuilder.withBody(GatewayLogBatchCodec.encode(batch))
+                    .setContentType(GatewayLogBatchCodec.CONTENT_TYPE)
+                    .setContentEncoding(GatewayLogBatchCodec.CONTENT_ENCODING)
+                    .setHeader(GatewayLogBatchCodec.HEADER_BATCH_SIZE, batch.size())
+                    .build();
+            rabbitTemplate.send(GatewayLogBatchCodec.QUEUE, message);
+            shippedCounter.increment(batch.size());
+            batchCounter.increment();
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.warn("访问日志批量发送失败，丢弃 {} 条: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(shipperThread);
+        shipperThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
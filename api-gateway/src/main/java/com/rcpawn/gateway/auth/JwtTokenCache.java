@@ -0,0 +1,149 @@
+package com.rcpawn.gateway.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.rcpawn.common.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 校验结果缓存
+ * 核心逻辑：Token 取 SHA-256 摘要作为 Key -> 命中直接返回 UserID -> 未命中才走 HS512 验签
+ * 1. 正向缓存：条目在 Token 的 exp 时刻过期，过期后自然回源重新校验 (得到失败结果)
+ * 2. 负向缓存：非法/过期 Token 单独缓存一小段时间，防止同一个垃圾 Token 反复消耗 CPU
+ * 命中率通过 Micrometer 暴露：/actuator/metrics/cache.gets?tag=cache:jwt.valid
+ */
+@Component
+public class JwtTokenCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.auth.token-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${gateway.auth.token-cache.negative-max-size:10000}")
+    private long negativeMaxSize;
+
+    @Value("${gateway.auth.token-cache.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+
+    // 没有 exp 的 Token 最多缓存 10 分钟
+    private static final long DEFAULT_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    // 超长 Token 一律视为垃圾，不做摘要也不解析
+    private static final int MAX_TOKEN_LENGTH = 4096;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private Cache<String, TokenInfo> validTokens;
+    private Cache<String, Boolean> invalidTokens;
+
+    @PostConstruct
+    public void init() {
+        validTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, TokenInfo>() {
+                    @Override
+                    public long expireAfterCreate(String key, TokenInfo info, long currentTime) {
+                        if (info.expiresAt() <= 0) return DEFAULT_TTL_NANOS;
+                        long remainMs = info.expiresAt() - System.currentTimeMillis();
+                        return Math.max(0, TimeUnit.MILLISECONDS.toNanos(remainMs));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TokenInfo info, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TokenInfo info, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        invalidTokens = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, validTokens, "jwt.valid");
+        CaffeineCacheMetrics.monitor(meterRegistry, invalidTokens, "jwt.invalid");
+    }
+
+    /**
+     * 校验 Token 并返回 UserID，非法返回 null
+     */
+    public String getUserId(String token) {
+        // 1. 结构预检：JWS 必须是 header.payload.signature 三段
+        if (!looksLikeJws(token)) {
+            return null;
+        }
+
+        String key = digest(token);
+
+        // 2. 正向缓存
+        TokenInfo info = validTokens.getIfPresent(key);
+        if (info != null) {
+            // 兜底：过期清理是惰性的，这里再确认一次
+            if (info.expiresAt() <= 0 || info.expiresAt() > System.currentTimeMillis()) {
+                return info.userId();
+            }
+            validTokens.invalidate(key);
+        }
+
+        // 3. 负向缓存
+        if (invalidTokens.getIfPresent(key) != null) {
+            return null;
+        }
+
+        // 4. 回源验签
+        Claims claims = JwtUtil.parseToken(token);
+        if (claims == null || claims.getSubject() == null) {
+            invalidTokens.put(key, Boolean.TRUE);
+            return null;
+        }
+
+        Date exp = claims.getExpiration();
+        validTokens.put(key, new TokenInfo(claims.getSubject(), exp != null ? exp.getTime() : 0));
+        return claims.getSubject();
+    }
+
+    private static boolean looksLikeJws(String token) {
+        int length = token.length();
+        if (length == 0 || length > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        int first = token.indexOf('.');
+        return first > 0 && token.indexOf('.', first + 1) > first + 1;
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        // 32 字节摘要直接按 Latin-1 转成 32 字符的紧凑 Key
+        return new String(hash, StandardCharsets.ISO_8859_1);
+    }
+
+    private record TokenInfo(String userId, long expiresAt) {
+    }
+}
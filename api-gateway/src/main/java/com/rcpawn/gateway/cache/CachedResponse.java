@@ -0,0 +1,151 @@
+package com.rcpawn.gateway.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.IllegalReferenceCountException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+/**
+ * 一条缓存的上游响应 (状态码 + 响应头 + 响应体)
+ * 核心逻辑：堆内层响应体为 byte[] -> 被堆内层淘汰时拷贝一份到直接内存 (堆外层) -> 命中时按层包装为 DataBuffer 写出，不再拷贝
+ * 1. 对象不可变，重新验证 (304) 后生成新对象替换，响应体 byte[] 可以共享
+ * 2. 堆外响应体由堆外层持有一个引用计数，写出时取 retainedSlice；条目被淘汰时释放，正在写出的切片不受影响
+ */
+public final class CachedResponse {
+
+    private static final NettyDataBufferFactory DIRECT_FACTORY = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final byte[] heapBody;
+    private final ByteBuf directBody;
+    private final String etag;
+    private final long storedAtMillis;
+    private final long freshUntilMillis;
+    private final long staleUntilMillis;
+
+    private CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] heapBody, ByteBuf directBody, String etag,
+                           long storedAtMillis, long freshUntilMillis, long staleUntilMillis) {
+        this.status = status;
+        this.headers = headers;
+        this.heapBody = heapBody;
+        this.directBody = directBody;
+        this.etag = etag;
+        this.storedAtMillis = storedAtMillis;
+        this.freshUntilMillis = freshUntilMillis;
+        this.staleUntilMillis = staleUntilMillis;
+    }
+
+    /**
+     * 堆内条目 (headers 需已去掉逐跳头)
+     */
+    public static CachedResponse heap(HttpStatusCode status, HttpHeaders headers, byte[] body,
+                                      long now, long freshMillis, long staleIfErrorMillis) {
+        long freshUntil = now + freshMillis;
+        return new CachedResponse(status, HttpHeaders.readOnlyHttpHeaders(headers), body, null, headers.getETag(),
+                now, freshUntil, freshUntil + staleIfErrorMillis);
+    }
+
+    /**
+     * 拷贝一份存放在直接内存中的条目 (降级到堆外层时调用)
+     */
+    CachedResponse toDirect() {
+        byte[] body = heapBody();
+        ByteBuf buf = UnpooledByteBufAllocator.DEFAULT.directBuffer(body.length, body.length).writeBytes(body);
+        return new CachedResponse(status, headers, null, buf, etag, storedAtMillis, freshUntilMillis, staleUntilMillis);
+    }
+
+    /**
+     * 上游返回 304 后刷新新鲜期 (存回堆内层)
+     */
+    public CachedResponse revalidated(long now, long freshMillis, long staleIfErrorMillis) {
+        long freshUntil = now + freshMillis;
+        return new CachedResponse(status, headers, heapBody(), null, etag, now, freshUntil, freshUntil + staleIfErrorMillis);
+    }
+
+    /**
+     * 写出用的响应体；堆外条目已被淘汰释放时返回 null (按未命中处理)
+     */
+    public DataBuffer body() {
+        if (heapBody != null) {
+            return DefaultDataBufferFactory.sharedInstance.wrap(heapBody);
+        }
+        try {
+            return DIRECT_FACTORY.wrap(directBody.retainedSlice());
+        } catch (IllegalReferenceCountException e) {
+            return null;
+        }
+    }
+
+    private byte[] heapBody() {
+        if (heapBody != null) {
+            return heapBody;
+        }
+        byte[] copy = new byte[directBody.readableBytes()];
+        directBody.getBytes(directBody.readerIndex(), copy);
+        return copy;
+    }
+
+    void release() {
+        if (directBody != null) {
+            directBody.release();
+        }
+    }
+
+    public boolean isFresh(long now) {
+        return now < freshUntilMillis;
+    }
+
+    /**
+     * 上游出错时是否还能返回这条过期响应
+     */
+    public boolean isUsableOnError(long now) {
+        return now < staleUntilMillis;
+    }
+
+    public long getAgeSeconds(long now) {
+        return Math.max(0, now - storedAtMillis) / 1000;
+    }
+
+    long getStaleUntilMillis() {
+        return staleUntilMillis;
+    }
+
+    /**
+     * 估算占用字节数 (响应体 + 响应头)
+     */
+    int weight() {
+        int size = heapBody != null ? heapBody.length : directBody.readableBytes();
+        for (var entry : headers.entrySet()) {
+            size += entry.getKey().length();
+            for (String value : entry.getValue()) {
+                size += value.length();
+            }
+        }
+        return size;
+    }
+
+    public boolean isDirect() {
+        return directBody != null;
+    }
+
+    public int getBodyLength() {
+        return heapBody != null ? heapBody.length : directBody.readableBytes();
+    }
+
+    public HttpStatusCode getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
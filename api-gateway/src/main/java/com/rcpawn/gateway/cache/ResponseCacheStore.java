@@ -0,0 +1,240 @@
+package com.rcpawn.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 网关响应缓存存储 (所有配置了 ResponseCache 的路由共享)
+ * 核心逻辑：查堆内层 (Caffeine, byte[]) -> 查堆外层 (Caffeine, 直接内存) -> 未命中时同一个 Key 只放一个请求回源，其余请求等待它的结果
+ * 1. 两层都按字节数加权淘汰，条目在 "新鲜期 + stale-if-error 窗口" 结束后过期
+ * 2. 堆外层默认关闭；开启后堆内层因容量淘汰的条目降级到堆外层，大量缓存内容不再增加 GC 压力
+ * 3. 命中率、两层占用的内存通过 /dashboard/metrics/cache 和 Micrometer 暴露
+ */
+@Component
+public class ResponseCacheStore {
+
+    public static final String RESULT_HIT = "hit";
+    public static final String RESULT_MISS = "miss";
+    public static final String RESULT_STALE = "stale";
+    public static final String RESULT_REVALIDATED = "revalidated";
+    public static final String RESULT_BYPASS = "bypass";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.cache.heap-max-bytes:67108864}")
+    private long heapMaxBytes;
+
+    @Value("${gateway.cache.off-heap.enabled:false}")
+    private boolean offHeapEnabled;
+
+    @Value("${gateway.cache.off-heap.max-bytes:268435456}")
+    private long offHeapMaxBytes;
+
+    // 单条响应体上限，超过的响应不缓存
+    @Value("${gateway.cache.max-entry-bytes:1048576}")
+    private int maxEntryBytes;
+
+    private Cache<String, CachedResponse> heap;
+    private Cache<String, CachedResponse> offHeap;
+
+    // 正在回源的 Key -> 等待结果的请求共享的 Sink
+    private final Map<String, Sinks.One<CachedResponse>> loading = new ConcurrentHashMap<>();
+
+    // routeId -> 各结果的计数
+    private final Map<String, RouteStats> stats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        heap = Caffeine.newBuilder()
+                .maximumWeight(heapMaxBytes)
+                .weigher((String key, CachedResponse value) -> value.weight())
+                .expireAfter(new StaleExpiry())
+                .evictionListener((String key, CachedResponse value, RemovalCause cause) -> demote(key, value, cause))
+                .build();
+        offHeap = Caffeine.newBuilder()
+                .maximumWeight(offHeapMaxBytes)
+                .weigher((String key, CachedResponse value) -> value.weight())
+                .expireAfter(new StaleExpiry())
+                .removalListener((String key, CachedResponse value, RemovalCause cause) -> {
+                    if (value != null) value.release();
+                })
+                .build();
+
+        Gauge.builder("gateway.cache.bytes", this, s -> s.weightedSize(s.heap)).tag("tier", "heap")
+                .description("响应缓存占用的字节数").register(meterRegistry);
+        Gauge.builder("gateway.cache.bytes", this, s -> s.weightedSize(s.offHeap)).tag("tier", "off-heap")
+                .description("响应缓存占用的字节数").register(meterRegistry);
+    }
+
+    /**
+     * 先查堆内层，再查堆外层 (不区分新鲜/过期，由调用方判断)
+     */
+    public CachedResponse lookup(String key) {
+        CachedResponse entry = heap.getIfPresent(key);
+        if (entry == null && offHeapEnabled) {
+            entry = offHeap.getIfPresent(key);
+        }
+        return entry;
+    }
+
+    public void put(String key, CachedResponse entry) {
+        heap.put(key, entry);
+        if (offHeapEnabled) {
+            offHeap.invalidate(key);
+        }
+    }
+
+    /**
+     * 申请回源：返回 null 表示当前请求负责回源 (完成后必须调用 complete)；否则返回正在进行的回源结果
+     * 结果为空表示那次回源没有产生可缓存的响应
+     */
+    public Mono<CachedResponse> join(String key) {
+        Sinks.One<CachedResponse> sink = Sinks.one();
+        Sinks.One<CachedResponse> existing = loading.putIfAbsent(key, sink);
+        return existing == null ? null : existing.asMono();
+    }
+
+    /**
+     * 回源结束：唤醒等待的请求 (entry 为 null 时它们各自回源)
+     */
+    public void complete(String key, CachedResponse entry) {
+        Sinks.One<CachedResponse> sink = loading.remove(key);
+        if (sink == null) {
+            return;
+        }
+        if (entry != null) {
+            sink.tryEmitValue(entry);
+        } else {
+            sink.tryEmitEmpty();
+        }
+    }
+
+    public void record(String routeId, String result) {
+        stats.computeIfAbsent(routeId, this::createStats).record(result);
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * 各路由命中率与两层的内存占用 (Dashboard 展示)
+     */
+    public Map<String, Object> snapshot() {
+        List<Map<String, Object>> routes = new ArrayList<>();
+        stats.forEach((routeId, s) -> {
+            long hits = s.hit.sum() + s.revalidated.sum() + s.stale.sum();
+            long lookups = hits + s.miss.sum();
+            Map<String, Object> map = new HashMap<>();
+            map.put("route", routeId);
+            map.put("hit", s.hit.sum());
+            map.put("miss", s.miss.sum());
+            map.put("stale", s.stale.sum());
+            map.put("revalidated", s.revalidated.sum());
+            map.put("bypass", s.bypass.sum());
+            map.put("hitRatio", lookups == 0 ? 0 : Math.round(hits * 1000.0 / lookups) / 10.0);
+            routes.add(map);
+        });
+        routes.sort((a, b) -> ((String) a.get("route")).compareTo((String) b.get("route")));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("routes", routes);
+        result.put("heapEntries", heap.estimatedSize());
+        result.put("heapBytes", weightedSize(heap));
+        result.put("heapMaxBytes", heapMaxBytes);
+        result.put("offHeapEnabled", offHeapEnabled);
+        result.put("offHeapEntries", offHeap.estimatedSize());
+        result.put("offHeapBytes", weightedSize(offHeap));
+        result.put("offHeapMaxBytes", offHeapMaxBytes);
+        return result;
+    }
+
+    /**
+     * 堆内层因容量淘汰的条目降级到堆外层 (过期的不降级)；在淘汰时同步执行，降级期间不会出现两层都查不到的窗口
+     */
+    private void demote(String key, CachedResponse value, RemovalCause cause) {
+        if (!offHeapEnabled || cause != RemovalCause.SIZE || value == null
+                || !value.isUsableOnError(System.currentTimeMillis())) {
+            return;
+        }
+        offHeap.put(key, value.toDirect());
+    }
+
+    private long weightedSize(Cache<String, CachedResponse> cache) {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private RouteStats createStats(String routeId) {
+        RouteStats s = new RouteStats();
+        for (String result : List.of(RESULT_HIT, RESULT_MISS, RESULT_STALE, RESULT_REVALIDATED, RESULT_BYPASS)) {
+            s.counters.put(result, Counter.builder("gateway.cache.requests")
+                    .tag("route", routeId)
+                    .tag("result", result)
+                    .description("响应缓存查询结果")
+                    .register(meterRegistry));
+        }
+        return s;
+    }
+
+    /**
+     * 条目在 stale-if-error 窗口结束时过期
+     */
+    private static class StaleExpiry implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+            long remainingMillis = value.getStaleUntilMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static class RouteStats {
+        final LongAdder hit = new LongAdder();
+        final LongAdder miss = new LongAdder();
+        final LongAdder stale = new LongAdder();
+        final LongAdder revalidated = new LongAdder();
+        final LongAdder bypass = new LongAdder();
+        final Map<String, Counter> counters = new HashMap<>();
+
+        void record(String result) {
+            switch (result) {
+                case RESULT_HIT -> hit.increment();
+                case RESULT_MISS -> miss.increment();
+                case RESULT_STALE -> stale.increment();
+                case RESULT_REVALIDATED -> revalidated.increment();
+                default -> bypass.increment();
+            }
+            counters.get(result).increment();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.rcpawn.gateway.coalesce;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 正在回源的请求表 (所有开启 RequestCoalescing 的路由共享)
+ * 核心逻辑：请求 Key 不在表中 -> 登记为首个请求并回源 -> 相同 Key 的后续请求加入它 -> 首个请求结束后移出表
+ * 1. 只合并"同时在途"的请求，不保存已完成的响应 (需要缓存请使用 ResponseCache)
+ * 2. 所有共享响应体占用的直接内存受 gateway.coalesce.max-total-bytes 约束，超出时新的调用不再共享
+ */
+@Component
+public class CoalescingRegistry {
+
+    public static final String RESULT_LEADER = "leader";
+    public static final String RESULT_JOINED = "joined";
+    public static final String RESULT_FALLBACK = "fallback";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 所有共享响应体合计的内存上限
+    @Value("${gateway.coalesce.max-total-bytes:33554432}")
+    private long maxTotalBytes;
+
+    private final Map<String, InflightCall> inflight = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("gateway.coalesce.inflight", inflight, Map::size)
+                .description("可被合并的在途回源调用数")
+                .register(meterRegistry);
+        Gauge.builder("gateway.coalesce.bytes", usedBytes, AtomicLong::get)
+                .description("共享响应体占用的直接内存字节数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 登记一次回源：返回 null 表示当前请求是首个请求 (call 已登记)，否则返回正在进行的调用
+     */
+    public InflightCall register(String key, InflightCall call) {
+        return inflight.putIfAbsent(key, call);
+    }
+
+    /**
+     * 首个请求结束，移出表 (之后的相同请求重新回源)
+     */
+    public void unregister(String key, InflightCall call) {
+        inflight.remove(key, call);
+    }
+
+    public InflightCall newCall(int maxBodyBytes) {
+        return new InflightCall(this, maxBodyBytes);
+    }
+
+    boolean reserveBudget(long bytes) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + bytes > maxTotalBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseBudget(long bytes) {
+        if (bytes > 0) {
+            usedBytes.addAndGet(-bytes);
+        }
+    }
+
+    public void record(String routeId, String result) {
+        counters.computeIfAbsent(routeId + "|" + result, k -> Counter.builder("gateway.coalesce.requests")
+                .tag("route", routeId)
+                .tag("result", result)
+                .description("请求合并结果：leader 回源，joined 共享首个请求的响应，fallback 未能共享而自行回源")
+                .register(meterRegistry)).increment();
+    }
+}
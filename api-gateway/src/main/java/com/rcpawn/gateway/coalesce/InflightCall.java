@@ -0,0 +1,171 @@
+package com.rcpawn.gateway.coalesce;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次正在进行的回源调用 (合并的请求共享它的响应)
+ * 核心逻辑：首个请求回源，上游响应体边写给它边拷贝到一块直接内存 -> 响应结束后发布 状态码 + 响应头 + 响应体 -> 等待的请求各取一个 retainedSlice 写出
+ * 1. 响应体只保存一份，所有跟随者共享底层内存，各自的切片读写指针独立
+ * 2. 引用计数 holders：首个请求 1 个，每个加入的跟随者 1 个，全部离开后释放内存并归还全局预算
+ * 3. 响应体超过上限、全局预算不足或回源失败时放弃共享，跟随者各自回源
+ */
+public class InflightCall {
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private final CoalescingRegistry registry;
+    private final int maxBodyBytes;
+    private final Sinks.One<InflightCall> result = Sinks.one();
+    private final AtomicInteger holders = new AtomicInteger(1);
+
+    private HttpStatusCode status;
+    private HttpHeaders headers;
+    private ByteBuf body;
+    private int expectedLength;
+    private long reserved;
+    private boolean abandoned;
+
+    InflightCall(CoalescingRegistry registry, int maxBodyBytes) {
+        this.registry = registry;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * 跟随者加入；调用已结束 (内存已释放) 时返回 false
+     */
+    public boolean tryJoin() {
+        while (true) {
+            int current = holders.get();
+            if (current == 0) {
+                return false;
+            }
+            if (holders.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 首个请求结束或跟随者写出完成后调用
+     */
+    public void leave() {
+        if (holders.decrementAndGet() == 0) {
+            synchronized (this) {
+                if (body != null) {
+                    body.release();
+                    body = null;
+                }
+                registry.releaseBudget(reserved);
+                reserved = 0;
+            }
+        }
+    }
+
+    /**
+     * 首个请求开始写响应：记录状态码和响应头，预计的响应体超过上限时直接放弃
+     */
+    public boolean start(HttpStatusCode status, HttpHeaders headers, long contentLength) {
+        if (contentLength > maxBodyBytes) {
+            abandon();
+            return false;
+        }
+        synchronized (this) {
+            this.status = status;
+            this.headers = headers;
+            this.body = Unpooled.EMPTY_BUFFER;
+            this.expectedLength = (int) Math.max(contentLength, 0);
+        }
+        return true;
+    }
+
+    /**
+     * 拷贝一段上游响应体 (不移动原 buffer 的读指针)
+     */
+    public void append(DataBuffer buffer) {
+        synchronized (this) {
+            if (abandoned) {
+                return;
+            }
+            int readable = buffer.readableByteCount();
+            if (body.readableBytes() + readable <= maxBodyBytes && registry.reserveBudget(readable)) {
+                copy(buffer, readable);
+                return;
+            }
+        }
+        abandon();
+    }
+
+    private void copy(DataBuffer buffer, int readable) {
+        reserved += readable;
+        if (body == Unpooled.EMPTY_BUFFER) {
+            body = PooledByteBufAllocator.DEFAULT.directBuffer(Math.max(expectedLength, readable));
+        }
+        if (buffer instanceof NettyDataBuffer netty) {
+            ByteBuf source = netty.getNativeBuffer();
+            body.writeBytes(source, source.readerIndex(), readable);
+        } else {
+            byte[] bytes = new byte[readable];
+            int position = buffer.readPosition();
+            buffer.read(bytes);
+            buffer.readPosition(position);
+            body.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * 上游响应体结束：唤醒跟随者
+     */
+    public void complete() {
+        synchronized (this) {
+            if (abandoned || status == null) {
+                return;
+            }
+        }
+        // 在锁外唤醒，跟随者在当前线程写出时不持有锁
+        result.tryEmitValue(this);
+    }
+
+    /**
+     * 放弃共享 (跟随者收到空结果后各自回源)；已拷贝的内存在所有人离开后释放
+     */
+    public void abandon() {
+        synchronized (this) {
+            abandoned = true;
+        }
+        result.tryEmitEmpty();
+    }
+
+    public Mono<InflightCall> result() {
+        return result.asMono();
+    }
+
+    public HttpStatusCode getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public synchronized int getBodyLength() {
+        return body != null ? body.readableBytes() : 0;
+    }
+
+    /**
+     * 跟随者写出用的响应体切片 (调用方离开之前调用，此时内存一定还在)
+     */
+    public synchronized DataBuffer bodySlice() {
+        return BUFFER_FACTORY.wrap(body.retainedSlice());
+    }
+}
@@ -0,0 +1,171 @@
+package com.rcpawn.gateway.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发上限 (Gradient2 算法，单个路由一个实例)
+ * 核心逻辑：请求结束时记录 RTT -> 按采样窗口求平均 RTT (短期) -> 与长期 RTT 基线 (指数平均) 比较得到梯度 -> 上限 = 上限 × 梯度 + 排队余量，并做平滑
+ * 1. 短期 RTT 明显高于基线说明上游开始排队，上限随之收缩；RTT 回落后上限按 sqrt(limit) 的排队余量逐步增长
+ * 2. 在途请求不到上限一半时 (流量本身不足) 不调整，避免低峰期把上限"学"得过低或过高
+ * 3. 基线远高于短期 RTT 时 (上游恢复、基线被拉高) 按比例衰减，使基线能跟上上游容量变化
+ * 4. 请求线程只做 CAS 计数和 LongAdder 累加，窗口结束时由一个线程完成计算
+ */
+public class GradientLimiter {
+
+    // 窗口至少包含的样本数与最短/最长时长
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 长期 RTT 的指数平均窗口 (以采样窗口为单位)
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    // RTT 容忍度：短期 RTT 不超过基线的 tolerance 倍时不收缩
+    private final double rttTolerance;
+    // 新上限的平滑系数
+    private final double smoothing;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+    private volatile double estimatedLimit;
+    private volatile double longRttNanos;
+    private volatile double lastRttNanos;
+
+    // 当前采样窗口
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final AtomicInteger maxInflight = new AtomicInteger();
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public GradientLimiter(int initialLimit, int minLimit, int maxLimit, double rttTolerance, double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 占用一个在途名额，已达上限时返回 false
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                maxInflight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求完成：释放名额并记录 RTT
+     */
+    public void onSuccess(long rttNanos) {
+        inflight.decrementAndGet();
+        rttSum.add(rttNanos);
+        samples.increment();
+        maybeUpdate(System.nanoTime());
+    }
+
+    /**
+     * 请求被取消或出错 (客户端断开、连接失败等)：只释放名额，不作为样本
+     * 快速失败的 RTT 会把基线拉低，超时的 RTT 又只反映超时配置，两者都不代表上游的排队情况
+     */
+    public void onIgnore() {
+        inflight.decrementAndGet();
+    }
+
+    private void maybeUpdate(long now) {
+        long start = windowStart.get();
+        long elapsed = now - start;
+        long count = samples.sum();
+        boolean windowDone = (elapsed >= MIN_WINDOW_NANOS && count >= MIN_WINDOW_SAMPLES)
+                || (elapsed >= MAX_WINDOW_NANOS && count > 0);
+        if (!windowDone || !updating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!windowStart.compareAndSet(start, now)) {
+                return;
+            }
+            // 1. 取出本窗口的样本
+            long sum = rttSum.sumThenReset();
+            long n = samples.sumThenReset();
+            int peakInflight = maxInflight.getAndSet(inflight.get());
+            if (n == 0) {
+                return;
+            }
+            update((double) sum / n, peakInflight);
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    private void update(double shortRtt, int peakInflight) {
+        lastRttNanos = shortRtt;
+
+        // 2. 更新长期基线 (首个窗口直接作为基线)
+        double longRtt = longRttNanos == 0 ? shortRtt : longRttNanos + (shortRtt - longRttNanos) / LONG_WINDOW;
+        if (longRtt / shortRtt > 2) {
+            // 基线被拉高 (上游刚从过载中恢复)，加速回落
+            longRtt *= 0.95;
+        }
+        longRttNanos = longRtt;
+
+        double current = estimatedLimit;
+        // 3. 流量不足以探测容量时保持不变
+        if (peakInflight < current / 2) {
+            return;
+        }
+
+        // 4. 梯度限制在 [0.5, 1]，每个窗口最多收缩一半
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+        double queueSize = Math.sqrt(current);
+        double next = current * gradient + queueSize;
+        next = current * (1 - smoothing) + next * smoothing;
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+
+        estimatedLimit = next;
+        limit = (int) next;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 最近一个采样窗口的平均 RTT (毫秒)
+     */
+    public double getRttMillis() {
+        return lastRttNanos / 1_000_000d;
+    }
+
+    /**
+     * 长期 RTT 基线 (毫秒)
+     */
+    public double getBaselineRttMillis() {
+        return longRttNanos / 1_000_000d;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -2,25 +2,43 @@ package com.rcpawn.gateway.dynamic;
 
 import com.alibaba.cloud.nacos.NacosConfigManager;
 import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
 import com.alibaba.nacos.api.config.listener.Listener;
 import com.alibaba.nacos.api.exception.NacosException;
+import com.rcpawn.entity.GatewayRouteEntity;
+import com.rcpawn.gateway.upstream.UpstreamPoolRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinition;
 import org.springframework.cloud.gateway.route.RouteDefinitionWriter;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Nacos 动态路由监听器
- * 核心逻辑：Nacos发生改变 -> 获取配置 -> 更新网关路由 -> 发布刷新事件
+ * 核心逻辑：Nacos发生改变 -> 获取配置 -> 与已加载路由 Diff -> 增量更新网关路由 -> 发布(局部)刷新事件
+ * 路由上的 hedge 配置 (GatewayRouteEntity.hedge) 在这里转换为 Hedge 过滤器，pool 配置转换为 metadata.upstream-pool
  */
 @Slf4j
 @Component
@@ -32,11 +50,34 @@ public class DynamicRouteLoader implements ApplicationEventPublisherAware {
     @Autowired
     private RouteDefinitionWriter routeDefinitionWriter; // 网关提供的增删改路由接口
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private ApplicationEventPublisher publisher;
 
+    // 当前已加载的路由 (routeId -> 定义)，用于 Diff
+    private final Map<String, RouteDefinition> loadedRoutes = new HashMap<>();
+
+    // 变更条数超过该值时直接全量刷新 (逐条局部刷新的总成本会超过一次全量重建)
+    @Value("${gateway.routes.scoped-refresh-threshold:32}")
+    private int scopedRefreshThreshold;
+
+    private Timer reloadTimer;
+    private Counter addedCounter;
+    private Counter updatedCounter;
+    private Counter deletedCounter;
+
     // Nacos 配置的 DataId，必须和 YAML 里配置的一致
     private static final String DATA_ID = "api-gateway-routes.json";
     private static final String GROUP = "DEFAULT_GROUP";
+    // 局部刷新使用的 metadata Key
+    private static final String RELOAD_SCOPE_KEY = "reload-scope";
+    private static final Duration WRITE_TIMEOUT = Duration.ofSeconds(10);
+    // 路由 JSON 中的对冲配置 (GatewayRouteEntity.hedge)
+    private static final String HEDGE_KEY = "hedge";
+    private static final String HEDGE_FILTER_NAME = "Hedge";
+    // 路由 JSON 中的上游连接池配置 (GatewayRouteEntity.pool)
+    private static final String POOL_KEY = "pool";
 
     @Override
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
@@ -48,6 +89,12 @@ public class DynamicRouteLoader implements ApplicationEventPublisherAware {
      */
     @PostConstruct
     public void init() {
+        reloadTimer = Timer.builder("gateway.routes.reload").description("Nacos 路由增量刷新耗时").register(meterRegistry);
+        addedCounter = Counter.builder("gateway.routes.changed").tag("type", "added").register(meterRegistry);
+        updatedCounter = Counter.builder("gateway.routes.changed").tag("type", "updated").register(meterRegistry);
+        deletedCounter = Counter.builder("gateway.routes.changed").tag("type", "deleted").register(meterRegistry);
+        Gauge.builder("gateway.routes.loaded", loadedRoutes, Map::size).register(meterRegistry);
+
         try {
             // 1. 获取 Nacos Config Service
             String configInfo = nacosConfigManager.getConfigService()
@@ -75,33 +122,141 @@ public class DynamicRouteLoader implements ApplicationEventPublisherAware {
     }
 
     /**
-     * 解析 JSON 并更新路由
+     * 解析 JSON 并增量更新路由
+     * 1. 与当前已加载的路由做 Diff，只对新增/修改/删除的路由调用 RouteDefinitionWriter
+     * 2. 等待所有写入完成后再刷新，避免刷新时读到半成品
+     * 3. 变更较少时按路由发布带 metadata 的局部刷新事件，只重建变更的路由；变更过多时退化为一次全量刷新
      */
-    public void updateRoutes(String configInfo) {
+    public synchronized void updateRoutes(String configInfo) {
+        long start = System.nanoTime();
         try {
             // 1. 解析 JSON 为 RouteDefinition List
-            List<RouteDefinition> routeDefinitions = JSON.parseArray(configInfo, RouteDefinition.class);
+            JSONArray routeArray = JSON.parseArray(configInfo);
 
-            if (routeDefinitions == null) {
+            if (routeArray == null) {
                 return;
             }
 
-            // 2. 这里为了简单，先清空旧路由再添加新路由（生产环境建议做 Diff 差异更新）
-            // 注意：RouteDefinitionWriter 没有直接的 clear 方法，通常是先 delete 再 save
-            // 但由于此时无法获取旧路由 ID，这里简化为直接覆盖逻辑，
-            // 实际上 Gateway 底层是内存 Map，Save 同 ID 会覆盖。
-            
-            for (RouteDefinition definition : routeDefinitions) {
-                // 更新路由
-                routeDefinitionWriter.save(Mono.just(definition)).subscribe();
+            Map<String, RouteDefinition> newRoutes = new LinkedHashMap<>();
+            for (int i = 0; i < routeArray.size(); i++) {
+                JSONObject json = routeArray.getJSONObject(i);
+                RouteDefinition definition = json.to(RouteDefinition.class);
+                if (definition.getId() == null) {
+                    log.warn("忽略缺少 id 的路由: {}", definition);
+                    continue;
+                }
+                if (definition.getMetadata() == null) {
+                    definition.setMetadata(new HashMap<>());
+                }
+                // 打上局部刷新标记 (值为路由 ID，刷新事件据此只重建这一条路由)
+                definition.getMetadata().put(RELOAD_SCOPE_KEY, definition.getId());
+                // 对冲配置转换为 Hedge 过滤器，放在最后 (排在 ResponseCache/RequestCoalescing 之后)
+                GatewayRouteEntity.HedgeEntity hedge = json.getObject(HEDGE_KEY, GatewayRouteEntity.HedgeEntity.class);
+                if (hedge != null) {
+                    definition.getFilters().add(hedgeFilter(hedge));
+                }
+                // 连接池配置放进 metadata，由 UpstreamPoolRegistry 在转发时读取
+                GatewayRouteEntity.PoolEntity pool = json.getObject(POOL_KEY, GatewayRouteEntity.PoolEntity.class);
+                if (pool != null) {
+                    definition.getMetadata().put(UpstreamPoolRegistry.POOL_METADATA_KEY, poolMetadata(pool));
+                }
+                newRoutes.put(definition.getId(), definition);
             }
 
-            // 3. 发布刷新事件，让网关生效
-            this.publisher.publishEvent(new RefreshRoutesEvent(this));
-            log.info("路由更新成功，共加载 {} 条路由", routeDefinitions.size());
+            // 2. 计算 Diff
+            List<RouteDefinition> added = new ArrayList<>();
+            List<RouteDefinition> updated = new ArrayList<>();
+            List<String> deleted = new ArrayList<>();
+            for (RouteDefinition definition : newRoutes.values()) {
+                RouteDefinition old = loadedRoutes.get(definition.getId());
+                if (old == null) {
+                    added.add(definition);
+                } else if (!old.equals(definition)) {
+                    updated.add(definition);
+                }
+            }
+            for (String id : loadedRoutes.keySet()) {
+                if (!newRoutes.containsKey(id)) {
+                    deleted.add(id);
+                }
+            }
+
+            int changed = added.size() + updated.size() + deleted.size();
+            if (changed == 0) {
+                log.info("路由配置无变化，跳过刷新");
+                return;
+            }
+
+            // 3. 应用变更并等待写入完成
+            List<Mono<Void>> writes = new ArrayList<>();
+            for (RouteDefinition definition : added) {
+                writes.add(routeDefinitionWriter.save(Mono.just(definition)));
+            }
+            for (RouteDefinition definition : updated) {
+                writes.add(routeDefinitionWriter.save(Mono.just(definition)));
+            }
+            for (String id : deleted) {
+                writes.add(routeDefinitionWriter.delete(Mono.just(id))
+                        .onErrorResume(e -> {
+                            log.warn("删除路由 {} 失败: {}", id, e.getMessage());
+                            return Mono.empty();
+                        }));
+            }
+            Flux.merge(writes).then().block(WRITE_TIMEOUT);
+
+            loadedRoutes.clear();
+            loadedRoutes.putAll(newRoutes);
+
+            // 4. 发布刷新事件，让网关生效
+            if (changed > scopedRefreshThreshold) {
+                this.publisher.publishEvent(new RefreshRoutesEvent(this));
+            } else {
+                for (RouteDefinition definition : added) publishScopedRefresh(definition.getId());
+                for (RouteDefinition definition : updated) publishScopedRefresh(definition.getId());
+                for (String id : deleted) publishScopedRefresh(id);
+            }
+
+            reloadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            addedCounter.increment(added.size());
+            updatedCounter.increment(updated.size());
+            deletedCounter.increment(deleted.size());
+            log.info("路由增量更新成功，新增 {} 条，修改 {} 条，删除 {} 条，当前共 {} 条，耗时 {} ms",
+                    added.size(), updated.size(), deleted.size(), loadedRoutes.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
         } catch (Exception e) {
             log.error("路由配置解析失败", e);
         }
     }
-}
\ No newline at end of file
+
+    private static FilterDefinition hedgeFilter(GatewayRouteEntity.HedgeEntity hedge) {
+        FilterDefinition filter = new FilterDefinition();
+        filter.setName(HEDGE_FILTER_NAME);
+        filter.addArg("percentile", String.valueOf(hedge.getPercentile()));
+        filter.addArg("minDelay", hedge.getMinDelayMs() + "ms");
+        filter.addArg("budgetRatio", String.valueOf(hedge.getBudgetRatio()));
+        return filter;
+    }
+
+    private static Map<String, Object> poolMetadata(GatewayRouteEntity.PoolEntity pool) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        putIfPresent(metadata, "name", pool.getName());
+        putIfPresent(metadata, "max-connections", pool.getMaxConnections());
+        putIfPresent(metadata, "pending-acquire-max-count", pool.getPendingAcquireMaxCount());
+        putIfPresent(metadata, "pending-acquire-timeout", pool.getPendingAcquireTimeoutMs());
+        putIfPresent(metadata, "max-idle-time", pool.getMaxIdleTimeMs());
+        putIfPresent(metadata, "max-life-time", pool.getMaxLifeTimeMs());
+        putIfPresent(metadata, "h2c", pool.getH2c());
+        return metadata;
+    }
+
+    private static void putIfPresent(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    private void publishScopedRefresh(String routeId) {
+        this.publisher.publishEvent(new RefreshRoutesEvent(this, Map.of(RELOAD_SCOPE_KEY, routeId)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.rcpawn.gateway.hedge;
+
+import com.rcpawn.gateway.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单条路由的对冲策略
+ * 核心逻辑：每个请求记录首个响应的耗时 -> 定时汇总为按时间衰减的直方图 -> 取配置的分位数作为对冲延迟 -> 对冲前从预算中扣一个令牌
+ * 1. 直方图复用 LatencyHistogram 的对数分桶，记录只做一次数组累加；衰减后的计数保存在 double 数组里，旧样本的权重逐渐降低
+ * 2. 样本不足时延迟为 -1，不对冲 (冷启动时不知道什么算"慢")
+ * 3. 预算按比例发放：每个请求存入 budgetRatio 个令牌，对冲一次消耗 1 个，令牌数有上限，额外流量不超过 budgetRatio
+ */
+public class HedgePolicy {
+
+    // 令牌按千分之一存储，避免浮点累加
+    private static final long TOKEN_SCALE = 1000;
+
+    private final LatencyHistogram recent = new LatencyHistogram();
+    private final long[] drained = new long[LatencyHistogram.BUCKET_COUNT];
+    private final double[] decayed = new double[LatencyHistogram.BUCKET_COUNT];
+    private double decayedTotal;
+
+    private volatile long delayMs = -1;
+    private final AtomicLong tokens = new AtomicLong();
+
+    // 路由刷新后以最新的过滤器参数为准
+    private volatile double percentile;
+    private volatile long minDelayMs;
+    private volatile double budgetRatio;
+
+    void configure(double percentile, long minDelayMs, double budgetRatio) {
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * 记录一次请求的首个响应耗时 (热路径)
+     */
+    public void record(long latencyMs) {
+        recent.record(latencyMs);
+    }
+
+    /**
+     * 每个可对冲的请求存入预算
+     */
+    public void deposit(long maxTokens) {
+        long amount = (long) (budgetRatio * TOKEN_SCALE);
+        long cap = maxTokens * TOKEN_SCALE;
+        while (true) {
+            long current = tokens.get();
+            long next = Math.min(current + amount, cap);
+            if (next == current || tokens.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 对冲前扣一个令牌，预算不足返回 false
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKEN_SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 当前的对冲延迟 (毫秒)，-1 表示样本不足
+     */
+    public long getDelayMs() {
+        return delayMs;
+    }
+
+    public double getTokens() {
+        return tokens.get() / (double) TOKEN_SCALE;
+    }
+
+    /**
+     * 汇总新样本、衰减旧样本并重新计算分位数 (只在定时任务线程调用)
+     *
+     * @param decay      旧样本保留的权重 (0~1)
+     * @param minSamples 衰减后至少还有多少样本才计算
+     */
+    synchronized void recompute(double decay, long minSamples) {
+        recent.drainTo(drained);
+        double total = 0;
+        for (int i = 0; i < decayed.length; i++) {
+            decayed[i] = decayed[i] * decay + drained[i];
+            total += decayed[i];
+        }
+        decayedTotal = total;
+        if (total < minSamples) {
+            delayMs = -1;
+            return;
+        }
+        double rank = percentile * total;
+        double seen = 0;
+        for (int i = 0; i < decayed.length; i++) {
+            seen += decayed[i];
+            if (seen >= rank) {
+                delayMs = Math.max(minDelayMs, LatencyHistogram.bucketUpperBound(i));
+                return;
+            }
+        }
+    }
+
+    synchronized double getSamples() {
+        return decayedTotal;
+    }
+}
@@ -0,0 +1,95 @@
+package com.rcpawn.gateway.hedge;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对冲请求的路由策略表 (所有开启 Hedge 的路由共享)
+ * 核心逻辑：请求结束时记录耗时到所属路由的 HedgePolicy -> 每秒衰减汇总并重算对冲延迟 -> HedgeGatewayFilterFactory 读取延迟和预算决定是否对冲
+ * 1. 衰减窗口 gateway.hedge.window-seconds 控制延迟跟随上游变化的速度
+ * 2. 对冲结果记录到 gateway.hedge.requests{route,result}，当前延迟和剩余预算通过 Gauge 暴露
+ */
+@Component
+public class HedgeRegistry {
+
+    // 只发出首个请求
+    public static final String RESULT_PRIMARY = "primary";
+    // 发出了对冲请求，首个请求先返回
+    public static final String RESULT_PRIMARY_WON = "primary_won";
+    // 对冲请求先返回
+    public static final String RESULT_HEDGE_WON = "hedge_won";
+    // 达到对冲延迟但预算不足
+    public static final String RESULT_BUDGET_EXHAUSTED = "budget_exhausted";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 分位数统计的衰减窗口 (约等于最近多少秒的样本)
+    @Value("${gateway.hedge.window-seconds:30}")
+    private int windowSeconds;
+
+    // 窗口内至少多少个样本才开始对冲
+    @Value("${gateway.hedge.min-samples:100}")
+    private long minSamples;
+
+    // 每条路由最多攒下的对冲令牌数 (限制突发的对冲量)
+    @Value("${gateway.hedge.max-tokens:10}")
+    private long maxTokens;
+
+    private final Map<String, HedgePolicy> policies = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 获取路由的策略，并应用最新的过滤器参数
+     */
+    public HedgePolicy policy(String routeId, double percentile, long minDelayMs, double budgetRatio) {
+        HedgePolicy policy = policies.get(routeId);
+        if (policy == null) {
+            policy = policies.computeIfAbsent(routeId, this::createPolicy);
+        }
+        policy.configure(percentile, minDelayMs, budgetRatio);
+        return policy;
+    }
+
+    public long getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void record(String routeId, String result) {
+        counters.computeIfAbsent(routeId + "|" + result, k -> Counter.builder("gateway.hedge.requests")
+                .tag("route", routeId)
+                .tag("result", result)
+                .description("对冲请求结果")
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * 每秒衰减一次旧样本并重算各路由的对冲延迟
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void recompute() {
+        double decay = Math.exp(-1.0 / Math.max(1, windowSeconds));
+        policies.values().forEach(p -> p.recompute(decay, minSamples));
+    }
+
+    private HedgePolicy createPolicy(String routeId) {
+        HedgePolicy policy = new HedgePolicy();
+        Gauge.builder("gateway.hedge.delay", policy, HedgePolicy::getDelayMs)
+                .tag("route", routeId)
+                .description("当前的对冲延迟 (毫秒)，-1 表示样本不足")
+                .register(meterRegistry);
+        Gauge.builder("gateway.hedge.tokens", policy, HedgePolicy::getTokens)
+                .tag("route", routeId)
+                .description("剩余的对冲预算")
+                .register(meterRegistry);
+        return policy;
+    }
+}
@@ -0,0 +1,161 @@
+package com.rcpawn.gateway.loadbalance;
+
+import com.rcpawn.filter.HedgeGatewayFilterFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 延迟感知负载均衡 (Peak-EWMA + Power of Two Choices)
+ * 核心逻辑：从 Nacos 实例列表随机取两个未熔断的实例 -> 比较 "EWMA 延迟 × (在途数 + 1)" -> 选代价小的 -> 在途数 +1，结束时由 CoreGlobalFilter 回报耗时
+ * 1. 慢实例/GC 停顿的实例延迟和在途数都会升高，自然分到更少的流量；不需要全量排序，每次只比较两个
+ * 2. 随机两选一避免所有网关节点同时涌向"当前最快"的实例
+ * 3. 熔断中的实例不参与选择，半开的实例只放行有限的探测请求；候选全部不可用时退化为忽略熔断状态
+ * 4. 对冲请求不会选中首个请求已经选用的实例；对冲请求不做熔断退化，候选都不可用时返回空结果 (首个请求仍在进行，放弃对冲即可)
+ */
+public class EwmaLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    // 抽到熔断实例时的最大重抽次数
+    private static final int MAX_PICK_ATTEMPTS = 4;
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final String serviceId;
+    private final InstanceStatsRegistry registry;
+
+    public EwmaLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId,
+                            InstanceStatsRegistry registry) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.registry = registry;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        ServiceInstance excluded = excludedInstance(request);
+        return supplier.get(request).next().map(instances -> choose(exclude(instances, excluded), excluded != null));
+    }
+
+    /**
+     * 对冲请求要避开的实例 (HedgeGatewayFilterFactory 放在 exchange 属性里)
+     */
+    private static ServiceInstance excludedInstance(Request request) {
+        if (!(request.getContext() instanceof RequestDataContext context) || context.getClientRequest() == null) {
+            return null;
+        }
+        Map<String, Object> attributes = context.getClientRequest().getAttributes();
+        return attributes != null && attributes.get(HedgeGatewayFilterFactory.EXCLUDED_INSTANCE_ATTR) instanceof ServiceInstance instance
+                ? instance : null;
+    }
+
+    /**
+     * 去掉要避开的实例；只剩它一个时仍然使用
+     */
+    private static List<ServiceInstance> exclude(List<ServiceInstance> instances, ServiceInstance excluded) {
+        if (excluded == null || instances.size() < 2) {
+            return instances;
+        }
+        List<ServiceInstance> result = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (instance.getPort() != excluded.getPort() || !Objects.equals(instance.getHost(), excluded.getHost())) {
+                result.add(instance);
+            }
+        }
+        return result.isEmpty() ? instances : result;
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances, boolean hedge) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+
+        // 1. 单实例无需比较；对冲请求仍要遵守熔断
+        ServiceInstance chosen;
+        InstanceStats chosenStats;
+        if (instances.size() == 1) {
+            chosen = instances.get(0);
+            chosenStats = registry.get(chosen);
+            if (hedge && !registry.tryAcquire(chosenStats, System.nanoTime())) {
+                return new EmptyResponse();
+            }
+        } else {
+            long now = System.nanoTime();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            // 2. 随机取两个不同的实例 (跳过熔断中的实例)
+            int a = pick(instances, random, -1, now);
+            int b = pick(instances, random, a, now);
+            ServiceInstance first = instances.get(a);
+            ServiceInstance second = instances.get(b);
+            InstanceStats firstStats = registry.get(first);
+            InstanceStats secondStats = registry.get(second);
+
+            // 3. 可用的优先，其次代价小的胜出
+            boolean firstAvailable = registry.isAvailable(firstStats, now);
+            boolean secondAvailable = registry.isAvailable(secondStats, now);
+            boolean preferSecond = firstAvailable != secondAvailable
+                    ? secondAvailable
+                    : registry.cost(secondStats, now) < registry.cost(firstStats, now);
+
+            // 4. 半开实例要占到探测名额才能使用，占不到换另一个；两个都不可用时普通请求忽略熔断状态，对冲请求放弃
+            if (!registry.tryAcquire(preferSecond ? secondStats : firstStats, now)) {
+                if (registry.tryAcquire(preferSecond ? firstStats : secondStats, now)) {
+                    preferSecond = !preferSecond;
+                } else if (hedge) {
+                    return new EmptyResponse();
+                }
+            }
+            if (preferSecond) {
+                chosen = second;
+                chosenStats = secondStats;
+            } else {
+                chosen = first;
+                chosenStats = firstStats;
+            }
+        }
+
+        registry.onStart(chosenStats);
+        return new DefaultResponse(chosen);
+    }
+
+    /**
+     * 随机选一个不等于 exclude 的下标，优先可用的实例；多次抽到熔断实例后接受任意实例
+     */
+    private int pick(List<ServiceInstance> instances, ThreadLocalRandom random, int exclude, long now) {
+        int size = instances.size();
+        int index = exclude;
+        for (int attempt = 0; attempt < MAX_PICK_ATTEMPTS; attempt++) {
+            index = randomExcluding(random, size, exclude);
+            if (registry.isAvailable(registry.get(instances.get(index)), now)) {
+                return index;
+            }
+        }
+        return index;
+    }
+
+    private static int randomExcluding(ThreadLocalRandom random, int size, int exclude) {
+        if (exclude < 0) {
+            return random.nextInt(size);
+        }
+        int index = random.nextInt(size - 1);
+        return index >= exclude ? index + 1 : index;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+}
@@ -0,0 +1,25 @@
+package com.rcpawn.gateway.loadbalance;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * 每个服务的 LoadBalancer 子上下文配置 (由 LoadBalancerConfig 通过 @LoadBalancerClients 引用)
+ * 注意：不能加 @Configuration，否则会被主上下文扫描，所有服务共用同一个实例
+ */
+public class EwmaLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> ewmaLoadBalancer(Environment environment,
+                                                                 LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                 InstanceStatsRegistry instanceStatsRegistry) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new EwmaLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId, instanceStatsRegistry);
+    }
+}
@@ -0,0 +1,261 @@
+package com.rcpawn.gateway.loadbalance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 单个上游实例的熔断器
+ * 核心逻辑：CLOSED 时每次调用结果写入环形窗口 -> 失败率/慢调用率超过阈值或连续失败达到次数 -> OPEN (负载均衡跳过该实例) -> 到期后 HALF_OPEN 放行少量探测请求 -> 全部成功 CLOSED，任一失败/慢调用重新 OPEN
+ * 1. 环形窗口为定长的 AtomicIntegerArray，写入时 getAndSet 取回被覆盖的旧结果，失败/慢调用计数按差值增减，不加锁
+ * 2. 窗口重置时整体替换为新窗口，重置前开始的调用写入旧窗口，不影响新窗口的计数
+ * 3. OPEN 时长为基础时长 × 近期熔断次数 (最多 10 倍)，距上次熔断足够久则重新计数
+ * 4. 是否允许熔断由调用方判断 (InstanceStatsRegistry 限制同一服务同时熔断的实例比例)
+ * 5. 状态和它附带的数据 (到期时间、探测名额、探测成功数) 放在同一个对象里整体 CAS 替换，
+ *    只有赢得 CAS 的线程开启新一轮探测，读到的状态与数据总是一致的，并发下 HALF_OPEN 放行的探测数不超过配置
+ */
+public class InstanceCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int FAILURE = 1;
+    private static final int SLOW = 2;
+
+    private final Settings settings;
+    private final AtomicReference<Phase> phase = new AtomicReference<>(Phase.INITIAL);
+    private volatile Window window;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    public InstanceCircuitBreaker(Settings settings) {
+        this.settings = settings;
+        this.window = new Window(settings.windowSize);
+    }
+
+    /**
+     * 是否可以被负载均衡选中 (不占用探测名额)
+     */
+    public boolean isAvailable(long now) {
+        Phase p = phase.get();
+        return switch (p.state) {
+            case CLOSED -> true;
+            case OPEN -> now - p.untilNanos >= 0;
+            case HALF_OPEN -> p.permits.get() > 0 || probeTimedOut(p, now);
+        };
+    }
+
+    /**
+     * 选中实例时申请放行；OPEN 到期时转为 HALF_OPEN，HALF_OPEN 时占用一个探测名额
+     */
+    public boolean tryAcquire(long now) {
+        while (true) {
+            Phase p = phase.get();
+            if (p.state == State.CLOSED) {
+                return true;
+            }
+            if (p.state == State.OPEN) {
+                if (now - p.untilNanos < 0) {
+                    return false;
+                }
+                // 只有赢得 CAS 的线程开启探测，失败的线程重新读取后去抢新一轮的名额
+                phase.compareAndSet(p, p.halfOpen(now, settings.halfOpenPermits));
+                continue;
+            }
+            if (probeTimedOut(p, now)) {
+                // 探测请求被取消或一直没有结果，重新发放名额
+                phase.compareAndSet(p, p.halfOpen(now, settings.halfOpenPermits));
+                continue;
+            }
+            while (true) {
+                int permits = p.permits.get();
+                if (permits <= 0) {
+                    return false;
+                }
+                if (p.permits.compareAndSet(permits, permits - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录一次调用结果，返回发生的状态变化 (没有变化返回 null)
+     *
+     * @param canOpen 熔断前的检查 (同一服务熔断的实例过多时返回 false)
+     */
+    public State onResult(boolean failure, long latencyNanos, long now, BooleanSupplier canOpen) {
+        boolean slow = latencyNanos >= settings.slowCallNanos;
+        Phase p = phase.get();
+
+        if (p.state == State.HALF_OPEN) {
+            if (failure || slow) {
+                return open(p, now) ? State.OPEN : null;
+            }
+            if (p.successes.incrementAndGet() >= settings.halfOpenPermits && phase.compareAndSet(p, p.closed())) {
+                window = new Window(settings.windowSize);
+                consecutiveFailures.set(0);
+                return State.CLOSED;
+            }
+            return null;
+        }
+        if (p.state == State.OPEN) {
+            // 熔断前发出的请求，结果不再计入
+            return null;
+        }
+
+        Window w = window;
+        w.record((failure ? FAILURE : 0) | (slow ? SLOW : 0));
+        int consecutive = failure ? consecutiveFailures.incrementAndGet() : 0;
+        if (!failure) {
+            consecutiveFailures.set(0);
+        }
+        if ((consecutive >= settings.consecutiveFailures || w.exceeds(settings)) && canOpen.getAsBoolean()
+                && open(p, now)) {
+            return State.OPEN;
+        }
+        return null;
+    }
+
+    /**
+     * 请求被取消：HALF_OPEN 时归还探测名额 (不超过配置的名额数)
+     */
+    public void onCancel() {
+        Phase p = phase.get();
+        if (p.state == State.HALF_OPEN) {
+            p.permits.updateAndGet(permits -> Math.min(permits + 1, settings.halfOpenPermits));
+        }
+    }
+
+    private boolean open(Phase from, long now) {
+        int trips = now - from.lastTripNanos > 10 * settings.openNanos ? 1 : Math.min(from.trips + 1, 10);
+        if (!phase.compareAndSet(from, new Phase(State.OPEN, now + settings.openNanos * trips, trips, now, 0))) {
+            return false;
+        }
+        consecutiveFailures.set(0);
+        window = new Window(settings.windowSize);
+        return true;
+    }
+
+    private boolean probeTimedOut(Phase p, long now) {
+        return p.permits.get() <= 0 && now - p.untilNanos > settings.openNanos;
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    public double getFailureRate() {
+        return window.rate(window.failures);
+    }
+
+    public double getSlowCallRate() {
+        return window.rate(window.slowCalls);
+    }
+
+    public int getCalls() {
+        return window.calls();
+    }
+
+    /**
+     * OPEN 状态剩余时长 (纳秒)，其他状态为 0
+     */
+    public long getOpenRemainingNanos(long now) {
+        Phase p = phase.get();
+        return p.state == State.OPEN ? Math.max(0, p.untilNanos - now) : 0;
+    }
+
+    /**
+     * 状态及该状态附带的数据，每次状态变化整体替换
+     */
+    private static final class Phase {
+        static final Phase INITIAL = new Phase(State.CLOSED, 0, 0, 0, 0);
+
+        final State state;
+        // OPEN：熔断到期时间；HALF_OPEN：本轮探测开始时间
+        final long untilNanos;
+        // 近期熔断次数与上次熔断时间 (跨状态保留，用于计算熔断时长)
+        final int trips;
+        final long lastTripNanos;
+        // HALF_OPEN：剩余探测名额与已成功的探测数
+        final AtomicInteger permits;
+        final AtomicInteger successes = new AtomicInteger();
+
+        Phase(State state, long untilNanos, int trips, long lastTripNanos, int permits) {
+            this.state = state;
+            this.untilNanos = untilNanos;
+            this.trips = trips;
+            this.lastTripNanos = lastTripNanos;
+            this.permits = new AtomicInteger(permits);
+        }
+
+        Phase halfOpen(long now, int permits) {
+            return new Phase(State.HALF_OPEN, now, trips, lastTripNanos, permits);
+        }
+
+        Phase closed() {
+            return new Phase(State.CLOSED, 0, trips, lastTripNanos, 0);
+        }
+    }
+
+    /**
+     * 定长环形结果窗口
+     */
+    private static class Window {
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        Window(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        void record(int outcome) {
+            int index = (int) (cursor.getAndIncrement() % outcomes.length());
+            int old = outcomes.getAndSet(index, outcome);
+            failures.addAndGet((outcome & FAILURE) - (old & FAILURE));
+            slowCalls.addAndGet(((outcome & SLOW) - (old & SLOW)) >> 1);
+        }
+
+        int calls() {
+            return (int) Math.min(cursor.get(), outcomes.length());
+        }
+
+        double rate(AtomicInteger counter) {
+            int calls = calls();
+            return calls == 0 ? 0 : Math.max(0, counter.get()) * 100.0 / calls;
+        }
+
+        boolean exceeds(Settings settings) {
+            return calls() >= settings.minimumCalls
+                    && (rate(failures) >= settings.failureRateThreshold || rate(slowCalls) >= settings.slowCallRateThreshold);
+        }
+    }
+
+    /**
+     * 熔断参数 (所有实例共享)
+     */
+    public static class Settings {
+        final int windowSize;
+        final int minimumCalls;
+        final double failureRateThreshold;
+        final double slowCallRateThreshold;
+        final long slowCallNanos;
+        final int consecutiveFailures;
+        final long openNanos;
+        final int halfOpenPermits;
+
+        public Settings(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold,
+                        long slowCallNanos, int consecutiveFailures, long openNanos, int halfOpenPermits) {
+            this.windowSize = Math.max(1, windowSize);
+            this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallNanos = slowCallNanos;
+            this.consecutiveFailures = consecutiveFailures;
+            this.openNanos = openNanos;
+            this.halfOpenPermits = Math.max(1, halfOpenPermits);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.rcpawn.gateway.loadbalance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个上游实例的负载统计
+ * 核心逻辑：选中时在途数 +1 -> 请求结束时在途数 -1 并更新 Peak-EWMA 延迟 -> 选择时以 "延迟 × (在途数 + 1)" 作为代价
+ * 1. Peak-EWMA：样本高于当前值时直接取样本 (对变慢立即敏感)，低于时按时间衰减平滑 (恢复需要持续的快响应)
+ * 2. 读取代价时 EWMA 按距上次样本的时间向 0 衰减，长期不被选中的慢实例会被重新试探
+ * 3. 每个实例带一个熔断器 (InstanceCircuitBreaker)，熔断期间负载均衡绕开该实例
+ */
+public class InstanceStats {
+
+    final String serviceId;
+    final AtomicInteger inflight = new AtomicInteger();
+    final InstanceCircuitBreaker breaker;
+
+    // 以下字段在 synchronized(this) 内更新，volatile 供选择时无锁读取
+    private volatile double ewmaNanos;
+    private volatile long lastSampleNanos;
+
+    volatile long lastUsedNanos;
+
+    InstanceStats(String serviceId, InstanceCircuitBreaker breaker, long now) {
+        this.serviceId = serviceId;
+        this.breaker = breaker;
+        this.lastSampleNanos = now;
+        this.lastUsedNanos = now;
+    }
+
+    /**
+     * 选择代价：未测量过的实例空闲时为 0 (优先试探)，有在途请求时视为最贵，避免新实例被瞬间打满
+     */
+    double cost(long now, double decayNanos, double penalty) {
+        int pending = inflight.get();
+        double ewma = ewmaNanos;
+        if (ewma == 0) {
+            return pending == 0 ? 0 : penalty + pending;
+        }
+        double decayed = ewma * Math.exp(-Math.max(0, now - lastSampleNanos) / decayNanos);
+        return decayed * (pending + 1);
+    }
+
+    /**
+     * 记录一次请求结果；失败的请求按当前 EWMA 的 2 倍计入，快速失败的实例不会因为"响应快"而吸走流量
+     * 翻倍的惩罚不超过 penaltyCeilingNanos，连续失败时 EWMA 停在上限，恢复后仍能按时间衰减回来
+     */
+    synchronized void observe(long latencyNanos, boolean failure, long now, double decayNanos, long penaltyCeilingNanos) {
+        double ewma = ewmaNanos;
+        double sample = failure ? Math.max(latencyNanos, Math.min(ewma * 2, penaltyCeilingNanos)) : latencyNanos;
+        if (ewma == 0 || sample > ewma) {
+            ewmaNanos = sample;
+        } else {
+            double w = Math.exp(-Math.max(0, now - lastSampleNanos) / decayNanos);
+            ewmaNanos = ewma * w + sample * (1 - w);
+        }
+        lastSampleNanos = now;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public double getEwmaMillis() {
+        return ewmaNanos / 1_000_000d;
+    }
+
+    public InstanceCircuitBreaker getBreaker() {
+        return breaker;
+    }
+}
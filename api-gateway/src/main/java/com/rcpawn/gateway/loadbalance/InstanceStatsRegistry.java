@@ -0,0 +1,229 @@
+package com.rcpawn.gateway.loadbalance;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游实例负载统计表 (所有服务共享)
+ * 核心逻辑：EwmaLoadBalancer 选中实例时 onStart -> CoreGlobalFilter 请求结束时按自己测得的耗时 onComplete -> 下一次选择读取最新的代价
+ * 1. 实例按 serviceId/host:port 区分，Nacos 实例上下线后长时间不用的统计会被清理
+ * 2. 每个实例独立熔断 (失败率 / 慢调用率 / 连续失败)，流量绕开熔断的实例而不是对所有请求返回 429/503
+ * 3. 熔断受 max-open-percent 约束，同一服务熔断的实例过多时不再熔断，避免整个服务不可用
+ * 4. 各实例的熔断状态通过 /dashboard/metrics/breakers 暴露
+ */
+@Slf4j
+@Component
+public class InstanceStatsRegistry {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // EWMA 衰减时间常数
+    @Value("${gateway.loadbalancer.decay-ms:10000}")
+    private long decayMs;
+
+    // 熔断统计窗口 (最近多少次调用)
+    @Value("${gateway.loadbalancer.circuit-breaker.window-size:100}")
+    private int windowSize;
+
+    // 窗口内至少多少次调用才按比例判断
+    @Value("${gateway.loadbalancer.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    // 失败率阈值 (%)
+    @Value("${gateway.loadbalancer.circuit-breaker.failure-rate-threshold:50}")
+    private double failureRateThreshold;
+
+    // 超过该耗时记为慢调用
+    @Value("${gateway.loadbalancer.circuit-breaker.slow-call-ms:2000}")
+    private long slowCallMs;
+
+    // 慢调用率阈值 (%)
+    @Value("${gateway.loadbalancer.circuit-breaker.slow-call-rate-threshold:80}")
+    private double slowCallRateThreshold;
+
+    // 连续失败多少次直接熔断 (不等窗口攒够调用)
+    @Value("${gateway.loadbalancer.circuit-breaker.consecutive-failures:5}")
+    private int consecutiveFailures;
+
+    // 首次熔断时长，再次熔断按次数递增
+    @Value("${gateway.loadbalancer.circuit-breaker.open-ms:30000}")
+    private long openMs;
+
+    // 半开状态放行的探测请求数
+    @Value("${gateway.loadbalancer.circuit-breaker.half-open-permits:3}")
+    private int halfOpenPermits;
+
+    // 同一服务最多同时熔断的实例比例
+    @Value("${gateway.loadbalancer.circuit-breaker.max-open-percent:50}")
+    private int maxOpenPercent;
+
+    // 未测量实例有在途请求时的代价 (足够大，保证不会被选中)
+    private static final double UNMEASURED_PENALTY = 1e15;
+    private static final long IDLE_EVICT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    private double decayNanos;
+    private InstanceCircuitBreaker.Settings breakerSettings;
+    private final Map<InstanceCircuitBreaker.State, Counter> transitionCounters = new EnumMap<>(InstanceCircuitBreaker.State.class);
+
+    @PostConstruct
+    public void init() {
+        decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMs);
+        breakerSettings = new InstanceCircuitBreaker.Settings(windowSize, minimumCalls, failureRateThreshold,
+                slowCallRateThreshold, TimeUnit.MILLISECONDS.toNanos(slowCallMs), consecutiveFailures,
+                TimeUnit.MILLISECONDS.toNanos(openMs), halfOpenPermits);
+        for (InstanceCircuitBreaker.State state : InstanceCircuitBreaker.State.values()) {
+            transitionCounters.put(state, Counter.builder("gateway.loadbalancer.breaker.transitions")
+                    .tag("to", state.name().toLowerCase())
+                    .description("实例熔断器状态切换次数")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("gateway.loadbalancer.instances", stats, Map::size)
+                .description("有负载统计的上游实例数")
+                .register(meterRegistry);
+        Gauge.builder("gateway.loadbalancer.breaker.open", stats,
+                        m -> m.values().stream().filter(s -> s.breaker.getState() != InstanceCircuitBreaker.State.CLOSED).count())
+                .description("处于熔断或半开状态的实例数")
+                .register(meterRegistry);
+    }
+
+    public InstanceStats get(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), k -> new InstanceStats(instance.getServiceId(),
+                new InstanceCircuitBreaker(breakerSettings), System.nanoTime()));
+    }
+
+    /**
+     * 选择代价 (越小越好)
+     */
+    public double cost(InstanceStats instance, long now) {
+        return instance.cost(now, decayNanos, UNMEASURED_PENALTY);
+    }
+
+    /**
+     * 实例是否可以被选中 (熔断中且未到探测时间、半开且没有探测名额时不可选)
+     */
+    public boolean isAvailable(InstanceStats instance, long now) {
+        return instance.breaker.isAvailable(now);
+    }
+
+    /**
+     * 申请使用实例：半开状态占用一个探测名额，名额用完返回 false
+     */
+    public boolean tryAcquire(InstanceStats instance, long now) {
+        return instance.breaker.tryAcquire(now);
+    }
+
+    /**
+     * 负载均衡选中实例
+     */
+    public void onStart(InstanceStats instance) {
+        instance.inflight.incrementAndGet();
+        instance.lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * 请求结束：释放在途数，记录延迟和成功/失败，更新熔断器
+     */
+    public void onComplete(ServiceInstance instance, long latencyNanos, boolean failure) {
+        InstanceStats s = get(instance);
+        long now = System.nanoTime();
+        s.inflight.decrementAndGet();
+        // 失败惩罚以慢调用阈值为上限：失败的实例至多和慢实例一样贵
+        s.observe(latencyNanos, failure, now, decayNanos, breakerSettings.slowCallNanos);
+        InstanceCircuitBreaker.State transition = s.breaker.onResult(failure, latencyNanos, now, () -> canOpen(instance, s));
+        if (transition != null) {
+            transitionCounters.get(transition).increment();
+            if (transition == InstanceCircuitBreaker.State.OPEN) {
+                log.warn("实例 {} 熔断 (失败率 {}%，慢调用率 {}%)", key(instance),
+                        Math.round(s.breaker.getFailureRate()), Math.round(s.breaker.getSlowCallRate()));
+            } else {
+                log.info("实例 {} 探测成功，恢复", key(instance));
+            }
+        }
+    }
+
+    /**
+     * 熔断前检查同一服务 (除自己以外) 已熔断的比例，超过上限时只记录不熔断
+     */
+    private boolean canOpen(ServiceInstance instance, InstanceStats s) {
+        int total = 0;
+        int open = 0;
+        for (InstanceStats other : stats.values()) {
+            if (other.serviceId.equals(s.serviceId)) {
+                total++;
+                if (other != s && other.breaker.getState() != InstanceCircuitBreaker.State.CLOSED) open++;
+            }
+        }
+        if ((open + 1) * 100 > total * maxOpenPercent) {
+            log.warn("实例 {} 达到熔断条件，但服务 {} 已熔断 {}/{} 个实例，不再熔断", key(instance), s.serviceId, open, total);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求被取消：释放在途数，半开状态归还探测名额
+     */
+    public void onCancel(ServiceInstance instance) {
+        InstanceStats s = get(instance);
+        s.inflight.decrementAndGet();
+        s.breaker.onCancel();
+    }
+
+    /**
+     * 各实例的负载与熔断状态 (Dashboard 展示)
+     */
+    public List<Map<String, Object>> snapshot() {
+        long now = System.nanoTime();
+        List<Map<String, Object>> result = new ArrayList<>();
+        stats.forEach((key, s) -> {
+            InstanceCircuitBreaker breaker = s.breaker;
+            Map<String, Object> map = new HashMap<>();
+            map.put("service", s.serviceId);
+            map.put("instance", key.substring(s.serviceId.length() + 1));
+            map.put("state", breaker.getState().name());
+            map.put("calls", breaker.getCalls());
+            map.put("failureRate", Math.round(breaker.getFailureRate() * 10) / 10.0);
+            map.put("slowCallRate", Math.round(breaker.getSlowCallRate() * 10) / 10.0);
+            map.put("openRemainingMs", TimeUnit.NANOSECONDS.toMillis(breaker.getOpenRemainingNanos(now)));
+            map.put("inflight", s.getInflight());
+            map.put("ewmaMs", Math.round(s.getEwmaMillis() * 10) / 10.0);
+            result.add(map);
+        });
+        result.sort(Comparator.comparing((Map<String, Object> m) -> (String) m.get("service"))
+                .thenComparing(m -> (String) m.get("instance")));
+        return result;
+    }
+
+    /**
+     * 清理长时间未被选中的实例 (已下线)
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        stats.values().removeIf(s -> s.getInflight() == 0 && now - s.lastUsedNanos > IDLE_EVICT_NANOS);
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getServiceId() + "/" + instance.getHost() + ":" + instance.getPort();
+    }
+}
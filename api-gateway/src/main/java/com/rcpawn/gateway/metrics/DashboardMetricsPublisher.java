@@ -0,0 +1,179 @@
+package com.rcpawn.gateway.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dashboard 实时指标推送
+ * 核心逻辑：定时任务每个周期用一次 Pipeline (HMGET + MGET + ZREVRANGE) 读出全部指标 -> 生成一份快照 -> 广播给所有 SSE 订阅者
+ * 1. Redis 读取次数与打开的 Dashboard 数量无关，每个周期固定一次往返
+ * 2. 新订阅者立即收到最近一份快照，不用等下一个周期
+ * 3. 没有订阅者时定时任务不读 Redis；/realtime 轮询接口复用一个周期内的快照，过期才重新读取
+ * 4. QPS 为集群滑动窗口：对窗口内所有 100ms 桶 HMGET 求和，窗口末端让出一个刷写周期，避免读到各节点尚未刷写的桶
+ */
+@Slf4j
+@Component
+public class DashboardMetricsPublisher {
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private static final String KEY_METRICS_PREFIX = "gateway:metrics:";
+    private static final String KEY_ROUTE_RANK = "gateway:metrics:routes:rank";
+    private static final byte[] RANK_KEY_BYTES = KEY_ROUTE_RANK.getBytes(StandardCharsets.UTF_8);
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("HHmm");
+    private static final int TOP_ROUTES = 10;
+
+    @Value("${gateway.dashboard.stream-interval-ms:1000}")
+    private long intervalMs;
+
+    @Value("${gateway.metrics.qps-window-seconds:5}")
+    private int qpsWindowSeconds;
+
+    @Value("${gateway.metrics.flush-interval-ms:250}")
+    private long flushIntervalMs;
+
+    // 只保留最近一份快照，新订阅者立即收到
+    private final Sinks.Many<Map<String, Object>> sink = Sinks.many().replay().latest();
+    private volatile Map<String, Object> latest;
+    private volatile long latestAt;
+
+    /**
+     * 指标流 (每个订阅者共享同一份快照)
+     */
+    public Flux<Map<String, Object>> stream() {
+        return sink.asFlux();
+    }
+
+    /**
+     * 最近一份快照 (阻塞调用)，超过一个周期未更新时当场读取一次
+     */
+    public Map<String, Object> latest() {
+        Map<String, Object> snapshot = latest;
+        if (snapshot != null && System.currentTimeMillis() - latestAt < intervalMs) {
+            return snapshot;
+        }
+        synchronized (this) {
+            // 并发的轮询请求只读一次
+            if (latest != null && System.currentTimeMillis() - latestAt < intervalMs) {
+                return latest;
+            }
+            return refresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.dashboard.stream-interval-ms:1000}")
+    public void tick() {
+        // 没有 SSE 订阅者就不读 Redis
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Dashboard 指标快照生成失败: {}", e.getMessage());
+        }
+    }
+
+    private synchronized Map<String, Object> refresh() {
+        Map<String, Object> snapshot = readSnapshot(LocalDateTime.now());
+        latest = snapshot;
+        latestAt = System.currentTimeMillis();
+        sink.tryEmitNext(snapshot);
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readSnapshot(LocalDateTime now) {
+        // 1. QPS 窗口内的 100ms 桶，按所属分钟 Hash 分组 (窗口最多跨两个 Hash)
+        int windowSlots = (int) (qpsWindowSeconds * 1000 / SlidingWindowCounter.BUCKET_MILLIS);
+        long endSlot = SlidingWindowCounter.slotOf(System.currentTimeMillis() - flushIntervalMs) - 1;
+        Map<String, List<byte[]>> slotFields = new LinkedHashMap<>();
+        for (long slot = endSlot - windowSlots + 1; slot <= endSlot; slot++) {
+            slotFields.computeIfAbsent(MetricsAggregator.qpsWindowKey(slot), k -> new ArrayList<>())
+                    .add(String.valueOf(slot).getBytes(StandardCharsets.UTF_8));
+        }
+
+        // 2. 分钟级 Key
+        String timeWindow = now.format(MINUTE_FORMATTER);
+        byte[][] minuteKeys = {
+                (KEY_METRICS_PREFIX + "req_count:" + timeWindow).getBytes(StandardCharsets.UTF_8),
+                (KEY_METRICS_PREFIX + "latency_sum:" + timeWindow).getBytes(StandardCharsets.UTF_8),
+                (KEY_METRICS_PREFIX + "error_count:" + timeWindow).getBytes(StandardCharsets.UTF_8)
+        };
+
+        // 3. 一次 Pipeline：HMGET + MGET + Top 路由 (原始字节命令，结果由模板统一反序列化为 String / TypedTuple)
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            slotFields.forEach((key, fields) ->
+                    connection.hashCommands().hMGet(key.getBytes(StandardCharsets.UTF_8), fields.toArray(new byte[0][])));
+            connection.stringCommands().mGet(minuteKeys);
+            connection.zSetCommands().zRevRangeWithScores(RANK_KEY_BYTES, 0, TOP_ROUTES - 1);
+            return null;
+        });
+        int hashCount = slotFields.size();
+        List<String> values = (List<String>) results.get(hashCount);
+        Set<ZSetOperations.TypedTuple<String>> topRoutes = (Set<ZSetOperations.TypedTuple<String>>) results.get(hashCount + 1);
+
+        // 4. 计算
+        long windowTotal = 0;
+        for (int i = 0; i < hashCount; i++) {
+            for (String count : (List<String>) results.get(i)) {
+                windowTotal += parseLong(count);
+            }
+        }
+        long qps = windowTotal / qpsWindowSeconds;
+
+        long totalReq = parseLong(values.get(0));
+        long avgLatency = 0;
+        double errorRateVal = 0.0;
+        if (totalReq > 0) {
+            avgLatency = parseLong(values.get(1)) / totalReq;
+            errorRateVal = (double) parseLong(values.get(2)) / totalReq * 100;
+        }
+
+        List<Map<String, Object>> routeList = new ArrayList<>();
+        if (topRoutes != null && !topRoutes.isEmpty()) {
+            double maxScore = topRoutes.iterator().next().getScore();
+            if (maxScore == 0) maxScore = 1;
+            for (ZSetOperations.TypedTuple<String> tuple : topRoutes) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("name", tuple.getValue());
+                map.put("count", tuple.getScore().intValue());
+                map.put("percent", (int) ((tuple.getScore() / maxScore) * 100));
+                routeList.add(map);
+            }
+        }
+
+        // 5. 与原 /realtime 接口字段保持一致
+        Map<String, Object> data = new HashMap<>();
+        data.put("qps", qps);
+        data.put("latency", avgLatency);
+        data.put("errorRate", new DecimalFormat("0.00").format(errorRateVal) + "%");
+        data.put("topRoutes", routeList);
+        data.put("timestamp", System.currentTimeMillis());
+        return data;
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+}
@@ -0,0 +1,114 @@
+package com.rcpawn.gateway.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数分桶延迟直方图 (HDR 风格，单位毫秒)
+ * 分桶规则：0~31ms 每 1ms 一个桶；之后每翻一倍划分 32 个子桶，相对误差约 3%
+ * 记录只做一次数组下标累加，不分配对象；桶下标即 Redis Hash 的 field，多个网关节点用 HINCRBY 直接合并
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 上限约 17 分钟，超出的值落在最后一个桶
+    private static final int MAX_EXPONENT = 20;
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 记录一次耗时 (热路径)
+     */
+    public void record(long latencyMs) {
+        counts.incrementAndGet(bucketIndex(latencyMs));
+    }
+
+    /**
+     * 取出自上次调用以来的增量并清零，返回是否有数据
+     */
+    public boolean drainTo(long[] target) {
+        boolean hasData = false;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts.getAndSet(i, 0);
+            target[i] = c;
+            if (c > 0) hasData = true;
+        }
+        return hasData;
+    }
+
+    public static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + mantissa;
+    }
+
+    /**
+     * 桶内可能出现的最大值 (报告分位数时取上界，宁可偏大不偏小)
+     */
+    public static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        int mantissa = index % SUB_BUCKET_COUNT;
+        long lower = (long) (SUB_BUCKET_COUNT + mantissa) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * 合并后的只读快照，用于计算分位数
+     */
+    public static class Snapshot {
+        private final long[] counts = new long[BUCKET_COUNT];
+        private long total;
+
+        /**
+         * 合并 Redis Hash (field = 桶下标, value = 次数)
+         */
+        public void merge(Map<Object, Object> hash) {
+            if (hash == null) return;
+            for (Map.Entry<Object, Object> e : hash.entrySet()) {
+                int index = Integer.parseInt(e.getKey().toString());
+                long c = Long.parseLong(e.getValue().toString());
+                if (index >= 0 && index < BUCKET_COUNT && c > 0) {
+                    counts[index] += c;
+                    total += c;
+                }
+            }
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long percentile(double quantile) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return max();
+        }
+
+        public long max() {
+            for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+                if (counts[i] > 0) return bucketUpperBound(i);
+            }
+            return 0;
+        }
+    }
+}
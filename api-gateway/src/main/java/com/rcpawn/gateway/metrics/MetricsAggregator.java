@@ -0,0 +1,219 @@
+package com.rcpawn.gateway.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 网关指标本地聚合器
+ * 核心逻辑：请求热路径只累加本地 LongAdder (零网络 IO) -> 定时任务汇总增量 -> 一次 Pipeline 批量写回 Redis
+ * Redis Key 结构与原先逐请求 INCR 保持一致，Dashboard 读取端无需改动
+ * QPS 使用 100ms 粒度的滑动窗口：各节点把每个桶的增量 HINCRBY 到按分钟划分的 Hash 中，读取端一次 HMGET 即可求和
+ */
+@Slf4j
+@Component
+public class MetricsAggregator {
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 滑动窗口 QPS 的窗口长度
+    @Value("${gateway.metrics.qps-window-seconds:5}")
+    private int qpsWindowSeconds;
+
+    private static final String KEY_METRICS_PREFIX = "gateway:metrics:";
+    private static final String KEY_ROUTE_RANK = "gateway:metrics:routes:rank";
+    public static final String KEY_LATENCY_HIST_PREFIX = "gateway:metrics:latency_hist:";
+    public static final String KEY_LATENCY_ROUTES_PREFIX = "gateway:metrics:latency_routes:";
+    // 全部请求汇总的直方图 (包含未匹配路由的请求)
+    public static final String ALL_ROUTES = "_all";
+    // QPS 桶 Hash：gateway:metrics:qps_window:{epochMinute}，field 为 100ms 桶序号 (epochMillis / 100)
+    public static final String KEY_QPS_WINDOW_PREFIX = "gateway:metrics:qps_window:";
+
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("HHmm");
+
+    private static final long MINUTE_KEY_TTL = 300; // 分钟级 Key 存活 5 分钟
+    private static final long QPS_WINDOW_KEY_TTL = 180; // QPS 桶 Hash 存活 3 分钟
+
+    // 100ms 粒度 QPS 滑动窗口
+    private final SlidingWindowCounter qpsCounter = new SlidingWindowCounter();
+    // 分钟级窗口 (epochMinute -> 请求数/耗时/错误数)
+    private final Map<Long, MinuteWindow> minuteWindows = new ConcurrentHashMap<>();
+    // 路由排行 (routeId -> 命中次数)
+    private final Map<String, LongAdder> routeCounts = new ConcurrentHashMap<>();
+    // 直方图增量缓冲区 (只在刷写线程使用)
+    private final long[] drainBuffer = new long[LatencyHistogram.BUCKET_COUNT];
+
+    @PostConstruct
+    public void init() {
+        // 本节点 QPS (滑动窗口)，可直接作为扩缩容指标
+        Gauge.builder("gateway.requests.qps", qpsCounter,
+                        c -> c.ratePerSecond((int) (qpsWindowSeconds * 1000 / SlidingWindowCounter.BUCKET_MILLIS)))
+                .description("本节点最近窗口内的平均每秒请求数")
+                .register(meterRegistry);
+    }
+
+    public static String qpsWindowKey(long slot) {
+        return KEY_QPS_WINDOW_PREFIX + (slot * SlidingWindowCounter.BUCKET_MILLIS / 60_000);
+    }
+
+    /**
+     * 记录一次请求 (热路径，只做内存累加)
+     */
+    public void record(String routeId, long durationMs, boolean isError) {
+        long nowMillis = System.currentTimeMillis();
+        long nowSecond = nowMillis / 1000;
+
+        qpsCounter.increment(nowMillis);
+
+        MinuteWindow minute = minuteWindow(nowSecond / 60);
+        minute.reqCount.increment();
+        minute.latencySum.add(durationMs);
+        if (isError) {
+            minute.errorCount.increment();
+        }
+        minute.histogram(ALL_ROUTES).record(durationMs);
+
+        if (routeId != null) {
+            LongAdder counter = routeCounts.get(routeId);
+            if (counter == null) {
+                counter = routeCounts.computeIfAbsent(routeId, k -> new LongAdder());
+            }
+            counter.increment();
+            minute.histogram(routeId).record(durationMs);
+        }
+    }
+
+    /**
+     * 定时把本地增量刷到 Redis (单次 Pipeline)
+     */
+    @Scheduled(fixedDelayString = "${gateway.metrics.flush-interval-ms:250}")
+    public void flush() {
+        long nowMillis = System.currentTimeMillis();
+        long nowSecond = nowMillis / 1000;
+        List<Delta> deltas = new ArrayList<>();
+
+        // 1. QPS 桶增量 (按分钟 Hash 分组)
+        Map<String, Map<String, Long>> qpsDeltas = new HashMap<>();
+        qpsCounter.drain(nowMillis, (slot, delta) ->
+                qpsDeltas.computeIfAbsent(qpsWindowKey(slot), k -> new HashMap<>()).put(String.valueOf(slot), delta));
+
+        // 2. 分钟级 请求数/耗时/错误数/延迟直方图
+        long nowMinute = nowSecond / 60;
+        List<HistogramDelta> histDeltas = new ArrayList<>();
+        minuteWindows.forEach((minute, window) -> {
+            String timeWindow = format(minute * 60, MINUTE_FORMATTER);
+            long req = window.reqCount.sumThenReset();
+            long lat = window.latencySum.sumThenReset();
+            long err = window.errorCount.sumThenReset();
+            if (req > 0) deltas.add(new Delta(KEY_METRICS_PREFIX + "req_count:" + timeWindow, req, MINUTE_KEY_TTL));
+            if (lat > 0) deltas.add(new Delta(KEY_METRICS_PREFIX + "latency_sum:" + timeWindow, lat, MINUTE_KEY_TTL));
+            if (err > 0) deltas.add(new Delta(KEY_METRICS_PREFIX + "error_count:" + timeWindow, err, MINUTE_KEY_TTL));
+            window.histograms.forEach((routeId, histogram) -> {
+                if (histogram.drainTo(drainBuffer)) {
+                    Map<String, Long> buckets = new HashMap<>();
+                    for (int i = 0; i < drainBuffer.length; i++) {
+                        if (drainBuffer[i] > 0) buckets.put(String.valueOf(i), drainBuffer[i]);
+                    }
+                    histDeltas.add(new HistogramDelta(timeWindow, routeId, buckets));
+                }
+            });
+            if (minute < nowMinute - 1) {
+                minuteWindows.remove(minute, window);
+            }
+        });
+
+        // 3. 路由排行
+        List<Delta> routeDeltas = new ArrayList<>();
+        routeCounts.forEach((routeId, counter) -> {
+            long delta = counter.sumThenReset();
+            if (delta > 0) {
+                routeDeltas.add(new Delta(routeId, delta, 0));
+            }
+        });
+
+        if (qpsDeltas.isEmpty() && deltas.isEmpty() && routeDeltas.isEmpty() && histDeltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                qpsDeltas.forEach((key, slots) -> {
+                    slots.forEach((slot, count) -> conn.hIncrBy(key, slot, count));
+                    conn.expire(key, QPS_WINDOW_KEY_TTL);
+                });
+                for (Delta d : deltas) {
+                    conn.incrBy(d.key, d.value);
+                    conn.expire(d.key, d.ttlSeconds);
+                }
+                for (Delta d : routeDeltas) {
+                    conn.zIncrBy(KEY_ROUTE_RANK, d.value, d.key);
+                }
+                for (HistogramDelta h : histDeltas) {
+                    String histKey = KEY_LATENCY_HIST_PREFIX + h.timeWindow + ":" + h.routeId;
+                    String routesKey = KEY_LATENCY_ROUTES_PREFIX + h.timeWindow;
+                    h.buckets.forEach((bucket, count) -> conn.hIncrBy(histKey, bucket, count));
+                    conn.expire(histKey, MINUTE_KEY_TTL);
+                    conn.sAdd(routesKey, h.routeId);
+                    conn.expire(routesKey, MINUTE_KEY_TTL);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Redis 短暂不可用时丢弃本批增量，不影响转发
+            log.warn("Metrics flush failed, dropped {} deltas: {}",
+                    qpsDeltas.size() + deltas.size() + routeDeltas.size() + histDeltas.size(), e.getMessage());
+        }
+    }
+
+    private MinuteWindow minuteWindow(long minute) {
+        MinuteWindow window = minuteWindows.get(minute);
+        return window != null ? window : minuteWindows.computeIfAbsent(minute, k -> new MinuteWindow());
+    }
+
+    private static String format(long epochSecond, DateTimeFormatter formatter) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault()).format(formatter);
+    }
+
+    private static final class MinuteWindow {
+        final LongAdder reqCount = new LongAdder();
+        final LongAdder latencySum = new LongAdder();
+        final LongAdder errorCount = new LongAdder();
+        // routeId -> 本分钟延迟直方图
+        final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+        LatencyHistogram histogram(String routeId) {
+            LatencyHistogram histogram = histograms.get(routeId);
+            return histogram != null ? histogram : histograms.computeIfAbsent(routeId, k -> new LatencyHistogram());
+        }
+    }
+
+    private record Delta(String key, long value, long ttlSeconds) {
+    }
+
+    private record HistogramDelta(String timeWindow, String routeId, Map<String, Long> buckets) {
+    }
+}
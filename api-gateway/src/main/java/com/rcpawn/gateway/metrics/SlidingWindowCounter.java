@@ -0,0 +1,95 @@
+package com.rcpawn.gateway.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 100ms 粒度的滑动窗口计数器 (环形桶)
+ * 核心逻辑：请求线程按 epochMillis / 100 定位桶并累加 -> 刷写线程把桶里的增量取出 (drain) 合并到 Redis
+ * 1. 写入端永远不清零桶，清零只发生在刷写线程的 drain 中，避免"清零 vs 累加"竞争导致丢计数
+ * 2. 当前桶也会被 drain (部分增量)，下一次刷写继续 drain 同一个桶，Redis 侧 HINCRBY 自然累加
+ * 3. drain 出来的增量同时记到本地历史中，用于计算本节点 QPS
+ */
+public class SlidingWindowCounter {
+
+    public static final long BUCKET_MILLIS = 100;
+    // 128 个桶 = 12.8 秒历史，刷写周期远小于该值，桶在复用前一定已被取空
+    private static final int BUCKET_COUNT = 128;
+    private static final int MASK = BUCKET_COUNT - 1;
+
+    private final LongAdder[] pending = new LongAdder[BUCKET_COUNT];
+
+    // 以下字段只在刷写线程写入
+    private final long[] historySlots = new long[BUCKET_COUNT];
+    private final long[] historyCounts = new long[BUCKET_COUNT];
+    private volatile long lastDrainedSlot = -1;
+
+    public SlidingWindowCounter() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            pending[i] = new LongAdder();
+            historySlots[i] = -1;
+        }
+    }
+
+    public static long slotOf(long epochMillis) {
+        return epochMillis / BUCKET_MILLIS;
+    }
+
+    /**
+     * 计数 +1 (热路径)
+     */
+    public void increment(long nowMillis) {
+        pending[(int) (slotOf(nowMillis) & MASK)].increment();
+    }
+
+    /**
+     * 取出上次 drain 之后到当前桶 (含) 的增量，只能由单个刷写线程调用
+     */
+    public void drain(long nowMillis, SlotConsumer consumer) {
+        long current = slotOf(nowMillis);
+        long from = lastDrainedSlot < 0 ? current : Math.max(lastDrainedSlot, current - MASK);
+        for (long slot = from; slot <= current; slot++) {
+            int index = (int) (slot & MASK);
+            long delta = pending[index].sumThenReset();
+            if (historySlots[index] != slot) {
+                historySlots[index] = slot;
+                historyCounts[index] = 0;
+            }
+            if (delta > 0) {
+                historyCounts[index] += delta;
+                consumer.accept(slot, delta);
+            }
+        }
+        // 当前桶可能还有写入，下次从它开始继续 drain
+        lastDrainedSlot = current;
+    }
+
+    /**
+     * 本节点最近 windowSlots 个已完成的桶的平均每秒请求数 (以最近一次 drain 为准)
+     */
+    public double ratePerSecond(int windowSlots) {
+        long end = lastDrainedSlot - 1;
+        if (end < 0) {
+            return 0;
+        }
+        return sum(end - windowSlots + 1, end) * 1000.0 / (windowSlots * BUCKET_MILLIS);
+    }
+
+    /**
+     * 本节点在 [fromSlot, toSlot] 内已 drain 的请求数 (近似值，供监控使用)
+     */
+    public long sum(long fromSlot, long toSlot) {
+        long total = 0;
+        for (long slot = Math.max(fromSlot, toSlot - MASK); slot <= toSlot; slot++) {
+            int index = (int) (slot & MASK);
+            if (historySlots[index] == slot) {
+                total += historyCounts[index];
+            }
+        }
+        return total;
+    }
+
+    @FunctionalInterface
+    public interface SlotConsumer {
+        void accept(long slot, long delta);
+    }
+}
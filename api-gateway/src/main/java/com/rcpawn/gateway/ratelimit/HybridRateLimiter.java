@@ -0,0 +1,320 @@
+package com.rcpawn.gateway.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 集群限流器 (本地令牌桶 + Redis 全局预算租约)
+ * 核心逻辑：Redis 中每个限流 Key 一个全局令牌桶 -> 各节点按批租借令牌放进本地桶 -> 请求只扣减本地令牌 -> 后台任务低于水位时批量补租
+ * 1. 作为 RequestRateLimiter 的默认 RateLimiter，Key 由 pathKeyResolver / ipKeyResolver / userKeyResolver 解析
+ * 2. 每批租借量约等于一个同步周期的配额，各节点多占的令牌不超过一批，全局速率误差有上界
+ * 3. 本地令牌用尽时当场异步租借一次 (并发请求共享同一次租约，后台补租在途时直接等它)；全局预算耗尽后一段时间内直接拒绝，不再回源
+ * 4. Redis 不可用时退化为单节点限流，每个同步周期补充一批本地令牌
+ *
+ * 路由配置示例 (Nacos 路由 JSON 的 filters)：
+ * {"name": "RequestRateLimiter", "args": {"hybrid-rate-limiter.replenishRate": "100",
+ *  "hybrid-rate-limiter.burstCapacity": "200", "key-resolver": "#{@ipKeyResolver}"}}
+ */
+@Slf4j
+@Primary
+@Component
+public class HybridRateLimiter extends AbstractRateLimiter<HybridRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "hybrid-rate-limiter";
+    public static final String KEY_PREFIX = "gateway:ratelimit:";
+
+    /**
+     * 全局令牌桶：按经过的时间补充令牌 (不超过 burst)，再扣除本次租借量，返回实际租到的数量
+     * 时间戳由节点传入，时钟回拨时不补充令牌
+     */
+    private static final String SCRIPT_LEASE =
+            "local rate = tonumber(ARGV[1]) " +
+            "local burst = tonumber(ARGV[2]) " +
+            "local now = tonumber(ARGV[3]) " +
+            "local want = tonumber(ARGV[4]) " +
+            "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(state[1]) " +
+            "local ts = tonumber(state[2]) " +
+            "if tokens == nil or ts == nil then " +
+            "   tokens = burst " +
+            "   ts = now " +
+            "end " +
+            "if now > ts then " +
+            "   tokens = math.min(burst, tokens + (now - ts) * rate / 1000) " +
+            "   ts = now " +
+            "end " +
+            "local granted = math.min(want, math.floor(tokens)) " +
+            "redis.call('HSET', KEYS[1], 'tokens', tokens - granted, 'ts', ts) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+            "return granted";
+    private static final RedisScript<Long> LEASE_SCRIPT = new DefaultRedisScript<>(SCRIPT_LEASE, Long.class);
+
+    private static final Response ALLOWED_RESPONSE = new Response(true, Collections.emptyMap());
+    private static final Mono<Response> ALLOWED = Mono.just(ALLOWED_RESPONSE);
+    private static final Response DENIED_RESPONSE = new Response(false, Collections.emptyMap());
+    // 当场租借的超时时间，超时按 Redis 不可用处理
+    private static final Duration LEASE_TIMEOUT = Duration.ofMillis(500);
+    // 超过该时间没有请求的桶会被淘汰
+    private static final long IDLE_EVICT_MS = 60_000;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.rate-limit.sync-interval-ms:100}")
+    private long syncIntervalMs;
+
+    // 路由未配置 hybrid-rate-limiter 参数时的默认值
+    @Value("${gateway.rate-limit.replenish-rate:100}")
+    private int defaultReplenishRate;
+
+    @Value("${gateway.rate-limit.burst-capacity:200}")
+    private int defaultBurstCapacity;
+
+    // routeId:key -> 本地桶
+    private final Map<String, LeasedTokenBucket> buckets = new ConcurrentHashMap<>();
+    private Config defaultConfig;
+
+    private Counter deniedCounter;
+    private Counter leaseCounter;
+    private Counter fallbackCounter;
+
+    public HybridRateLimiter(ConfigurationService configurationService) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (defaultReplenishRate < 1 || defaultBurstCapacity < 1) {
+            throw new IllegalStateException("gateway.rate-limit.replenish-rate / burst-capacity 必须大于 0");
+        }
+        defaultConfig = new Config();
+        defaultConfig.setReplenishRate(defaultReplenishRate);
+        defaultConfig.setBurstCapacity(defaultBurstCapacity);
+
+        deniedCounter = Counter.builder("gateway.ratelimit.denied")
+                .description("被集群限流拒绝的请求数")
+                .register(meterRegistry);
+        leaseCounter = Counter.builder("gateway.ratelimit.leases")
+                .description("向 Redis 租借令牌的次数")
+                .register(meterRegistry);
+        fallbackCounter = Counter.builder("gateway.ratelimit.fallback")
+                .description("Redis 不可用时退化为单节点限流的次数")
+                .register(meterRegistry);
+        Gauge.builder("gateway.ratelimit.buckets", buckets, Map::size)
+                .description("本节点活跃的限流桶数量")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        long now = System.currentTimeMillis();
+        LeasedTokenBucket bucket = bucket(routeId, id, now);
+
+        // 1. 热路径：扣减本地令牌
+        if (bucket.tryAcquire(now)) {
+            return ALLOWED;
+        }
+        // 2. 全局预算已耗尽，直接拒绝
+        if (bucket.isExhausted(now)) {
+            return Mono.fromSupplier(this::denied);
+        }
+        // 3. 本地令牌用尽 (冷启动或突发)：当场租借一次，并发请求共享同一个租约；后台补租在途时等它结束
+        Mono<Void> lease = bucket.inflight.get();
+        if (lease == null) {
+            Mono<Void> created = lease(bucket, configFor(routeId), now)
+                    .doFinally(signal -> bucket.inflight.set(null))
+                    .cache();
+            lease = bucket.inflight.compareAndSet(null, created) ? created : bucket.inflight.get();
+        }
+        return (lease != null ? lease : Mono.<Void>empty())
+                .then(Mono.fromSupplier(() -> bucket.tryAcquire(System.currentTimeMillis()) ? ALLOWED_RESPONSE : denied()));
+    }
+
+    /**
+     * 后台批量补租：所有低于水位的桶合并为一次 Pipeline (EVALSHA)
+     */
+    @Scheduled(fixedDelayString = "${gateway.rate-limit.sync-interval-ms:100}")
+    public void sync() {
+        long now = System.currentTimeMillis();
+        List<LeasedTokenBucket> pending = new ArrayList<>();
+        List<Config> configs = new ArrayList<>();
+        List<Mono<Void>> leases = new ArrayList<>();
+        // 补租结束 (无论成败) 时放行挂在这批租约上的请求
+        Sinks.Empty<Void> done = Sinks.empty();
+        Mono<Void> joined = done.asMono().timeout(LEASE_TIMEOUT, Mono.empty());
+        buckets.forEach((key, bucket) -> {
+            if (now - bucket.lastAccess() > IDLE_EVICT_MS) {
+                buckets.remove(key, bucket);
+                return;
+            }
+            Config config = configFor(bucket.routeId);
+            if (bucket.needsLease(now, leaseSize(config)) && bucket.inflight.compareAndSet(null, joined)) {
+                pending.add(bucket);
+                configs.add(config);
+            }
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        try {
+            byte[] sha = LEASE_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < pending.size(); i++) {
+                    connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1,
+                            leaseKeysAndArgs(pending.get(i), configs.get(i), now));
+                }
+                return null;
+            });
+            leaseCounter.increment(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                applyLease(pending.get(i), configs.get(i), (Long) results.get(i), now);
+            }
+        } catch (Exception e) {
+            if (isNoScript(e)) {
+                // Redis 重启或脚本缓存被清空：重新加载，下个周期再租
+                redisTemplate.execute((RedisCallback<String>) connection ->
+                        connection.scriptingCommands().scriptLoad(SCRIPT_LEASE.getBytes(StandardCharsets.UTF_8)));
+            } else {
+                log.warn("限流令牌补租失败，退化为单节点限流: {}", e.getMessage());
+                for (int i = 0; i < pending.size(); i++) {
+                    fallback(pending.get(i), configs.get(i), now);
+                }
+            }
+        } finally {
+            pending.forEach(bucket -> bucket.inflight.compareAndSet(joined, null));
+            done.tryEmitEmpty();
+        }
+    }
+
+    private Mono<Void> lease(LeasedTokenBucket bucket, Config config, long now) {
+        leaseCounter.increment();
+        return reactiveRedisTemplate.execute(LEASE_SCRIPT, List.of(bucket.redisKey), leaseArgs(config, now))
+                .next()
+                .timeout(LEASE_TIMEOUT)
+                .doOnNext(granted -> applyLease(bucket, config, granted, now))
+                .onErrorResume(e -> {
+                    log.warn("限流令牌租借失败，退化为单节点限流: {}", e.getMessage());
+                    fallback(bucket, config, now);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void applyLease(LeasedTokenBucket bucket, Config config, Long granted, long now) {
+        // 预算耗尽后至少等一个同步周期或补充出一个令牌的时间再回源
+        long retryAfterMs = Math.max(syncIntervalMs, (long) Math.ceil(1000.0 / config.getReplenishRate()));
+        bucket.grant(granted == null ? 0 : granted, now, retryAfterMs);
+    }
+
+    private void fallback(LeasedTokenBucket bucket, Config config, long now) {
+        fallbackCounter.increment();
+        bucket.fallback(leaseSize(config), now, syncIntervalMs);
+    }
+
+    private LeasedTokenBucket bucket(String routeId, String id, long now) {
+        String key = routeId + ":" + id;
+        LeasedTokenBucket bucket = buckets.get(key);
+        return bucket != null ? bucket : buckets.computeIfAbsent(key, k -> new LeasedTokenBucket(routeId, KEY_PREFIX + k, now));
+    }
+
+    private Config configFor(String routeId) {
+        Config config = getConfig().get(routeId);
+        return config != null ? config : defaultConfig;
+    }
+
+    /**
+     * 每批租借量 = 一个同步周期的配额 (至少 1 个，不超过 burst)
+     */
+    private long leaseSize(Config config) {
+        long size = (long) Math.ceil(config.getReplenishRate() * syncIntervalMs / 1000.0);
+        return Math.max(1, Math.min(size, config.getBurstCapacity()));
+    }
+
+    private List<String> leaseArgs(Config config, long now) {
+        return List.of(
+                String.valueOf(config.getReplenishRate()),
+                String.valueOf(config.getBurstCapacity()),
+                String.valueOf(now),
+                String.valueOf(leaseSize(config)),
+                String.valueOf(ttlMillis(config)));
+    }
+
+    private byte[][] leaseKeysAndArgs(LeasedTokenBucket bucket, Config config, long now) {
+        List<String> args = leaseArgs(config, now);
+        byte[][] keysAndArgs = new byte[args.size() + 1][];
+        keysAndArgs[0] = bucket.redisKey.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < args.size(); i++) {
+            keysAndArgs[i + 1] = args.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return keysAndArgs;
+    }
+
+    /**
+     * 全局桶在两倍"从空到满"的时间内无人访问即过期，此时它本来也已回满
+     */
+    private static long ttlMillis(Config config) {
+        long fillMillis = (long) Math.ceil(config.getBurstCapacity() * 1000.0 / config.getReplenishRate());
+        return Math.max(1000, fillMillis * 2);
+    }
+
+    private Response denied() {
+        deniedCounter.increment();
+        return DENIED_RESPONSE;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Data
+    @Validated
+    public static class Config {
+        // 集群总速率 (每秒令牌数)，加载路由时校验，不允许 0 或负数
+        @Min(1)
+        private int replenishRate;
+        // 全局桶容量 (允许的突发)
+        @Min(1)
+        private int burstCapacity;
+    }
+}
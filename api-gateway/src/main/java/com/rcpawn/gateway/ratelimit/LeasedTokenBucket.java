@@ -0,0 +1,90 @@
+package com.rcpawn.gateway.ratelimit;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地令牌桶 (令牌来自集群预算的租约)
+ * 核心逻辑：从 Redis 全局令牌桶批量租借令牌 -> 请求线程 CAS 扣减本地余量 -> 余量低于水位时由后台任务补租
+ * 1. 请求热路径只有一次 CAS，不加锁、不走网络
+ * 2. 集群预算耗尽时记录 exhaustedUntil，在此之前直接拒绝，超限流量不会反复打到 Redis
+ */
+class LeasedTokenBucket {
+
+    final String routeId;
+    final String redisKey;
+
+    private final AtomicLong tokens = new AtomicLong();
+    // 正在进行的租约 (当场租借或后台补租，同一个桶同一时刻只允许一个)，本地令牌用尽的请求订阅它等待结果
+    final AtomicReference<Mono<Void>> inflight = new AtomicReference<>();
+    private volatile long lastAccess;
+    private volatile long exhaustedUntil;
+    private volatile long lastFallback;
+
+    LeasedTokenBucket(String routeId, String redisKey, long now) {
+        this.routeId = routeId;
+        this.redisKey = redisKey;
+        this.lastAccess = now;
+    }
+
+    /**
+     * 扣减一个本地令牌 (热路径)
+     */
+    boolean tryAcquire(long now) {
+        // 访问时间只用于淘汰空闲桶，秒级精度足够，减少对共享缓存行的写入
+        if (now - lastAccess > 1000) {
+            lastAccess = now;
+        }
+        long current;
+        do {
+            current = tokens.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    boolean isExhausted(long now) {
+        return now < exhaustedUntil;
+    }
+
+    /**
+     * 余量低于水位且集群预算未耗尽时需要补租
+     */
+    boolean needsLease(long now, long lowWater) {
+        return tokens.get() < lowWater && !isExhausted(now);
+    }
+
+    /**
+     * 记录一次租约结果，granted 为 0 表示集群预算已耗尽，retryAfterMs 内不再回源
+     */
+    void grant(long granted, long now, long retryAfterMs) {
+        if (granted > 0) {
+            tokens.addAndGet(granted);
+            exhaustedUntil = 0;
+        } else {
+            exhaustedUntil = now + retryAfterMs;
+        }
+    }
+
+    /**
+     * Redis 不可用时退化为单节点限流：每个周期最多补充一次本地令牌
+     */
+    void fallback(long amount, long now, long periodMs) {
+        if (now - lastFallback >= periodMs) {
+            lastFallback = now;
+            tokens.set(amount);
+        }
+    }
+
+    long available() {
+        return tokens.get();
+    }
+
+    long lastAccess() {
+        return lastAccess;
+    }
+}
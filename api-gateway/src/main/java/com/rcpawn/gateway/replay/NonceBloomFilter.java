@@ -0,0 +1,141 @@
+package com.rcpawn.gateway.replay;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按时间窗口轮换的 Nonce 布隆过滤器
+ * 核心逻辑：时间按 windowMillis 切片，保留"当前 + 上一个"两代过滤器 -> 写入只进当前代 -> 查询同时看两代
+ * 1. 一个 Nonce 写入后至少保留一个完整窗口，窗口与请求时间戳的有效期一致，过期 Nonce 本来就会被时间戳校验拦下
+ * 2. 进入新窗口时直接丢弃最老一代 (整体替换)，不需要逐条删除
+ * 3. 位数组使用 AtomicLongArray；判重结果只有"确定没见过"是精确的，"可能见过"需要回源确认
+ * 4. 同一个 Nonce 的"置位 + 判定"按 h1 分段加锁：并发的两个相同 Nonce 各自置上一部分位时，不会都被判为"没见过"
+ */
+public class NonceBloomFilter {
+
+    // 分段锁数量 (2 的幂)，相同 Nonce 的 h1 相同，一定落在同一段
+    private static final int LOCK_STRIPES = 256;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final long windowMillis;
+    private final int bitCount;
+    private final int hashCount;
+
+    private volatile Generations generations;
+
+    /**
+     * @param windowMillis       每一代覆盖的时间长度
+     * @param expectedInsertions 每个窗口预计写入的 Nonce 数量
+     * @param falsePositiveRate  期望误判率
+     */
+    public NonceBloomFilter(long windowMillis, long expectedInsertions, double falsePositiveRate) {
+        if (windowMillis <= 0 || expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("布隆过滤器参数非法");
+        }
+        this.windowMillis = windowMillis;
+        // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        // 向上取整到 64 的倍数，上限 2^31 位 (256MB)
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, (bits + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        // 第一次写入时按当前窗口分配
+        this.generations = new Generations(-1, null, null);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 写入 Nonce，返回 true 表示在当前保留的窗口内确定没有出现过
+     */
+    public boolean add(String nonce, long nowMillis) {
+        Generations gens = rotate(nowMillis / windowMillis);
+        long hash = hash64(nonce);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        // 临界区只有 k 次位运算；不同 Nonce 大多落在不同段，互不等待
+        synchronized (locks[h1 & (LOCK_STRIPES - 1)]) {
+            boolean seenBefore = true;
+            boolean inPrevious = true;
+            for (int i = 0; i < hashCount; i++) {
+                int bit = index(h1 + i * h2);
+                // 只要当前代有一位是本次新置上的，就说明当前代里没有它
+                if (setBit(gens.current, bit)) {
+                    seenBefore = false;
+                }
+                if (inPrevious && !getBit(gens.previous, bit)) {
+                    inPrevious = false;
+                }
+            }
+            return !seenBefore && !inPrevious;
+        }
+    }
+
+    /**
+     * 每个窗口使用的内存 (字节)
+     */
+    public long bytesPerGeneration() {
+        return bitCount / 8L;
+    }
+
+    private Generations rotate(long window) {
+        Generations gens = generations;
+        if (gens.window == window) {
+            return gens;
+        }
+        synchronized (this) {
+            gens = generations;
+            if (gens.window != window) {
+                // 相邻窗口：当前代降为上一代；跨了多个窗口：两代都已过期
+                AtomicLongArray previous = (gens.window == window - 1 && gens.current != null) ? gens.current : newBits();
+                gens = new Generations(window, newBits(), previous);
+                generations = gens;
+            }
+            return gens;
+        }
+    }
+
+    private AtomicLongArray newBits() {
+        return new AtomicLongArray(bitCount / 64);
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitCount;
+    }
+
+    private static boolean setBit(AtomicLongArray bits, int bit) {
+        int word = bit >>> 6;
+        long mask = 1L << bit;
+        long current = bits.get(word);
+        if ((current & mask) != 0) {
+            return false;
+        }
+        return (bits.getAndAccumulate(word, mask, (prev, m) -> prev | m) & mask) == 0;
+    }
+
+    private static boolean getBit(AtomicLongArray bits, int bit) {
+        return (bits.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * FNV-1a 64 + 末尾混淆 (murmur3 fmix64)，高低 32 位作为双重哈希的两个基
+     */
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private record Generations(long window, AtomicLongArray current, AtomicLongArray previous) {
+    }
+}
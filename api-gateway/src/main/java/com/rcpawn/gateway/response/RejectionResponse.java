@@ -0,0 +1,97 @@
+package com.rcpawn.gateway.response;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 预编码的拒绝响应 (401/403/429/503)
+ * 核心逻辑：类加载时把 JSON 响应体写入只读直接内存 -> 每次拒绝只取一个共享底层内存的切片 (retainedSlice) -> 响应头来自预构建的只读 HttpHeaders
+ * 1. 撞库、洪峰期间拒绝路径就是热路径，这里没有字符串拼接、编码和内存拷贝
+ * 2. 底层 ByteBuf 为 unreleasable，Netty 写完后释放切片不会回收共享内存
+ */
+public final class RejectionResponse {
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+    // ================= 鉴权 =================
+    public static final RejectionResponse UNAUTHORIZED = json(HttpStatus.UNAUTHORIZED, "{\"code\": 401, \"message\": \"非法访问\"}");
+
+    // ================= 防重放 =================
+    public static final RejectionResponse REPLAY_MISSING_HEADERS = json(HttpStatus.FORBIDDEN, "{\"code\": 403, \"msg\": \"缺少安全头(Timestamp/Nonce)\"}");
+    public static final RejectionResponse REPLAY_BAD_TIMESTAMP = json(HttpStatus.FORBIDDEN, "{\"code\": 403, \"msg\": \"时间戳格式错误\"}");
+    public static final RejectionResponse REPLAY_EXPIRED = json(HttpStatus.FORBIDDEN, "{\"code\": 403, \"msg\": \"请求已过期，拒绝访问\"}");
+    public static final RejectionResponse REPLAY_DETECTED = json(HttpStatus.FORBIDDEN, "{\"code\": 403, \"msg\": \"检测到重放攻击(Nonce重复)\"}");
+
+    // ================= Sentinel =================
+    public static final RejectionResponse FLOW_LIMITED = json(HttpStatus.TOO_MANY_REQUESTS, "{\"code\": 429, \"msg\": \"QPS Limit\"}");
+    public static final RejectionResponse DEGRADED = json(HttpStatus.TOO_MANY_REQUESTS, "{\"code\": 429, \"msg\": \"Service Degraded\"}");
+
+    // ================= 自适应并发 =================
+    public static final RejectionResponse CONCURRENCY_LIMITED = json(HttpStatus.SERVICE_UNAVAILABLE, "{\"code\": 503, \"msg\": \"Upstream Overloaded\"}");
+
+    // ================= 上游连接池 =================
+    public static final RejectionResponse UPSTREAM_POOL_EXHAUSTED = json(HttpStatus.SERVICE_UNAVAILABLE, "{\"code\": 503, \"msg\": \"Upstream Pool Exhausted\"}");
+
+    private final HttpStatus status;
+    private final HttpHeaders headers;
+    private final ByteBuf payload;
+
+    private RejectionResponse(HttpStatus status, HttpHeaders headers, ByteBuf payload) {
+        this.status = status;
+        this.headers = headers;
+        this.payload = payload;
+    }
+
+    /**
+     * 预编码一个 JSON 拒绝响应 (只应在类加载/启动时调用)
+     */
+    public static RejectionResponse json(HttpStatus status, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuf payload = Unpooled.unreleasableBuffer(
+                Unpooled.directBuffer(bytes.length, bytes.length).writeBytes(bytes).asReadOnly());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json;charset=UTF-8");
+        headers.setContentLength(bytes.length);
+        return new RejectionResponse(status, HttpHeaders.readOnlyHttpHeaders(headers), payload);
+    }
+
+    /**
+     * 直接写出到网关响应 (GlobalFilter 中使用)
+     */
+    public Mono<Void> writeTo(ServerHttpResponse response) {
+        response.setStatusCode(status);
+        response.getHeaders().putAll(headers);
+        return response.writeWith(Mono.just(buffer()));
+    }
+
+    /**
+     * 包装为 ServerResponse (Sentinel BlockRequestHandler 中使用)
+     */
+    public Mono<ServerResponse> toServerResponse() {
+        return ServerResponse.status(status)
+                .headers(target -> target.putAll(headers))
+                .body((message, context) -> message.writeWith(Mono.just(buffer())));
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * 与共享内存共用底层存储的切片，读写指针独立，可以被并发写出
+     */
+    private DataBuffer buffer() {
+        return BUFFER_FACTORY.wrap(payload.retainedSlice());
+    }
+}
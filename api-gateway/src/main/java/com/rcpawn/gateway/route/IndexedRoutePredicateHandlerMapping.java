@@ -0,0 +1,85 @@
+package com.rcpawn.gateway.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR;
+
+/**
+ * 基于 RouteMatchIndex 的路由查找
+ * 核心逻辑：路由缓存刷新完成 (RefreshRoutesResultEvent) -> 重新编译索引 -> 请求只对候选路由逐条执行断言
+ * 索引尚未建立时退化为父类的逐条匹配，行为与默认实现一致
+ */
+@Slf4j
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping
+        implements ApplicationListener<RefreshRoutesResultEvent> {
+
+    private final RouteLocator routeLocator;
+    private final RouteDefinitionLocator routeDefinitionLocator;
+
+    private volatile RouteMatchIndex index;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+                                               RouteDefinitionLocator routeDefinitionLocator,
+                                               GlobalCorsProperties globalCorsProperties, Environment environment) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDefinitionLocator = routeDefinitionLocator;
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess()) {
+            return;
+        }
+        // 路由缓存与定义都来自内存，这里同步完成编译
+        Mono.zip(routeLocator.getRoutes().collectList(),
+                        routeDefinitionLocator.getRouteDefinitions().collectMap(RouteDefinition::getId))
+                .subscribe(tuple -> {
+                    RouteMatchIndex built = RouteMatchIndex.build(tuple.getT1(), tuple.getT2());
+                    this.index = built;
+                    log.info("路由索引已重建，共 {} 条路由，其中 {} 条按路径索引", built.getRouteCount(), built.getIndexedCount());
+                }, e -> {
+                    // 编译失败时回退到逐条匹配
+                    this.index = null;
+                    log.error("路由索引构建失败，回退为逐条匹配", e);
+                });
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        RouteMatchIndex current = this.index;
+        if (current == null) {
+            return super.lookupRoute(exchange);
+        }
+
+        ServerHttpRequest request = exchange.getRequest();
+        return Flux.fromIterable(current.candidates(request.getPath().pathWithinApplication(),
+                        request.getMethod(), request.getHeaders().getFirst("Host")))
+                // 与父类一致：逐条执行断言，单条路由出错只记录日志不影响后续匹配
+                .concatMap(route -> Mono.just(route).filterWhen(r -> {
+                            exchange.getAttributes().put(GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                            return r.getPredicate().apply(exchange);
+                        })
+                        .doOnError(e -> log.error("Error applying predicate for route: " + route.getId(), e))
+                        .onErrorResume(e -> Mono.empty()))
+                .next()
+                .map(route -> {
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+}
@@ -0,0 +1,236 @@
+package com.rcpawn.gateway.route;
+
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 路由匹配索引 (只读)
+ * 核心逻辑：把 Path 断言开头的字面量段编译成前缀树 -> 请求按路径段下探收集候选路由 -> 只对候选路由执行完整断言
+ * 1. Path 断言以通配符/变量开头、或带有无法识别的写法时，路由退化为"总是候选"，保证结果与逐条匹配完全一致
+ * 2. Method 与精确 Host 作为二级 Key，在执行断言前先行排除明显不匹配的候选
+ * 3. 候选按原路由顺序返回，最终仍由 Route 自身的断言决定是否命中
+ */
+public class RouteMatchIndex {
+
+    private static final String PATH = "Path";
+    private static final String METHOD = "Method";
+    private static final String HOST = "Host";
+    // Path 断言的开关类参数，不是路径模式
+    private static final Set<String> PATH_FLAG_ARGS = Set.of("matchTrailingSlash", "matchOptionalTrailingSeparator");
+
+    private final Node root = new Node();
+    // 无法按路径索引的路由 (没有 Path 断言 / 以通配符开头 / 非 RouteDefinition 定义的路由)
+    private final List<Entry> unindexed = new ArrayList<>();
+    private final int routeCount;
+    private final int indexedCount;
+
+    private RouteMatchIndex(List<Route> routes, Map<String, RouteDefinition> definitions) {
+        int indexed = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            RouteDefinition definition = definitions.get(route.getId());
+            if (definition == null) {
+                unindexed.add(new Entry(i, route, null, null));
+                continue;
+            }
+
+            Set<String> methods = null;
+            Set<String> hosts = null;
+            List<List<String>> prefixes = null;
+
+            for (PredicateDefinition predicate : definition.getPredicates()) {
+                String name = predicate.getName();
+                List<String> values = argValues(predicate);
+                if (PATH.equals(name)) {
+                    // 多个 Path 断言是 AND 关系，任取一个可索引的即可保证不漏
+                    if (prefixes == null) {
+                        prefixes = literalPrefixes(values);
+                    }
+                } else if (METHOD.equals(name)) {
+                    methods = upperCase(values);
+                } else if (HOST.equals(name)) {
+                    hosts = exactHosts(values);
+                }
+            }
+
+            Entry entry = new Entry(i, route, methods, hosts);
+            if (prefixes == null) {
+                unindexed.add(entry);
+                continue;
+            }
+            for (List<String> prefix : prefixes) {
+                Node node = root;
+                for (String segment : prefix) {
+                    node = node.children.computeIfAbsent(segment, k -> new Node());
+                }
+                node.entries.add(entry);
+            }
+            indexed++;
+        }
+        this.routeCount = routes.size();
+        this.indexedCount = indexed;
+    }
+
+    public static RouteMatchIndex build(List<Route> routes, Map<String, RouteDefinition> definitions) {
+        return new RouteMatchIndex(routes, definitions);
+    }
+
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    public int getIndexedCount() {
+        return indexedCount;
+    }
+
+    /**
+     * 找出可能命中的候选路由 (按原路由顺序)
+     * @param path 应用内路径 (与 Path 断言使用的 PathContainer 一致)
+     * @param method 请求方法
+     * @param host Host 请求头 (可为 null)
+     */
+    public List<Route> candidates(PathContainer path, HttpMethod method, String host) {
+        List<Entry> matched = new ArrayList<>();
+        collect(root.entries, method, host, matched);
+
+        Node node = root;
+        for (PathContainer.Element element : path.elements()) {
+            if (!(element instanceof PathContainer.PathSegment segment)) {
+                continue;
+            }
+            node = node.children.get(segment.valueToMatch());
+            if (node == null) {
+                break;
+            }
+            collect(node.entries, method, host, matched);
+        }
+        collect(unindexed, method, host, matched);
+
+        if (matched.isEmpty()) {
+            return Collections.emptyList();
+        }
+        matched.sort((a, b) -> Integer.compare(a.order, b.order));
+
+        List<Route> result = new ArrayList<>(matched.size());
+        int last = -1;
+        for (Entry entry : matched) {
+            if (entry.order != last) {
+                result.add(entry.route);
+                last = entry.order;
+            }
+        }
+        return result;
+    }
+
+    private static void collect(List<Entry> entries, HttpMethod method, String host, List<Entry> target) {
+        for (Entry entry : entries) {
+            if (entry.methods != null && (method == null || !entry.methods.contains(method.name()))) {
+                continue;
+            }
+            if (entry.hosts != null && (host == null || !entry.hosts.contains(normalizeHost(host)))) {
+                continue;
+            }
+            target.add(entry);
+        }
+    }
+
+    /**
+     * 解析 Path 断言的字面量前缀，返回 null 表示无法索引
+     */
+    private static List<List<String>> literalPrefixes(List<String> patterns) {
+        if (patterns.isEmpty()) {
+            return null;
+        }
+        List<List<String>> result = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (!pattern.startsWith("/")) {
+                return null;
+            }
+            List<String> literal = new ArrayList<>();
+            for (String segment : pattern.substring(1).split("/")) {
+                if (segment.isEmpty() || segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0
+                        || segment.indexOf('{') >= 0) {
+                    break;
+                }
+                literal.add(segment);
+            }
+            if (literal.isEmpty()) {
+                // 以通配符开头的模式 (如 /**) 可能匹配任意路径
+                return null;
+            }
+            result.add(literal);
+        }
+        return result;
+    }
+
+    /**
+     * 断言参数值 (兼容 _genkey_N 简写与具名参数，逗号分隔的多值会被拆开)
+     */
+    private static List<String> argValues(PredicateDefinition predicate) {
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<String, String> arg : predicate.getArgs().entrySet()) {
+            String value = arg.getValue();
+            if (value == null || PATH_FLAG_ARGS.contains(arg.getKey())) continue;
+            for (String part : value.split(",")) {
+                String trimmed = part.trim();
+                if (!trimmed.isEmpty()) values.add(trimmed);
+            }
+        }
+        return values;
+    }
+
+    private static Set<String> upperCase(List<String> values) {
+        if (values.isEmpty()) return null;
+        Set<String> result = new HashSet<>();
+        for (String value : values) {
+            result.add(value.toUpperCase(Locale.ROOT));
+        }
+        return result;
+    }
+
+    /**
+     * 只有全部为精确域名时才作为二级 Key，含通配符的 Host 断言交给断言自身判断
+     */
+    private static Set<String> exactHosts(List<String> values) {
+        if (values.isEmpty()) return null;
+        Set<String> result = new HashSet<>();
+        for (String value : values) {
+            if (value.indexOf('*') >= 0 || value.indexOf('?') >= 0 || value.indexOf('{') >= 0) {
+                return null;
+            }
+            result.add(value.toLowerCase(Locale.ROOT));
+        }
+        return result;
+    }
+
+    /**
+     * 去掉端口并转小写，比 Host 断言本身更宽松，只会多放行候选、不会漏掉
+     */
+    private static String normalizeHost(String host) {
+        int colon = host.lastIndexOf(':');
+        if (colon > 0 && host.indexOf(']') < colon) {
+            host = host.substring(0, colon);
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        final List<Entry> entries = new ArrayList<>();
+    }
+
+    private record Entry(int order, Route route, Set<String> methods, Set<String> hosts) {
+    }
+}
@@ -0,0 +1,170 @@
+package com.rcpawn.gateway.upstream;
+
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个上游的连接池 (一个服务或一组显式共享连接池的路由)
+ * 核心逻辑：按 Settings 建固定大小的 ConnectionProvider -> Reactor Netty 为每个上游地址 (实例) 建一个子池并回调 registerMetrics -> 保存子池的指标句柄供 Gauge/Dashboard 读取
+ * 1. maxConnections、pendingAcquireMaxCount 都是按实例计算的 (Reactor Netty 每个远端地址一个子池)，慢实例最多占满自己的子池，不影响其他上游
+ * 2. 空闲超过 maxIdleTime、存活超过 maxLifeTime 的连接由后台任务回收；长时间没有连接的子池 (实例下线) 一并释放
+ * 3. 配置变化时整体替换为新池，旧池等待在途请求归还连接后关闭
+ */
+public class UpstreamPool implements ConnectionProvider.MeterRegistrar {
+
+    // 替换/关闭时等待在途请求归还连接的最长时间
+    private static final Duration DISPOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String name;
+    private final Settings settings;
+    private final ConnectionProvider provider;
+    // 上游地址 -> TCP 连接池的指标
+    private final Map<String, ConnectionPoolMetrics> connections = new ConcurrentHashMap<>();
+    // 上游地址 -> HTTP/2 流池的指标 (只有 h2c 时存在)
+    private final Map<String, ConnectionPoolMetrics> streams = new ConcurrentHashMap<>();
+    private HttpClient client;
+    private volatile boolean disposed;
+
+    UpstreamPool(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.provider = ConnectionProvider.builder("upstream-" + name)
+                .maxConnections(settings.maxConnections())
+                .pendingAcquireMaxCount(settings.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.pendingAcquireTimeout())
+                .maxIdleTime(settings.maxIdleTime())
+                .maxLifeTime(settings.maxLifeTime())
+                .evictInBackground(settings.evictionInterval())
+                .disposeInactivePoolsInBackground(settings.evictionInterval(), settings.maxIdleTime())
+                .disposeTimeout(DISPOSE_TIMEOUT)
+                .metrics(true, () -> this)
+                .build();
+    }
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        (isHttp2(poolName) ? streams : connections).put(remoteAddress.toString(), metrics);
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        (isHttp2(poolName) ? streams : connections).remove(remoteAddress.toString());
+    }
+
+    // h2c 时 Reactor Netty 在连接池之上再建一个以 "http2." 为前缀的 HTTP/2 流池
+    private static boolean isHttp2(String poolName) {
+        return poolName.startsWith("http2.");
+    }
+
+    /**
+     * 关闭连接池 (已借出的连接最多等待 DISPOSE_TIMEOUT)
+     */
+    void dispose() {
+        disposed = true;
+        provider.disposeLater().subscribe();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    ConnectionProvider getProvider() {
+        return provider;
+    }
+
+    HttpClient getClient() {
+        return client;
+    }
+
+    void setClient(HttpClient client) {
+        this.client = client;
+    }
+
+    boolean isDisposed() {
+        return disposed;
+    }
+
+    // ================= 各实例子池合计 =================
+    // 升级到 HTTP/2 的连接在 TCP 连接池中一直处于借出状态，由 HTTP/2 流池管理；
+    // 所以 "借出" = 正在使用的 HTTP/2 流 + 未升级 (HTTP/1.1) 的借出连接，"空闲" = 没有流的 HTTP/2 连接 + TCP 连接池的空闲连接
+
+    public int getActive() {
+        int sum = 0;
+        for (String remote : connections.keySet()) sum += active(remote);
+        return sum;
+    }
+
+    public int getIdle() {
+        int sum = 0;
+        for (String remote : connections.keySet()) sum += idle(remote);
+        return sum;
+    }
+
+    public int getPending() {
+        int sum = 0;
+        for (String remote : connections.keySet()) sum += pending(remote);
+        return sum;
+    }
+
+    private int active(String remote) {
+        ConnectionPoolMetrics tcp = connections.get(remote);
+        ConnectionPoolMetrics h2 = streams.get(remote);
+        int acquired = tcp == null ? 0 : tcp.acquiredSize();
+        return h2 == null ? acquired : h2.acquiredSize() + Math.max(0, acquired - h2.allocatedSize());
+    }
+
+    private int idle(String remote) {
+        ConnectionPoolMetrics tcp = connections.get(remote);
+        ConnectionPoolMetrics h2 = streams.get(remote);
+        return (tcp == null ? 0 : tcp.idleSize()) + (h2 == null ? 0 : h2.idleSize());
+    }
+
+    private int pending(String remote) {
+        ConnectionPoolMetrics tcp = connections.get(remote);
+        ConnectionPoolMetrics h2 = streams.get(remote);
+        return (tcp == null ? 0 : tcp.pendingAcquireSize()) + (h2 == null ? 0 : h2.pendingAcquireSize());
+    }
+
+    /**
+     * 各实例子池的连接数明细
+     */
+    List<Map<String, Object>> remoteSnapshot() {
+        List<Map<String, Object>> list = new ArrayList<>(connections.size());
+        connections.forEach((remote, tcp) -> {
+            ConnectionPoolMetrics h2 = streams.get(remote);
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("remote", remote);
+            map.put("active", active(remote));
+            map.put("idle", idle(remote));
+            map.put("pending", pending(remote));
+            map.put("connections", tcp.allocatedSize());
+            map.put("http2Connections", h2 == null ? 0 : h2.allocatedSize());
+            list.add(map);
+        });
+        return list;
+    }
+
+    /**
+     * 连接池参数 (全局默认值 + 路由 metadata 中的覆盖项)
+     *
+     * @param maxConnections        每个实例的最大连接数
+     * @param pendingAcquireMaxCount 每个实例等待获取连接的请求数上限，超出直接拒绝
+     * @param h2c                   是否尝试以明文 HTTP/2 (h2c 升级) 连接上游，上游不支持时仍使用 HTTP/1.1
+     */
+    public record Settings(int maxConnections, int pendingAcquireMaxCount, Duration pendingAcquireTimeout,
+                           Duration maxIdleTime, Duration maxLifeTime, Duration evictionInterval, boolean h2c) {
+    }
+}
@@ -0,0 +1,301 @@
+package com.rcpawn.gateway.upstream;
+
+import com.rcpawn.gateway.upstream.UpstreamPool.Settings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquireTimeoutException;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+
+/**
+ * 上游连接池表 (HTTP 转发不再使用 spring.cloud.gateway.httpclient 的全局连接池)
+ * 核心逻辑：路由转发时按 metadata.upstream-pool.name 或 URI 的服务名找到连接池 -> 没有则按 "全局默认值 + 路由覆盖项" 新建 -> 返回绑定该连接池的 HttpClient
+ * 1. 默认每个上游服务一个连接池，一个后端变慢只会占满自己的连接和等待队列，排队超限直接拒绝，不会拖垮其他路由
+ * 2. HttpClient 的解码、SSL、代理、Customizer 与全局 HttpClient 一致 (复用 HttpClientFactory)，只替换 ConnectionProvider；开启 h2c 时尝试以 HTTP/2 多路复用连接上游
+ * 3. 路由到连接池的绑定按路由缓存，路由的连接池配置变化时重建连接池；共享连接池的路由配置不一致时以最后变更的路由为准
+ * 4. 活跃/空闲/排队连接数通过 gateway.upstream.pool.* Gauge 暴露，获取连接的耗时记录到 gateway.upstream.pool.acquire
+ */
+@Slf4j
+@Component
+public class UpstreamPoolRegistry {
+
+    // 路由 metadata 中的连接池配置 (DynamicRouteLoader 从路由 JSON 的 pool 字段转换而来)
+    public static final String POOL_METADATA_KEY = "upstream-pool";
+
+    @Autowired
+    private HttpClientProperties httpClientProperties;
+    @Autowired
+    private ServerProperties serverProperties;
+    @Autowired
+    private HttpClientSslConfigurer sslConfigurer;
+    @Autowired
+    private ObjectProvider<HttpClientCustomizer> customizers;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每个实例的最大连接数
+    @Value("${gateway.upstream.pool.max-connections:200}")
+    private int maxConnections;
+
+    // 每个实例等待连接的请求数上限
+    @Value("${gateway.upstream.pool.pending-acquire-max-count:400}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${gateway.upstream.pool.pending-acquire-timeout:3s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${gateway.upstream.pool.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${gateway.upstream.pool.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    // 后台回收空闲/过期连接的周期
+    @Value("${gateway.upstream.pool.eviction-interval:10s}")
+    private Duration evictionInterval;
+
+    @Value("${gateway.upstream.pool.h2c:false}")
+    private boolean h2c;
+
+    private final Map<String, UpstreamPool> pools = new ConcurrentHashMap<>();
+    // routeId -> 连接池绑定
+    private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+    private final Map<String, Timer> acquireTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 路由转发使用的 HttpClient (热路径，绑定有效时只做一次 Map 查找和几次比较)
+     */
+    public HttpClient client(Route route) {
+        Map<String, Object> metadata = route.getMetadata();
+        Object config = metadata.get(POOL_METADATA_KEY);
+        Object connectTimeout = metadata.get(CONNECT_TIMEOUT_ATTR);
+
+        Binding binding = bindings.get(route.getId());
+        boolean sameRoute = binding != null && binding.matches(route.getUri(), config, connectTimeout);
+        if (sameRoute && !binding.pool.isDisposed()) {
+            return binding.client;
+        }
+        return bind(route, config, connectTimeout, sameRoute);
+    }
+
+    /**
+     * 把路由绑定到连接池
+     *
+     * @param unchanged 路由配置没变，只是连接池被其他路由替换了：直接使用当前的连接池，避免共享连接池的路由来回重建
+     */
+    private HttpClient bind(Route route, Object config, Object connectTimeout, boolean unchanged) {
+        Map<?, ?> overrides = config instanceof Map<?, ?> map ? map : Map.of();
+        String name = poolName(route, overrides);
+        Settings settings = settings(overrides);
+
+        UpstreamPool pool = pools.compute(name, (key, old) -> {
+            if (old != null && (unchanged || old.getSettings().equals(settings))) {
+                return old;
+            }
+            if (old != null) {
+                log.info("上游连接池 {} 配置变更 (路由 {})，重建: {} -> {}", key, route.getId(), old.getSettings(), settings);
+                old.dispose();
+            }
+            return createPool(key, settings);
+        });
+
+        // 1. 路由 metadata 中的连接超时 (与 NettyRoutingFilter 默认行为一致)
+        HttpClient client = pool.getClient();
+        if (connectTimeout != null) {
+            client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Integer.parseInt(connectTimeout.toString()));
+        }
+        bindings.put(route.getId(), new Binding(route.getUri(), config, connectTimeout, pool, client));
+        return client;
+    }
+
+    private UpstreamPool createPool(String name, Settings settings) {
+        UpstreamPool pool = new UpstreamPool(name, settings);
+
+        // 1. 与全局 HttpClient 相同的构建流程，只替换连接池
+        HttpClient client = new PoolHttpClientFactory(httpClientProperties, serverProperties, sslConfigurer,
+                customizers.orderedStream().toList(), pool.getProvider()).build();
+        if (settings.h2c()) {
+            client = client.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        // 2. 记录获取连接的耗时 (排队 + 新建连接)，等待队列满/等待超时计入 rejected
+        Timer acquireTimer = acquireTimers.computeIfAbsent(name, k -> Timer.builder("gateway.upstream.pool.acquire")
+                .tag("pool", k)
+                .description("获取上游连接的耗时 (含排队与新建连接)")
+                .register(meterRegistry));
+        Counter rejected = rejectedCounters.computeIfAbsent(name, this::registerMeters);
+        client = client.mapConnect(connect -> Mono.defer(() -> {
+            long start = System.nanoTime();
+            return connect
+                    .doOnSuccess(c -> acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> {
+                        if (isPoolExhausted(e)) {
+                            rejected.increment();
+                        }
+                    });
+        }));
+
+        pool.setClient(client);
+        log.info("创建上游连接池 {}: {}", name, settings);
+        return pool;
+    }
+
+    /**
+     * 每个连接池名只注册一次：Gauge 读取当前的连接池，重建后自动指向新池
+     */
+    private Counter registerMeters(String name) {
+        gauge("gateway.upstream.pool.active", "已借出的连接数", name, UpstreamPool::getActive);
+        gauge("gateway.upstream.pool.idle", "空闲连接数", name, UpstreamPool::getIdle);
+        gauge("gateway.upstream.pool.pending", "等待获取连接的请求数", name, UpstreamPool::getPending);
+        return Counter.builder("gateway.upstream.pool.rejected")
+                .tag("pool", name)
+                .description("等待队列已满或等待超时而拒绝的请求数")
+                .register(meterRegistry);
+    }
+
+    private void gauge(String metric, String description, String name, ToIntFunction<UpstreamPool> value) {
+        Gauge.builder(metric, pools, p -> {
+                    UpstreamPool pool = p.get(name);
+                    return pool == null ? 0 : value.applyAsInt(pool);
+                })
+                .tag("pool", name)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 连接池名：metadata 中显式指定的名称，否则为上游服务 (lb://service-a -> service-a，http://host:port -> host:port)
+     */
+    private static String poolName(Route route, Map<?, ?> overrides) {
+        Object name = overrides.get("name");
+        if (name != null && !name.toString().isBlank()) {
+            return name.toString();
+        }
+        URI uri = route.getUri();
+        return uri.getAuthority() != null ? uri.getAuthority() : route.getId();
+    }
+
+    private Settings settings(Map<?, ?> overrides) {
+        return new Settings(
+                intValue(overrides, "max-connections", maxConnections),
+                intValue(overrides, "pending-acquire-max-count", pendingAcquireMaxCount),
+                millis(overrides, "pending-acquire-timeout", pendingAcquireTimeout),
+                millis(overrides, "max-idle-time", maxIdleTime),
+                millis(overrides, "max-life-time", maxLifeTime),
+                evictionInterval,
+                overrides.containsKey("h2c") ? Boolean.parseBoolean(overrides.get("h2c").toString()) : h2c);
+    }
+
+    private static int intValue(Map<?, ?> overrides, String key, int defaultValue) {
+        Object value = overrides.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.toString());
+    }
+
+    // metadata 中的时长与 connect-timeout 一样以毫秒为单位
+    private static Duration millis(Map<?, ?> overrides, String key, Duration defaultValue) {
+        Object value = overrides.get(key);
+        return value == null ? defaultValue : Duration.ofMillis(Long.parseLong(value.toString()));
+    }
+
+    /**
+     * 是否因连接池排队超限/等待超时而失败 (网关侧拒绝，与上游实例的健康无关)
+     */
+    public static boolean isPoolExhausted(Throwable e) {
+        return e instanceof PoolAcquirePendingLimitException || e instanceof PoolAcquireTimeoutException;
+    }
+
+    /**
+     * 本节点各连接池的配置、连接数与获取连接耗时 (Dashboard 使用)
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> list = new ArrayList<>(pools.size());
+        for (UpstreamPool pool : pools.values()) {
+            Settings settings = pool.getSettings();
+            Timer acquireTimer = acquireTimers.get(pool.getName());
+            Counter rejected = rejectedCounters.get(pool.getName());
+
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("pool", pool.getName());
+            map.put("h2c", settings.h2c());
+            map.put("maxConnections", settings.maxConnections());
+            map.put("pendingAcquireMaxCount", settings.pendingAcquireMaxCount());
+            map.put("active", pool.getActive());
+            map.put("idle", pool.getIdle());
+            map.put("pending", pool.getPending());
+            map.put("acquireCount", acquireTimer == null ? 0 : acquireTimer.count());
+            map.put("acquireMeanMs", acquireTimer == null ? 0 : acquireTimer.mean(TimeUnit.MILLISECONDS));
+            map.put("acquireMaxMs", acquireTimer == null ? 0 : acquireTimer.max(TimeUnit.MILLISECONDS));
+            map.put("rejected", rejected == null ? 0 : (long) rejected.count());
+            map.put("instances", pool.remoteSnapshot());
+            list.add(map);
+        }
+        return list;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pools.values().forEach(UpstreamPool::dispose);
+    }
+
+    private record Binding(URI uri, Object config, Object connectTimeout, UpstreamPool pool, HttpClient client) {
+
+        boolean matches(URI uri, Object config, Object connectTimeout) {
+            return this.uri.equals(uri) && Objects.equals(this.config, config) && Objects.equals(this.connectTimeout, connectTimeout);
+        }
+    }
+
+    /**
+     * 复用 HttpClientFactory 的构建流程 (解码、协议、SSL、代理、Customizer)，连接池换成指定的 ConnectionProvider
+     */
+    private static class PoolHttpClientFactory extends HttpClientFactory {
+
+        private final ConnectionProvider provider;
+
+        PoolHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties, HttpClientSslConfigurer sslConfigurer,
+                              List<HttpClientCustomizer> customizers, ConnectionProvider provider) {
+            super(properties, serverProperties, sslConfigurer, customizers);
+            this.provider = provider;
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return provider;
+        }
+
+        HttpClient build() {
+            return createInstance();
+        }
+    }
+}
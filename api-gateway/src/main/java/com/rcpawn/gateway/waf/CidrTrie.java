@@ -0,0 +1,293 @@
+package com.rcpawn.gateway.waf;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * IPv4/IPv6 CIDR 前缀树 (只读)
+ * 1. 逐位下探的二叉前缀树 (没有做路径压缩)，匹配成本只与前缀长度有关 (IPv4 最多 32 步，IPv6 最多 128 步)，与规则数量无关
+ * 2. 节点打平成 int 数组存储，下探本身不分配对象；contains(InetAddress) 取地址字节时会复制一次数组，已有地址字节的调用方可以直接传 byte[]
+ * 3. 构建时被更短前缀覆盖的子网直接剪枝，重复/嵌套的网段只占一条路径
+ * 通过 Builder 构建，构建完成后不可变，可在多个线程间安全共享
+ */
+public final class CidrTrie {
+
+    private static final CidrTrie EMPTY = new Builder().build();
+
+    private final Tree v4;
+    private final Tree v6;
+    private final int size;
+
+    private CidrTrie(Tree v4, Tree v6, int size) {
+        this.v4 = v4;
+        this.v6 = v6;
+        this.size = size;
+    }
+
+    public static CidrTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 规则条数 (构建时成功加入的网段数)
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(InetAddress address) {
+        if (address == null || size == 0) {
+            return false;
+        }
+        return contains(address.getAddress());
+    }
+
+    /**
+     * @param address 网络字节序的地址，IPv4 为 4 字节 (IPv4 映射的 IPv6 地址也要先转成 4 字节，与 InetAddress 一致)，IPv6 为 16 字节
+     */
+    public boolean contains(byte[] address) {
+        if (address == null || size == 0) {
+            return false;
+        }
+        return address.length == 4 ? v4.contains(address) : v6.contains(address);
+    }
+
+    public static class Builder {
+        private final Tree v4 = new Tree();
+        private final Tree v6 = new Tree();
+        private int size;
+
+        /**
+         * 加入一条规则，支持 "10.0.0.0/8"、"2001:db8::/32" 以及不带掩码的单个 IP
+         * @throws IllegalArgumentException 格式非法
+         */
+        public Builder add(String cidr) {
+            Cidr parsed = parse(cidr);
+            (parsed.address.length == 4 ? v4 : v6).insert(parsed.address, parsed.prefixLength);
+            size++;
+            return this;
+        }
+
+        public CidrTrie build() {
+            return new CidrTrie(v4.trimToSize(), v6.trimToSize(), size);
+        }
+    }
+
+    /**
+     * 校验并解析 CIDR 字符串
+     * 只接受完整的 IP 字面量 (不做 DNS 解析，不接受 "1"、"1.2" 这类简写)；IPv4 映射的 IPv6 地址按 IPv4 处理
+     */
+    public static Cidr parse(String cidr) {
+        if (cidr == null || cidr.isBlank()) {
+            throw new IllegalArgumentException("CIDR 不能为空");
+        }
+        String text = cidr.trim();
+        int slash = text.indexOf('/');
+        String ip = slash >= 0 ? text.substring(0, slash) : text;
+
+        byte[] address = ip.indexOf(':') >= 0 ? parseIpv6(ip) : parseIpv4(ip);
+        if (address == null) {
+            throw new IllegalArgumentException("非法 IP: " + cidr);
+        }
+
+        int maxLength = address.length * 8;
+        int prefixLength = maxLength;
+        if (slash >= 0) {
+            prefixLength = parseDecimal(text.substring(slash + 1), 3);
+            if (prefixLength < 0 || prefixLength > maxLength) {
+                throw new IllegalArgumentException("非法掩码: " + cidr);
+            }
+        }
+
+        // ::ffff:a.b.c.d 与 a.b.c.d 是同一个地址，查询时按 IPv4 匹配
+        if (isIpv4Mapped(address)) {
+            if (prefixLength < 96) {
+                throw new IllegalArgumentException("非法掩码: " + cidr);
+            }
+            return new Cidr(Arrays.copyOfRange(address, 12, 16), prefixLength - 96);
+        }
+        return new Cidr(address, prefixLength);
+    }
+
+    /**
+     * 点分十进制 IPv4：必须是 4 段，每段 0~255，不允许前导零
+     */
+    private static byte[] parseIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            int value = parseDecimal(parts[i], 3);
+            if (value < 0 || value > 255 || (parts[i].length() > 1 && parts[i].charAt(0) == '0')) {
+                return null;
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+
+    /**
+     * IPv6：最多 8 组 1~4 位十六进制，"::" 最多出现一次，最后一组可以是点分 IPv4 (不能在 "::" 之前)；不接受方括号和 %zone
+     */
+    private static byte[] parseIpv6(String ip) {
+        int compress = ip.indexOf("::");
+        if (compress >= 0 && ip.indexOf("::", compress + 1) >= 0) {
+            return null;
+        }
+        String head = compress >= 0 ? ip.substring(0, compress) : ip;
+        String tail = compress >= 0 ? ip.substring(compress + 2) : "";
+
+        byte[] headBytes = parseGroups(head, compress < 0);
+        byte[] tailBytes = parseGroups(tail, true);
+        if (headBytes == null || tailBytes == null) {
+            return null;
+        }
+        int length = headBytes.length + tailBytes.length;
+        // 不压缩时必须正好 16 字节；"::" 至少代表一组
+        if (compress < 0 ? length != 16 : length > 14) {
+            return null;
+        }
+        byte[] address = new byte[16];
+        System.arraycopy(headBytes, 0, address, 0, headBytes.length);
+        System.arraycopy(tailBytes, 0, address, 16 - tailBytes.length, tailBytes.length);
+        return address;
+    }
+
+    /**
+     * 冒号分隔的若干组；allowIpv4 为 true 时最后一组可以是点分 IPv4 (占 2 组)
+     */
+    private static byte[] parseGroups(String text, boolean allowIpv4) {
+        if (text.isEmpty()) {
+            return new byte[0];
+        }
+        String[] groups = text.split(":", -1);
+        byte[] bytes = new byte[groups.length * 2 + 2];
+        int length = 0;
+        for (int i = 0; i < groups.length; i++) {
+            String group = groups[i];
+            if (allowIpv4 && i == groups.length - 1 && group.indexOf('.') >= 0) {
+                byte[] v4 = parseIpv4(group);
+                if (v4 == null) {
+                    return null;
+                }
+                System.arraycopy(v4, 0, bytes, length, 4);
+                length += 4;
+                break;
+            }
+            if (group.isEmpty() || group.length() > 4) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < group.length(); j++) {
+                int digit = Character.digit(group.charAt(j), 16);
+                if (digit < 0) {
+                    return null;
+                }
+                value = (value << 4) | digit;
+            }
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+        return length > 16 ? null : Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * 只由 ASCII 数字组成、不超过 maxDigits 位的十进制数，否则返回 -1
+     */
+    private static int parseDecimal(String text, int maxDigits) {
+        if (text.isEmpty() || text.length() > maxDigits) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isIpv4Mapped(byte[] address) {
+        if (address.length != 16 || address[10] != (byte) 0xff || address[11] != (byte) 0xff) {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public record Cidr(byte[] address, int prefixLength) {
+    }
+
+    /**
+     * 单个地址族的二叉前缀树，children[2n] / children[2n+1] 为节点 n 的 0/1 子节点 (0 表示不存在，根节点固定为 0)
+     */
+    private static final class Tree {
+        private int[] children = new int[64];
+        private boolean[] terminal = new boolean[32];
+        private int nodeCount = 1;
+
+        void insert(byte[] address, int prefixLength) {
+            int node = 0;
+            for (int i = 0; i < prefixLength; i++) {
+                if (terminal[node]) {
+                    return; // 已被更短的前缀覆盖
+                }
+                int slot = (node << 1) | bit(address, i);
+                int child = children[slot];
+                if (child == 0) {
+                    child = newNode();
+                    children[slot] = child;
+                }
+                node = child;
+            }
+            terminal[node] = true;
+            // 剪掉被覆盖的子网
+            children[node << 1] = 0;
+            children[(node << 1) | 1] = 0;
+        }
+
+        boolean contains(byte[] address) {
+            int node = 0;
+            int bits = address.length * 8;
+            for (int i = 0; ; i++) {
+                if (terminal[node]) {
+                    return true;
+                }
+                if (i == bits) {
+                    return false;
+                }
+                node = children[(node << 1) | bit(address, i)];
+                if (node == 0) {
+                    return false;
+                }
+            }
+        }
+
+        // 构建结束后截掉数组的预留空间
+        Tree trimToSize() {
+            children = Arrays.copyOf(children, nodeCount << 1);
+            terminal = Arrays.copyOf(terminal, nodeCount);
+            return this;
+        }
+
+        private int newNode() {
+            if (nodeCount == terminal.length) {
+                terminal = Arrays.copyOf(terminal, nodeCount << 1);
+                children = Arrays.copyOf(children, nodeCount << 2);
+            }
+            return nodeCount++;
+        }
+
+        private static int bit(byte[] address, int index) {
+            return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+        }
+    }
+}
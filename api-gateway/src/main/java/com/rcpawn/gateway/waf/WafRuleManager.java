@@ -0,0 +1,98 @@
+package com.rcpawn.gateway.waf;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * WAF 规则本地快照
+ * 核心逻辑：后台定时轮询 Redis (开关 + 版本号) -> 版本变化才拉取黑名单并重建 CIDR 前缀树 -> 原子替换快照
+ * 请求线程只读 volatile 快照，不再有任何 Redis 调用；Dashboard 切换开关后各节点在一个轮询周期内生效
+ */
+@Slf4j
+@Component
+public class WafRuleManager {
+
+    public static final String WAF_ENABLE_KEY = "gateway:waf:enable";
+    // 黑名单 (Set，成员为 CIDR 或单个 IP)
+    public static final String WAF_BLACKLIST_KEY = "gateway:waf:blacklist";
+    // 黑名单版本号，每次修改黑名单时 INCR，节点据此判断是否需要重建前缀树
+    public static final String WAF_VERSION_KEY = "gateway:waf:version";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    // 内置规则 (与 Redis 黑名单合并)
+    @Value("${gateway.waf.default-blacklist:192.168.0.100/32}")
+    private List<String> defaultBlacklist;
+
+    // 版本号 -1 表示尚未从 Redis 加载过黑名单
+    private volatile WafSnapshot snapshot = new WafSnapshot(false, CidrTrie.empty(), -1);
+
+    @PostConstruct
+    public void init() {
+        snapshot = new WafSnapshot(false, buildTrie(null), -1);
+    }
+
+    /**
+     * 当前生效的快照 (热路径)
+     */
+    public WafSnapshot current() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.waf.refresh-interval-ms:500}")
+    public void refresh() {
+        try {
+            // 1. 一次 MGET 拿到开关和版本号
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(WAF_ENABLE_KEY, WAF_VERSION_KEY));
+            boolean enabled = values != null && "true".equals(values.get(0));
+            long version = (values == null || values.get(1) == null) ? 0 : Long.parseLong(values.get(1));
+
+            WafSnapshot current = snapshot;
+            CidrTrie blacklist = current.blacklist();
+
+            // 2. 版本变化才重建前缀树
+            if (version != current.version()) {
+                Set<String> members = redisTemplate.opsForSet().members(WAF_BLACKLIST_KEY);
+                blacklist = buildTrie(members);
+                log.info("WAF 黑名单已重建，version={}，规则数={}", version, blacklist.size());
+            }
+
+            if (enabled != current.enabled() || version != current.version()) {
+                snapshot = new WafSnapshot(enabled, blacklist, version);
+            }
+        } catch (Exception e) {
+            // Redis 不可用时沿用旧快照
+            log.warn("WAF 规则刷新失败: {}", e.getMessage());
+        }
+    }
+
+    private CidrTrie buildTrie(Collection<String> members) {
+        List<String> rules = new ArrayList<>(defaultBlacklist);
+        if (members != null) {
+            rules.addAll(members);
+        }
+        CidrTrie.Builder builder = new CidrTrie.Builder();
+        for (String rule : rules) {
+            try {
+                builder.add(rule);
+            } catch (IllegalArgumentException e) {
+                log.warn("忽略非法 WAF 规则: {}", rule);
+            }
+        }
+        return builder.build();
+    }
+
+    public record WafSnapshot(boolean enabled, CidrTrie blacklist, long version) {
+    }
+}
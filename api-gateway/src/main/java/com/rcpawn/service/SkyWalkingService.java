@@ -3,21 +3,30 @@ package com.rcpawn.service;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * SkyWalking 拓扑查询
+ * 核心逻辑：Caffeine 异步缓存 -> 未命中时由 WebClient 异步查询 OAP (并发请求共享同一次查询) -> 结果按内容分配版本号 -> 按调用方已有版本返回增量
+ * 1. 缓存超过 refresh-after-ms (默认 4 秒，早于原来的 5 秒过期) 后的访问触发后台刷新，刷新期间和刷新失败时继续返回旧拓扑
+ * 2. OAP 持续不可用超过 max-stale-ms 才丢弃旧拓扑
+ * 3. 拓扑内容不变时版本号不变，看板带上 since 轮询时只收到变化的节点和连线
+ * 4. 版本号为 "启动纪元.序号"：网关重启或轮询落到其他节点时，since 属于别的纪元，查不到历史，返回全量
+ */
 @Slf4j
 @Service
 public class SkyWalkingService {
@@ -25,28 +34,59 @@ public class SkyWalkingService {
     @Value("${skywalking.oap-url:http://127.0.0.1:12800/graphql}")
     private String oapUrl;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${skywalking.topology.refresh-after-ms:4000}")
+    private long refreshAfterMs;
 
-    // 本地缓存 (TTL 5秒)
-    private final Cache<String, Map<String, Object>> topologyCache = Caffeine.newBuilder()
-            .expireAfterWrite(5, TimeUnit.SECONDS)
-            .maximumSize(1)
-            .build();
+    @Value("${skywalking.topology.max-stale-ms:60000}")
+    private long maxStaleMs;
 
-    public Map<String, Object> getTopology() {
-        Map<String, Object> cached = topologyCache.getIfPresent("topology");
-        if (cached != null) {
-            return cached;
-        }
+    @Value("${skywalking.topology.timeout-ms:3000}")
+    private long timeoutMs;
 
-        Map<String, Object> freshData = fetchFromSkyWalking();
-        if (!freshData.isEmpty()) {
-            topologyCache.put("topology", freshData);
-        }
-        return freshData;
+    private static final String CACHE_KEY = "topology";
+    // 保留最近几个版本，用于计算增量；调用方的版本更老时返回全量
+    private static final int HISTORY_SIZE = 8;
+
+    private final WebClient webClient = WebClient.create();
+
+    // 本地缓存 (单 Key，异步加载自带 single-flight)
+    private AsyncLoadingCache<String, Topology> topologyCache;
+
+    private final Deque<Topology> history = new ArrayDeque<>();
+    // 本进程的启动纪元，区分不同节点/不同次启动分配的版本号
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private long lastVersion;
+
+    @PostConstruct
+    public void init() {
+        topologyCache = Caffeine.newBuilder()
+                .refreshAfterWrite(refreshAfterMs, TimeUnit.MILLISECONDS)
+                .expireAfterWrite(maxStaleMs, TimeUnit.MILLISECONDS)
+                .maximumSize(1)
+                .buildAsync((key, executor) -> fetchFromSkyWalking().toFuture());
     }
 
-    private Map<String, Object> fetchFromSkyWalking() {
+    /**
+     * 全量拓扑
+     */
+    public Mono<Map<String, Object>> getTopology() {
+        return getTopology(null);
+    }
+
+    /**
+     * 相对 since 版本的增量拓扑 (since 为空、来自其他纪元或已不在历史中时返回全量)
+     */
+    public Mono<Map<String, Object>> getTopology(String since) {
+        // suppressCancel：调用方断开不能取消其他请求共享的那次查询
+        return Mono.fromFuture(() -> topologyCache.get(CACHE_KEY), true)
+                .map(topology -> topology.diffFrom(since == null ? null : findVersion(since)))
+                .onErrorResume(e -> {
+                    log.error("Failed to fetch topology: {}", e.getMessage());
+                    return Mono.just(Collections.emptyMap());
+                });
+    }
+
+    private Mono<Topology> fetchFromSkyWalking() {
         // 只查最近 3 分钟
         String start = getTime(-3);
         String end = getTime(0);
@@ -56,29 +96,72 @@ public class SkyWalkingService {
                 start, end
         );
 
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(queryGraphql, headers);
-
-            String respStr = restTemplate.postForObject(oapUrl, entity, String.class);
+        return webClient.post()
+                .uri(oapUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(queryGraphql)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .map(this::parseTopology)
+                .map(this::publish)
+                .doOnError(e -> log.warn("SkyWalking 拓扑刷新失败，继续使用旧拓扑: {}", e.getMessage()));
+    }
 
-            if (respStr == null) return Collections.emptyMap();
+    /**
+     * 解析 OAP 响应，异常/空结果直接抛出 (缓存保留旧值)
+     */
+    private Map<String, Object> parseTopology(String respStr) {
+        JSONObject json = JSON.parseObject(respStr);
+        if (json == null || json.containsKey("errors")) {
+            throw new IllegalStateException("OAP 返回错误: " + (json == null ? "empty" : json.get("errors")));
+        }
 
-            JSONObject json = JSON.parseObject(respStr);
-            if (json == null || json.containsKey("errors")) return Collections.emptyMap();
+        JSONObject data = json.getJSONObject("data");
+        JSONObject topology = data == null ? null : data.getJSONObject("topology");
+        if (topology == null) {
+            throw new IllegalStateException("OAP 响应缺少 topology");
+        }
 
-            JSONObject data = json.getJSONObject("data");
-            if (data == null) return Collections.emptyMap();
+        return convertToECharts(topology.getJSONArray("nodes"), topology.getJSONArray("calls"));
+    }
 
-            JSONObject topology = data.getJSONObject("topology");
-            if (topology == null) return Collections.emptyMap();
+    /**
+     * 内容与最新版本相同则沿用，否则分配新版本号
+     */
+    @SuppressWarnings("unchecked")
+    private Topology publish(Map<String, Object> echarts) {
+        Map<String, Map<String, Object>> nodes = new LinkedHashMap<>();
+        for (Map<String, Object> node : (List<Map<String, Object>>) echarts.get("nodes")) {
+            nodes.put((String) node.get("id"), node);
+        }
+        Map<String, Map<String, Object>> links = new LinkedHashMap<>();
+        for (Map<String, Object> link : (List<Map<String, Object>>) echarts.get("links")) {
+            links.put(link.get("source") + "->" + link.get("target"), link);
+        }
 
-            return convertToECharts(topology.getJSONArray("nodes"), topology.getJSONArray("calls"));
+        synchronized (history) {
+            Topology latest = history.peekLast();
+            if (latest != null && latest.nodes.equals(nodes) && latest.links.equals(links)) {
+                return latest;
+            }
+            Topology topology = new Topology(epoch + "." + (++lastVersion), nodes, links);
+            history.addLast(topology);
+            if (history.size() > HISTORY_SIZE) {
+                history.removeFirst();
+            }
+            return topology;
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to fetch topology: {}", e.getMessage());
-            return Collections.emptyMap();
+    private Topology findVersion(String version) {
+        synchronized (history) {
+            for (Topology topology : history) {
+                if (topology.version.equals(version)) {
+                    return topology;
+                }
+            }
+            return null;
         }
     }
 
@@ -219,4 +302,65 @@ public class SkyWalkingService {
         return LocalDateTime.now().plusMinutes(minuteOffset)
                 .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm"));
     }
+
+    /**
+     * 一个版本的拓扑 (节点按 id、连线按 source->target 索引)
+     */
+    private static final class Topology {
+        private final String version;
+        private final Map<String, Map<String, Object>> nodes;
+        private final Map<String, Map<String, Object>> links;
+
+        private Topology(String version, Map<String, Map<String, Object>> nodes, Map<String, Map<String, Object>> links) {
+            this.version = version;
+            this.nodes = nodes;
+            this.links = links;
+        }
+
+        /**
+         * base 为空返回全量；否则只返回新增/变化的节点和连线，以及被删除的节点 id 和连线
+         */
+        Map<String, Object> diffFrom(Topology base) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("version", version);
+            if (base == null) {
+                result.put("full", true);
+                result.put("nodes", new ArrayList<>(nodes.values()));
+                result.put("links", new ArrayList<>(links.values()));
+                return result;
+            }
+
+            result.put("full", false);
+            result.put("nodes", changed(base.nodes, nodes));
+            result.put("links", changed(base.links, links));
+
+            List<String> removedNodes = new ArrayList<>();
+            for (String id : base.nodes.keySet()) {
+                if (!nodes.containsKey(id)) removedNodes.add(id);
+            }
+            List<Map<String, Object>> removedLinks = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Object>> entry : base.links.entrySet()) {
+                if (!links.containsKey(entry.getKey())) {
+                    Map<String, Object> link = new HashMap<>();
+                    link.put("source", entry.getValue().get("source"));
+                    link.put("target", entry.getValue().get("target"));
+                    removedLinks.add(link);
+                }
+            }
+            result.put("removedNodes", removedNodes);
+            result.put("removedLinks", removedLinks);
+            return result;
+        }
+
+        private static List<Map<String, Object>> changed(Map<String, Map<String, Object>> before,
+                                                         Map<String, Map<String, Object>> after) {
+            List<Map<String, Object>> changed = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Object>> entry : after.entrySet()) {
+                if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                    changed.add(entry.getValue());
+                }
+            }
+            return changed;
+        }
+    }
 }
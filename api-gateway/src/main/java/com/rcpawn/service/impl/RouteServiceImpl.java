@@ -5,9 +5,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.rcpawn.entity.GatewayRouteEntity;
 import com.rcpawn.service.RouteService;
+import com.rcpawn.util.NacosConfigCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -20,35 +21,35 @@ public class RouteServiceImpl implements RouteService {
     private static final String GROUP = "DEFAULT_GROUP";
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 路由配置的解析缓存 (Nacos 监听保鲜，写入走 CAS)
+    private NacosConfigCache<GatewayRouteEntity> routes;
+
+    @PostConstruct
+    public void init() {
+        routes = new NacosConfigCache<>(nacosConfigManager.getConfigService(), DATA_ID, GROUP,
+                objectMapper, new TypeReference<List<GatewayRouteEntity>>() {});
+    }
+
     @Override
     public List<GatewayRouteEntity> listRoutes() throws Exception {
-        String configInfo = nacosConfigManager.getConfigService().getConfig(DATA_ID, GROUP, 5000);
-        if (configInfo == null) return new ArrayList<>();
-        return objectMapper.readValue(configInfo, new TypeReference<List<GatewayRouteEntity>>() {});
+        return routes.get();
     }
 
     @Override
     public void updateRoute(GatewayRouteEntity route) throws Exception {
-        List<GatewayRouteEntity> list = listRoutes();
-        // 如果是修改，先删旧的；如果是新增，本身就没有旧的（无副作用）
-        list.removeIf(r -> r.getId().equals(route.getId()));
-        list.add(route);
-        publish(list);
+        routes.update(list -> {
+            // 如果是修改，先删旧的；如果是新增，本身就没有旧的（无副作用）
+            list.removeIf(r -> r.getId().equals(route.getId()));
+            list.add(route);
+            return true;
+        });
     }
 
     @Override
     public void deleteRoute(String id) throws Exception {
-        List<GatewayRouteEntity> list = listRoutes();
-        boolean removed = list.removeIf(r -> r.getId().equals(id));
-        if (removed) {
-            publish(list);
-        } else {
+        boolean removed = routes.update(list -> list.removeIf(r -> r.getId().equals(id)));
+        if (!removed) {
             throw new RuntimeException("路由ID不存在");
         }
     }
-
-    private void publish(List<GatewayRouteEntity> list) throws Exception {
-        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(list);
-        nacosConfigManager.getConfigService().publishConfig(DATA_ID, GROUP, json);
-    }
-}
\ No newline at end of file
+}
@@ -7,11 +7,14 @@ import com.rcpawn.entity.sentinel.ResourceRuleVO;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rcpawn.service.SentinelService;
+import com.rcpawn.util.NacosConfigCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class SentinelServiceImpl implements SentinelService {
@@ -26,23 +29,53 @@ public class SentinelServiceImpl implements SentinelService {
     private static final String DEGRADE_DATA_ID = "gateway-sentinel-degrade.json";
     private static final String GROUP = "DEFAULT_GROUP";
 
+    // 两份规则的解析缓存 (Nacos 监听保鲜，写入走 CAS)
+    private NacosConfigCache<FlowRuleEntity> flowRules;
+    private NacosConfigCache<DegradeRuleEntity> degradeRules;
+
+    @PostConstruct
+    public void init() {
+        flowRules = new NacosConfigCache<>(nacosConfigManager.getConfigService(), FLOW_DATA_ID, GROUP,
+                objectMapper, new TypeReference<List<FlowRuleEntity>>() {});
+        degradeRules = new NacosConfigCache<>(nacosConfigManager.getConfigService(), DEGRADE_DATA_ID, GROUP,
+                objectMapper, new TypeReference<List<DegradeRuleEntity>>() {});
+    }
+
     // --- 核心聚合逻辑 ---
     @Override
     public List<ResourceRuleVO> listResourceRules() throws Exception {
-        // 1. 并行获取两份配置
-        List<FlowRuleEntity> flowRules = getRules(FLOW_DATA_ID, new TypeReference<List<FlowRuleEntity>>() {});
-        List<DegradeRuleEntity> degradeRules = getRules(DEGRADE_DATA_ID, new TypeReference<List<DegradeRuleEntity>>() {});
+        // 1. 并行获取两份配置 (都已缓存时直接读内存；首次访问时两次 Nacos 拉取同时进行)
+        List<FlowRuleEntity> flows;
+        List<DegradeRuleEntity> degrades;
+        if (flowRules.isLoaded() && degradeRules.isLoaded()) {
+            flows = flowRules.get();
+            degrades = degradeRules.get();
+        } else {
+            CompletableFuture<List<FlowRuleEntity>> flowFuture = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return flowRules.get();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+            degrades = degradeRules.get();
+            try {
+                flows = flowFuture.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
 
         // 2. 使用 Map 进行聚合 (Key = 资源名)
         Map<String, ResourceRuleVO> map = new HashMap<>();
 
         // 3. 填入限流规则
-        for (FlowRuleEntity f : flowRules) {
+        for (FlowRuleEntity f : flows) {
             map.put(f.getResource(), new ResourceRuleVO(f.getResource(), f, null));
         }
 
         // 4. 填入降级规则 (如果资源已存在则合并，不存在则新增)
-        for (DegradeRuleEntity d : degradeRules) {
+        for (DegradeRuleEntity d : degrades) {
             ResourceRuleVO vo = map.getOrDefault(d.getResource(), new ResourceRuleVO(d.getResource(), null, null));
             vo.setDegradeRule(d);
             map.put(d.getResource(), vo);
@@ -53,45 +86,28 @@ public class SentinelServiceImpl implements SentinelService {
 
     @Override
     public void saveFlowRule(FlowRuleEntity rule) throws Exception {
-        List<FlowRuleEntity> list = getRules(FLOW_DATA_ID, new TypeReference<List<FlowRuleEntity>>() {});
-        // 移除旧规则 (同一资源名)
-        list.removeIf(r -> r.getResource().equals(rule.getResource()));
-        // 添加新规则
-        list.add(rule);
-        publish(FLOW_DATA_ID, list);
+        flowRules.update(list -> {
+            // 移除旧规则 (同一资源名)
+            list.removeIf(r -> r.getResource().equals(rule.getResource()));
+            // 添加新规则
+            list.add(rule);
+            return true;
+        });
     }
 
     @Override
     public void saveDegradeRule(DegradeRuleEntity rule) throws Exception {
-        List<DegradeRuleEntity> list = getRules(DEGRADE_DATA_ID, new TypeReference<List<DegradeRuleEntity>>() {});
-        list.removeIf(r -> r.getResource().equals(rule.getResource()));
-        list.add(rule);
-        publish(DEGRADE_DATA_ID, list);
+        degradeRules.update(list -> {
+            list.removeIf(r -> r.getResource().equals(rule.getResource()));
+            list.add(rule);
+            return true;
+        });
     }
 
     @Override
     public void deleteResource(String resource) throws Exception {
-        // 删除限流
-        List<FlowRuleEntity> flowList = getRules(FLOW_DATA_ID, new TypeReference<List<FlowRuleEntity>>() {});
-        boolean fRemoved = flowList.removeIf(r -> r.getResource().equals(resource));
-        if (fRemoved) publish(FLOW_DATA_ID, flowList);
-
-        // 删除降级
-        List<DegradeRuleEntity> degList = getRules(DEGRADE_DATA_ID, new TypeReference<List<DegradeRuleEntity>>() {});
-        boolean dRemoved = degList.removeIf(r -> r.getResource().equals(resource));
-        if (dRemoved) publish(DEGRADE_DATA_ID, degList);
-    }
-
-    // --- 私有工具方法 ---
-
-    private <T> List<T> getRules(String dataId, TypeReference<List<T>> type) throws Exception {
-        String json = nacosConfigManager.getConfigService().getConfig(dataId, GROUP, 5000);
-        if (json == null || json.trim().isEmpty()) return new ArrayList<>();
-        return objectMapper.readValue(json, type);
-    }
-
-    private void publish(String dataId, Object data) throws Exception {
-        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(data);
-        nacosConfigManager.getConfigService().publishConfig(dataId, GROUP, json);
+        // 删除限流 / 删除降级 (没有该资源的规则时不发布)
+        flowRules.update(list -> list.removeIf(r -> r.getResource().equals(resource)));
+        degradeRules.update(list -> list.removeIf(r -> r.getResource().equals(resource)));
     }
-}
\ No newline at end of file
+}
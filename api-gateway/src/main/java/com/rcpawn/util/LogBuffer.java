@@ -1,59 +1,191 @@
 package com.rcpawn.util;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 拦截日志缓冲 (WAF / AUTH / FLOW / FUSE / SHED)
+ * 核心逻辑：请求线程只在本地按 (来源, 类型) 合并计数 -> 定时任务取出本周期的事件 -> 一次 Pipeline (LPUSH + LTRIM) 写入 Redis
+ * 1. 攻击期间同一来源的重复事件合并为一条带 count 的日志，Redis 写入次数与拦截量无关
+ * 2. 一个周期内最多合并 max-pending 种 (来源, 类型)，超出直接丢弃并计数，内存有上界
+ * 3. JSON 在刷写线程手工拼装，热路径不做格式化
+ */
 @Component
 @Slf4j
 public class LogBuffer {
 
     @Autowired
-    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     // Redis List Key，只存最近 50 条供 Dashboard 展示
     private static final String KEY_INTERCEPT_LOGS = "gateway:dashboard:logs";
+    private static final int MAX_LOGS = 50;
 
     // 预编译时间格式，提升性能
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     public static final String LOG_ALREADY_HANDLED = "LOG_ALREADY_HANDLED";
 
+    @Value("${gateway.intercept-log.max-pending:1024}")
+    private int maxPending;
+
+    // (来源, 类型) -> 本周期合并后的事件
+    private final Map<EventKey, PendingEvent> pending = new ConcurrentHashMap<>();
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void init() {
+        droppedCounter = Counter.builder("gateway.interceptlog.dropped")
+                .description("合并表已满被丢弃的拦截事件数")
+                .register(meterRegistry);
+    }
+
     /**
-     * 记录日志 (Reactive Fire-and-Forget 模式)
+     * 记录日志 (热路径，只做本地合并计数)
      */
     public void record(String source, String type, String detail) {
-        try {
-            // 1. 构造 JSON
-            String safeDetail = detail == null ? "" : detail.replace("\"", "'");
-            String logJson = String.format(
-                    "{\"time\":\"%s\", \"source\":\"%s\", \"type\":\"%s\", \"msg\":\"%s\"}",
-                    LocalDateTime.now().format(TIME_FORMATTER),
-                    source,
-                    type,
-                    safeDetail
-            );
-
-            // 2. 异步推入 Redis List (非阻塞)
-            reactiveRedisTemplate.opsForList().leftPush(KEY_INTERCEPT_LOGS, logJson)
-                    .flatMap(count -> {
-                        // 3. 如果超过 50 条，修剪 (非阻塞)
-                        if (count > 50) {
-                            return reactiveRedisTemplate.opsForList().trim(KEY_INTERCEPT_LOGS, 0, 49);
-                        }
-                        return reactor.core.publisher.Mono.empty();
-                    })
-                    .subscribe(
-                            null,
-                            e -> log.error("LogBuffer write failed", e)
-                    );
+        EventKey key = new EventKey(source, type);
+        PendingEvent event = pending.get(key);
+        if (event == null) {
+            if (pending.size() >= maxPending) {
+                droppedCounter.increment();
+                return;
+            }
+            event = pending.computeIfAbsent(key, k -> new PendingEvent());
+        }
+        event.hit(detail, System.currentTimeMillis());
+    }
+
+    /**
+     * 定时把本周期合并后的事件写入 Redis (单次 Pipeline)
+     */
+    @Scheduled(fixedDelayString = "${gateway.intercept-log.flush-interval-ms:500}")
+    public void flush() {
+        // 1. 取出本周期有新增的事件，没有新增的移出合并表
+        List<FlushedEvent> events = new ArrayList<>();
+        pending.forEach((key, event) -> {
+            long count = event.count.sumThenReset();
+            if (count > 0) {
+                events.add(new FlushedEvent(key, event.detail, event.lastTime, count));
+            } else {
+                // 与并发的 record 存在竞争：移除前已经取到这个事件的线程，会把计数记到已移出的对象上而丢失
+                // 丢失量不超过同一时刻正在记录这个 (来源, 类型) 的线程数 (每个线程至多一次)，且只发生在空闲了一个周期的事件重新出现时
+                // 避免竞争需要在热路径上用 compute 加锁，攻击期间同一个 Key 的所有请求会串行；对展示用途可以接受这个误差
+                pending.remove(key, event);
+            }
+        });
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // 2. 只保留最新的 MAX_LOGS 条，按时间从旧到新 LPUSH，最新的落在表头
+        events.sort(Comparator.comparingLong(FlushedEvent::time));
+        List<FlushedEvent> latest = events.subList(Math.max(0, events.size() - MAX_LOGS), events.size());
+        String[] values = new String[latest.size()];
+        StringBuilder json = new StringBuilder(128);
+        for (int i = 0; i < values.length; i++) {
+            json.setLength(0);
+            values[i] = toJson(json, latest.get(i));
+        }
 
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.lPush(KEY_INTERCEPT_LOGS, values);
+                conn.lTrim(KEY_INTERCEPT_LOGS, 0, MAX_LOGS - 1);
+                return null;
+            });
         } catch (Exception e) {
-            log.error("LogBuffer logic error", e);
+            log.warn("LogBuffer flush failed, dropped {} events: {}", values.length, e.getMessage());
+        }
+    }
+
+    /**
+     * {"time":"HH:mm:ss", "source":"...", "type":"...", "msg":"...", "count":n}
+     */
+    private static String toJson(StringBuilder json, FlushedEvent event) {
+        String time = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.time()), ZoneId.systemDefault()).format(TIME_FORMATTER);
+        json.append("{\"time\":\"").append(time);
+        json.append("\", \"source\":\"");
+        appendEscaped(json, event.key().source());
+        json.append("\", \"type\":\"");
+        appendEscaped(json, event.key().type());
+        json.append("\", \"msg\":\"");
+        appendEscaped(json, event.detail());
+        json.append("\", \"count\":").append(event.count()).append('}');
+        return json.toString();
+    }
+
+    private static void appendEscaped(StringBuilder json, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
         }
     }
-}
\ No newline at end of file
+
+    private record EventKey(String source, String type) {
+    }
+
+    private static final class PendingEvent {
+        final LongAdder count = new LongAdder();
+        // 合并后只保留最近一次的详情和时间
+        volatile String detail;
+        volatile long lastTime;
+
+        void hit(String detail, long now) {
+            // 详情通常是常量、时间是毫秒精度，相同时不重复写，减少同一来源被并发拦截时的缓存行争用
+            if (this.detail != detail) {
+                this.detail = detail;
+            }
+            if (this.lastTime != now) {
+                this.lastTime = now;
+            }
+            count.increment();
+        }
+    }
+
+    private record FlushedEvent(EventKey key, String detail, long time, long count) {
+    }
+}
@@ -0,0 +1,140 @@
+package com.rcpawn.util;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.config.listener.Listener;
+import com.alibaba.nacos.common.utils.MD5Utils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Nacos JSON 列表配置的本地解析缓存 (管理端读写使用)
+ * 核心逻辑：首次读取时拉取配置并注册监听 -> 监听到变化后重新解析替换快照 -> 写入基于快照 MD5 做 CAS 发布，冲突时重新拉取再试
+ * 1. 读接口直接返回内存快照，不再每次请求都访问 Nacos 并重新反序列化
+ * 2. 快照 (MD5 + 解析结果) 整体替换，读到的内容与 MD5 始终对应
+ * 3. 写入使用 publishConfigCas，多个管理员并发修改时不会互相覆盖
+ */
+@Slf4j
+public class NacosConfigCache<E> {
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final int MAX_CAS_ATTEMPTS = 3;
+    // 配置不存在时以空内容的 MD5 作为期望值，保证"首次创建"也走 CAS
+    private static final String EMPTY_MD5 = md5("");
+
+    private final ConfigService configService;
+    private final String dataId;
+    private final String group;
+    private final ObjectMapper objectMapper;
+    private final TypeReference<List<E>> type;
+
+    private volatile Snapshot<E> snapshot;
+
+    public NacosConfigCache(ConfigService configService, String dataId, String group,
+                            ObjectMapper objectMapper, TypeReference<List<E>> type) {
+        this.configService = configService;
+        this.dataId = dataId;
+        this.group = group;
+        this.objectMapper = objectMapper;
+        this.type = type;
+    }
+
+    /**
+     * 当前配置的只读快照
+     */
+    public List<E> get() throws Exception {
+        return current().items();
+    }
+
+    /**
+     * 是否已加载过 (未加载时 get 会同步访问 Nacos)
+     */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * 读-改-写：mutator 在快照的副本上修改并返回是否有变化，有变化时 CAS 发布
+     *
+     * @return 是否发布了新配置
+     */
+    public boolean update(Predicate<List<E>> mutator) throws Exception {
+        Snapshot<E> base = current();
+        for (int attempt = 1; attempt <= MAX_CAS_ATTEMPTS; attempt++) {
+            // 1. 在副本上修改
+            List<E> next = new ArrayList<>(base.items());
+            if (!mutator.test(next)) {
+                return false;
+            }
+
+            // 2. 以快照 MD5 为期望值发布
+            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(next);
+            if (configService.publishConfigCas(dataId, group, json, base.md5())) {
+                snapshot = new Snapshot<>(md5(json), Collections.unmodifiableList(next));
+                return true;
+            }
+
+            // 3. 期间被其他人修改过 -> 重新拉取最新配置再试
+            log.info("配置 {} CAS 发布冲突，重新拉取后重试 ({}/{})", dataId, attempt, MAX_CAS_ATTEMPTS);
+            base = reload();
+        }
+        throw new IllegalStateException("配置 " + dataId + " 并发修改冲突，请稍后重试");
+    }
+
+    private Snapshot<E> current() throws Exception {
+        Snapshot<E> s = snapshot;
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                // 拉取的同时注册监听，之后的变化都由监听推送
+                String content = configService.getConfigAndSignListener(dataId, group, TIMEOUT_MS, new Listener() {
+                    @Override
+                    public Executor getExecutor() {
+                        return null;
+                    }
+
+                    @Override
+                    public void receiveConfigInfo(String configInfo) {
+                        try {
+                            snapshot = parse(configInfo);
+                        } catch (Exception e) {
+                            log.error("配置 {} 解析失败，保留旧快照", dataId, e);
+                        }
+                    }
+                });
+                snapshot = parse(content);
+            }
+            return snapshot;
+        }
+    }
+
+    private Snapshot<E> reload() throws Exception {
+        Snapshot<E> s = parse(configService.getConfig(dataId, group, TIMEOUT_MS));
+        snapshot = s;
+        return s;
+    }
+
+    private Snapshot<E> parse(String content) throws Exception {
+        if (content == null || content.trim().isEmpty()) {
+            // 不存在与内容为空都视为空列表；空白内容的 MD5 仍以原文为准
+            return new Snapshot<>(content == null ? EMPTY_MD5 : md5(content), Collections.emptyList());
+        }
+        List<E> items = objectMapper.readValue(content, type);
+        return new Snapshot<>(md5(content), Collections.unmodifiableList(items));
+    }
+
+    private static String md5(String content) {
+        return MD5Utils.md5Hex(content, "UTF-8");
+    }
+
+    private record Snapshot<E>(String md5, List<E> items) {
+    }
+}
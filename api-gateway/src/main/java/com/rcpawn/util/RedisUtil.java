@@ -25,15 +25,16 @@ public class RedisUtil {
                     "else " +
                     "   return 0; " +
                     "end";
+    // 脚本对象只创建一次：SHA1 只算一次，执行时先 EVALSHA，只有 Redis 未缓存该脚本时才回退一次 EVAL (之后即被缓存)
+    private static final RedisScript<Long> SET_IF_ABSENT_SCRIPT = RedisScript.of(SCRIPT_SET_IF_ABSENT, Long.class);
 
     /**
      * 原子操作：不存在则设置并返回 true，存在则返回 false
      */
     public Mono<Boolean> setIfAbsent(String key, String value, long time) {
-        RedisScript<Long> script = RedisScript.of(SCRIPT_SET_IF_ABSENT, Long.class);
         // 注意：execute 的第二个参数 keys 是 List，第三个参数 args 也是 List
         // 我们需要把参数包装成 List 传进去
-        return redisTemplate.execute(script,
+        return redisTemplate.execute(SET_IF_ABSENT_SCRIPT,
                         Collections.singletonList(key), // KEYS[1]
                         List.of(String.valueOf(time), value) // ARGV[1], ARGV[2] (包装成 List)
                 ).next()
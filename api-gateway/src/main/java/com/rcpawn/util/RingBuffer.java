@@ -0,0 +1,105 @@
+package com.rcpawn.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁环形缓冲区 (多生产者 / 单消费者)
+ * 核心逻辑：每个槽位带一个序号，生产者 CAS 抢占写指针后写入并发布序号 -> 消费者按序号判断槽位是否可读
+ * 1. offer 不阻塞、不加锁，缓冲区满时直接返回 false，由调用方决定丢弃策略
+ * 2. 容量向上取整为 2 的幂 (最小为 2)，下标用位运算计算
+ */
+public class RingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    // 槽位序号：等于写指针表示可写，等于写指针 + 1 表示已写入可读
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public RingBuffer(int requestedCapacity) {
+        if (requestedCapacity <= 0 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("环形缓冲区容量非法: " + requestedCapacity);
+        }
+        // 至少 2 个槽位：容量为 1 时"已写入"与"下一轮可写"的序号会重合
+        this.capacity = Math.max(2, Integer.highestOneBit(requestedCapacity - 1) << 1);
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 写入一个元素，缓冲区已满返回 false (任意线程可调用)
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                // 槽位还没被消费者释放：已满
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出一个元素，没有可读元素返回 null (仅限单个消费线程调用)
+     */
+    public E poll() {
+        long position = head.get();
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        head.lazySet(position + 1);
+        sequences.set(index, position + capacity);
+        return element;
+    }
+
+    /**
+     * 批量取出最多 limit 个元素，返回实际取出的数量 (仅限单个消费线程调用)
+     */
+    public int drainTo(Collection<? super E> target, int limit) {
+        int drained = 0;
+        while (drained < limit) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * 近似元素数量 (监控用)
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,41 @@
+package com.rcpawn;
+
+import com.rcpawn.common.util.JwtUtil;
+
+import java.net.http.HttpRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 集成测试的请求头：和真实客户端一样通过 JWT 鉴权 (CoreGlobalFilter) 与防重放校验 (ReplayAttackFilter)
+ * 1. Token 由 JwtUtil 签发，X-User-Id 由网关从 Token 解析后写入
+ * 2. 每次调用生成新的 Timestamp 和 Nonce，同一组请求头不能重复发送
+ */
+public final class SignedRequests {
+
+    public static final String DEFAULT_USER = "1";
+
+    private static final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    private SignedRequests() {
+    }
+
+    public static HttpRequest.Builder sign(HttpRequest.Builder request) {
+        return sign(request, DEFAULT_USER);
+    }
+
+    public static HttpRequest.Builder sign(HttpRequest.Builder request, String userId) {
+        headers(userId).forEach(request::header);
+        return request;
+    }
+
+    public static Map<String, String> headers(String userId) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer " + tokens.computeIfAbsent(userId, id -> JwtUtil.generateToken(id, "user-" + id)));
+        headers.put("Timestamp", String.valueOf(System.currentTimeMillis()));
+        headers.put("Nonce", UUID.randomUUID().toString());
+        return headers;
+    }
+}
@@ -0,0 +1,459 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.SignedRequests;
+import com.rcpawn.gateway.hedge.HedgePolicy;
+import com.rcpawn.gateway.hedge.HedgeRegistry;
+import com.rcpawn.gateway.loadbalance.InstanceStatsRegistry;
+import com.rcpawn.gateway.upstream.UpstreamPoolRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对冲请求：同一服务的两个 JDK HttpServer 实例，按请求到达上游的先后决定哪一方慢，验证胜出方、预算与取消
+ * 对冲延迟由测试预置的样本决定 (路由 minDelay=50ms)，不依赖真实流量
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.cloud.nacos.discovery.register-enabled=false",
+        "spring.cloud.nacos.discovery.enabled=false",
+        "logging.level.root=WARN",
+        "logging.level.com.alibaba=OFF",
+        "gateway.hedge.min-samples=1",
+        "gateway.hedge.window-seconds=100000"
+})
+class HedgeTests {
+
+    private static final HttpServer instanceA = stub("a");
+    private static final HttpServer instanceB = stub("b");
+
+    // 第 1 个、第 2 个到达上游的请求分别怎么响应 (之后的请求直接返回)
+    private static volatile Behavior first = Behavior.FAST;
+    private static volatile Behavior second = Behavior.FAST;
+    private static final AtomicInteger arrivals = new AtomicInteger();
+    private static final List<String> arrivedAt = new CopyOnWriteArrayList<>();
+    private static volatile CountDownLatch gate = new CountDownLatch(0);
+    private static volatile CountDownLatch streamAborted = new CountDownLatch(1);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private HedgeRegistry hedgeRegistry;
+
+    @Autowired
+    private InstanceStatsRegistry instanceStatsRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UpstreamPoolRegistry poolRegistry;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry properties) {
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-svc[0].uri", () -> "http://127.0.0.1:" + instanceA.getAddress().getPort());
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-svc[1].uri", () -> "http://127.0.0.1:" + instanceB.getAddress().getPort());
+        route(properties, 0, "hedge", "/hedge/**", "1.0");
+        // 不发放预算：到达对冲延迟也不能对冲
+        route(properties, 1, "hedge-nobudget", "/hedge-nobudget/**", "0");
+        // 每个实例 1 个连接，排队 100ms 超时：占住对冲目标实例的连接，对冲请求被本地拒绝
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-pool-svc[0].uri", () -> "http://127.0.0.1:" + instanceA.getAddress().getPort());
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-pool-svc[1].uri", () -> "http://127.0.0.1:" + instanceB.getAddress().getPort());
+        route(properties, 2, "hedge-pool", "lb://hedge-pool-svc", "/hedge-pool/**", "1.0", "500ms");
+        smallPool(properties, 2);
+        route(properties, 3, "occupy-a", "http://127.0.0.1:" + instanceA.getAddress().getPort(), "/occupy-a/**", null, null);
+        smallPool(properties, 3);
+        route(properties, 4, "occupy-b", "http://127.0.0.1:" + instanceB.getAddress().getPort(), "/occupy-b/**", null, null);
+        smallPool(properties, 4);
+        // 对冲延迟 500ms，单独的服务名使实例统计从零开始
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-timing-svc[0].uri", () -> "http://127.0.0.1:" + instanceA.getAddress().getPort());
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-timing-svc[1].uri", () -> "http://127.0.0.1:" + instanceB.getAddress().getPort());
+        route(properties, 5, "hedge-timing", "lb://hedge-timing-svc", "/hedge-timing/**", "1.0", "500ms");
+        // 测试里把实例 b 熔断
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-breaker-svc[0].uri", () -> "http://127.0.0.1:" + instanceA.getAddress().getPort());
+        properties.add("spring.cloud.discovery.client.simple.instances.hedge-breaker-svc[1].uri", () -> "http://127.0.0.1:" + instanceB.getAddress().getPort());
+        route(properties, 6, "hedge-breaker", "lb://hedge-breaker-svc", "/hedge-breaker/**", "1.0", "50ms");
+    }
+
+    @BeforeEach
+    void prepare() {
+        arrivals.set(0);
+        arrivedAt.clear();
+        gate = new CountDownLatch(1);
+        streamAborted = new CountDownLatch(1);
+        // 预置耗时样本：对冲延迟落在 minDelay (50ms，hedge-pool/hedge-timing 为 500ms)
+        for (String routeId : List.of("hedge", "hedge-nobudget", "hedge-pool", "hedge-timing", "hedge-breaker")) {
+            HedgePolicy policy = hedgeRegistry.policy(routeId, 0.5, routeId.equals("hedge-pool") || routeId.equals("hedge-timing") ? 500 : 50,
+                    routeId.equals("hedge-nobudget") ? 0 : 1.0);
+            for (int i = 0; i < 50; i++) {
+                policy.record(5);
+            }
+        }
+        hedgeRegistry.recompute();
+    }
+
+    @AfterEach
+    void release() throws InterruptedException {
+        gate.countDown();
+        // 所有尝试 (包括被取消的) 都释放了实例的在途数
+        awaitTrue(() -> inflight() == 0);
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        gate.countDown();
+        instanceA.stop(0);
+        instanceB.stop(0);
+    }
+
+    @Test
+    void hedgeWinsWhenPrimaryIsSlow() throws Exception {
+        first = Behavior.BLOCK;
+        second = Behavior.FAST;
+        double before = count(HedgeRegistry.RESULT_HEDGE_WON);
+
+        HttpResponse<String> response = get("/hedge/x");
+        assertEquals(200, response.statusCode());
+        assertEquals(2, arrivals.get());
+        // 对冲请求发往另一个实例，由它返回
+        assertTrue(!arrivedAt.get(0).equals(arrivedAt.get(1)));
+        assertEquals(arrivedAt.get(1), response.body());
+        assertEquals(before + 1, count(HedgeRegistry.RESULT_HEDGE_WON));
+    }
+
+    @Test
+    void winningHedgeIsChargedOnlyItsOwnLatency() throws Exception {
+        first = Behavior.BLOCK;
+        second = Behavior.FAST;
+
+        HttpResponse<String> response = get("/hedge-timing/x");
+        assertEquals(200, response.statusCode());
+        assertEquals(arrivedAt.get(1), response.body());
+
+        // 胜出的实例按对冲请求自己的耗时计入 EWMA，不含之前等待的 500ms 对冲延迟
+        int winnerPort = (response.body().equals("a") ? instanceA : instanceB).getAddress().getPort();
+        awaitTrue(() -> instance("hedge-timing-svc", winnerPort).get("calls").equals(1));
+        double ewmaMs = (Double) instance("hedge-timing-svc", winnerPort).get("ewmaMs");
+        assertTrue(ewmaMs < 500, "ewmaMs " + ewmaMs);
+    }
+
+    @Test
+    void primaryWinsWhenHedgeIsSlower() throws Exception {
+        first = Behavior.DELAY;
+        second = Behavior.BLOCK;
+        double before = count(HedgeRegistry.RESULT_PRIMARY_WON);
+
+        HttpResponse<String> response = get("/hedge/x");
+        assertEquals(200, response.statusCode());
+        assertEquals(2, arrivals.get());
+        assertEquals(arrivedAt.get(0), response.body());
+        assertEquals(before + 1, count(HedgeRegistry.RESULT_PRIMARY_WON));
+    }
+
+    @Test
+    void localRejectionOfHedgeDoesNotBeatPrimary() throws Exception {
+        first = Behavior.BLOCK;
+        second = Behavior.BLOCK;
+        double before = count("hedge-pool", HedgeRegistry.RESULT_PRIMARY_WON);
+
+        // 1. 首个请求卡在某个实例上
+        CompletableFuture<HttpResponse<String>> primary = send("/hedge-pool/x");
+        awaitTrue(() -> arrivals.get() == 1);
+
+        // 2. 在对冲延迟 (500ms) 之前占住另一个实例唯一的连接
+        String other = arrivedAt.get(0).equals("a") ? "b" : "a";
+        CompletableFuture<HttpResponse<String>> occupier = send("/occupy-" + other + "/x");
+        awaitTrue(() -> arrivals.get() == 2);
+
+        // 3. 对冲请求排队超时被本地拒绝：不能取消仍在进行的首个请求，也不能把 503 写给客户端
+        awaitTrue(() -> ((Number) pool("hedge-pool-svc").get("rejected")).longValue() == 1);
+        Thread.sleep(100);
+        assertFalse(primary.isDone());
+
+        gate.countDown();
+        HttpResponse<String> response = primary.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals(arrivedAt.get(0), response.body());
+        assertEquals(200, occupier.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(before + 1, count("hedge-pool", HedgeRegistry.RESULT_PRIMARY_WON));
+    }
+
+    @Test
+    void hedgeSkipsOpenInstance() throws Exception {
+        first = Behavior.BLOCK;
+        second = Behavior.FAST;
+
+        // 1. 连续失败把实例 b 熔断 (先登记 a，使熔断比例不超过 50%)
+        ServiceInstance a = new DefaultServiceInstance("a", "hedge-breaker-svc", "127.0.0.1", instanceA.getAddress().getPort(), false);
+        ServiceInstance b = new DefaultServiceInstance("b", "hedge-breaker-svc", "127.0.0.1", instanceB.getAddress().getPort(), false);
+        instanceStatsRegistry.get(a);
+        for (int i = 0; i < 5; i++) {
+            instanceStatsRegistry.onStart(instanceStatsRegistry.get(b));
+            instanceStatsRegistry.onComplete(b, TimeUnit.MILLISECONDS.toNanos(1), true);
+        }
+        assertEquals("OPEN", instance("hedge-breaker-svc", instanceB.getAddress().getPort()).get("state"));
+
+        // 2. 首个请求选中 a 并卡住；排除 a 后只剩熔断中的 b，对冲请求不发出
+        CompletableFuture<HttpResponse<String>> primary = send("/hedge-breaker/x");
+        awaitTrue(() -> arrivals.get() == 1);
+        Thread.sleep(300);
+        assertEquals(1, arrivals.get());
+
+        gate.countDown();
+        HttpResponse<String> response = primary.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals("a", response.body());
+    }
+
+    @Test
+    void noHedgeWhenBudgetExhausted() throws Exception {
+        first = Behavior.DELAY;
+        double before = count("hedge-nobudget", HedgeRegistry.RESULT_BUDGET_EXHAUSTED);
+
+        HttpResponse<String> response = get("/hedge-nobudget/x");
+        assertEquals(200, response.statusCode());
+        assertEquals(1, arrivals.get());
+        assertEquals(before + 1, count("hedge-nobudget", HedgeRegistry.RESULT_BUDGET_EXHAUSTED));
+    }
+
+    @Test
+    void clientCancelDisconnectsWinnerAndLoser() throws Exception {
+        // 首个请求卡住，对冲请求胜出后持续输出响应体
+        first = Behavior.BLOCK;
+        second = Behavior.STREAM;
+
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            StringBuilder request = new StringBuilder("GET /hedge/stream HTTP/1.1\r\nHost: 127.0.0.1\r\n");
+            SignedRequests.headers(SignedRequests.DEFAULT_USER).forEach((name, value) -> request.append(name).append(": ").append(value).append("\r\n"));
+            socket.getOutputStream().write(request.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertTrue(reader.readLine().startsWith("HTTP/1.1 200"));
+        }
+        // 客户端断开后立即断开胜出方的上游连接，不等上游下一次写出
+        awaitTrue(() -> activeConnections() == 0, 1);
+        assertTrue(streamAborted.await(5, TimeUnit.SECONDS), "胜出方仍在从上游读取响应体");
+        assertEquals(2, arrivals.get());
+    }
+
+    @Test
+    void bothAttemptsFailing() throws Exception {
+        // 首个请求慢慢失败，对冲请求先失败：等到两边都失败才把错误交给上层
+        first = Behavior.DELAY_THEN_FAIL;
+        second = Behavior.FAIL;
+
+        HttpResponse<String> response = get("/hedge/fail");
+        assertTrue(response.statusCode() >= 500, "status " + response.statusCode());
+        assertEquals(2, arrivals.get());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return send(path).get(10, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String path) {
+        HttpRequest request = SignedRequests.sign(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private double count(String result) {
+        return count("hedge", result);
+    }
+
+    private double count(String routeId, String result) {
+        Counter counter = meterRegistry.find("gateway.hedge.requests").tag("route", routeId).tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private int inflight() {
+        return instanceStatsRegistry.snapshot().stream()
+                .filter(m -> ((String) m.get("service")).startsWith("hedge-"))
+                .mapToInt(m -> (Integer) m.get("inflight"))
+                .sum();
+    }
+
+    private int activeConnections() {
+        return poolRegistry.snapshot().stream()
+                .filter(p -> "hedge-svc".equals(p.get("pool")))
+                .mapToInt(p -> (Integer) p.get("active"))
+                .sum();
+    }
+
+    private Map<String, Object> instance(String service, int port) {
+        return instanceStatsRegistry.snapshot().stream()
+                .filter(m -> service.equals(m.get("service")) && ((String) m.get("instance")).endsWith(":" + port))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("实例不存在: " + service + " " + port));
+    }
+
+    private Map<String, Object> pool(String name) {
+        return poolRegistry.snapshot().stream()
+                .filter(p -> name.equals(p.get("pool")))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("连接池不存在: " + name));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        awaitTrue(condition, 5);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, long seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void route(DynamicPropertyRegistry properties, int index, String id, String path, String budgetRatio) {
+        route(properties, index, id, "lb://hedge-svc", path, budgetRatio, "50ms");
+    }
+
+    /**
+     * budgetRatio 为 null 时不加对冲过滤器
+     */
+    private static void route(DynamicPropertyRegistry properties, int index, String id, String uri, String path,
+                              String budgetRatio, String minDelay) {
+        String prefix = "spring.cloud.gateway.routes[" + index + "].";
+        properties.add(prefix + "id", () -> id);
+        properties.add(prefix + "uri", () -> uri);
+        properties.add(prefix + "predicates[0]", () -> "Path=" + path);
+        if (budgetRatio != null) {
+            properties.add(prefix + "filters[0].name", () -> "Hedge");
+            properties.add(prefix + "filters[0].args.percentile", () -> "0.5");
+            properties.add(prefix + "filters[0].args.minDelay", () -> minDelay);
+            properties.add(prefix + "filters[0].args.budgetRatio", () -> budgetRatio);
+        }
+    }
+
+    /**
+     * 共用连接池 hedge-pool-svc：每个实例 1 个连接，排队 100ms 超时
+     */
+    private static void smallPool(DynamicPropertyRegistry properties, int index) {
+        String prefix = "spring.cloud.gateway.routes[" + index + "].metadata.upstream-pool.";
+        properties.add(prefix + "name", () -> "hedge-pool-svc");
+        properties.add(prefix + "max-connections", () -> "1");
+        properties.add(prefix + "pending-acquire-timeout", () -> "100");
+    }
+
+    private enum Behavior { FAST, DELAY, BLOCK, STREAM, FAIL, DELAY_THEN_FAIL }
+
+    private static HttpServer stub(String name) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> handle(exchange, name));
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void handle(HttpExchange exchange, String name) throws IOException {
+        int order = arrivals.incrementAndGet();
+        arrivedAt.add(name);
+        Behavior behavior = order == 1 ? first : order == 2 ? second : Behavior.FAST;
+        switch (behavior) {
+            case DELAY -> sleep(300);
+            case BLOCK -> await(gate);
+            case FAIL -> throw new IOException("模拟上游断开");
+            case DELAY_THEN_FAIL -> {
+                sleep(300);
+                throw new IOException("模拟上游断开");
+            }
+            case STREAM -> {
+                stream(exchange);
+                return;
+            }
+            default -> {
+            }
+        }
+        byte[] body = name.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * 持续输出响应体 (每 2 秒一块)，直到网关断开连接
+     */
+    private static void stream(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        byte[] chunk = new byte[1024];
+        try {
+            for (int i = 0; i < 10; i++) {
+                out.write(chunk);
+                out.flush();
+                sleep(2000);
+            }
+            out.close();
+        } catch (IOException e) {
+            streamAborted.countDown();
+            exchange.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
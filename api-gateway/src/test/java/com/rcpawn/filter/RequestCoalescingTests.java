@@ -0,0 +1,224 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.SignedRequests;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路由级请求合并：上游阻塞到测试放行，期间到达的相同请求按是否共享首个请求的响应验证上游收到的请求数
+ * 上游行为由查询串控制：cc=Cache-Control，size=响应体字节数
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.cloud.nacos.discovery.register-enabled=false",
+        "spring.cloud.nacos.discovery.enabled=false",
+        "logging.level.root=WARN",
+        "logging.level.com.alibaba=OFF"
+})
+class RequestCoalescingTests {
+
+    private static final int CONCURRENCY = 5;
+
+    private static final HttpServer upstream = stub();
+
+    private static final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private static volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry properties) {
+        String uri = "http://127.0.0.1:" + upstream.getAddress().getPort();
+        properties.add("spring.cloud.gateway.routes[0].id", () -> "coalesce");
+        properties.add("spring.cloud.gateway.routes[0].uri", () -> uri);
+        properties.add("spring.cloud.gateway.routes[0].predicates[0]", () -> "Path=/coalesce/**");
+        properties.add("spring.cloud.gateway.routes[0].filters[0].name", () -> "RequestCoalescing");
+        properties.add("spring.cloud.gateway.routes[0].filters[0].args.maxBodyBytes", () -> "1024");
+        // 按用户合并
+        properties.add("spring.cloud.gateway.routes[1].id", () -> "coalesce-user");
+        properties.add("spring.cloud.gateway.routes[1].uri", () -> uri);
+        properties.add("spring.cloud.gateway.routes[1].predicates[0]", () -> "Path=/coalesce-user/**");
+        properties.add("spring.cloud.gateway.routes[1].filters[0].name", () -> "RequestCoalescing");
+        properties.add("spring.cloud.gateway.routes[1].filters[0].args.varyHeaders", () -> "X-User-Id");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        gate.countDown();
+        upstream.stop(0);
+    }
+
+    @AfterEach
+    void sharedBytesReleased() throws InterruptedException {
+        // 所有请求结束后共享响应体的内存全部归还
+        awaitTrue(() -> meterRegistry.get("gateway.coalesce.bytes").gauge().value() == 0);
+        assertEquals(0, meterRegistry.get("gateway.coalesce.inflight").gauge().value());
+    }
+
+    @Test
+    void concurrentRequestsShareOneUpstreamCall() throws Exception {
+        String path = "/coalesce/shared?cc=public";
+        List<HttpResponse<String>> responses = burst(path);
+        for (HttpResponse<String> response : responses) {
+            assertEquals(200, response.statusCode());
+            assertEquals("body:/coalesce/shared", response.body());
+        }
+        assertEquals(1, hits(path));
+    }
+
+    @Test
+    void bodyOverCapIsNotShared() throws Exception {
+        String path = "/coalesce/large?size=2048&cc=public";
+        for (HttpResponse<String> response : burst(path)) {
+            assertEquals(2048, response.body().length());
+        }
+        assertEquals(CONCURRENCY, hits(path));
+    }
+
+    @Test
+    void privateResponsesOnlySharedWithinUser() throws Exception {
+        // 1. Key 不按用户区分：private 响应不共享
+        String shared = "/coalesce/private?cc=private";
+        burst(shared);
+        assertEquals(CONCURRENCY, hits(shared));
+
+        // 2. Key 含 X-User-Id (由网关从 Token 写入)：同一用户的请求共享
+        String perUser = "/coalesce-user/private?cc=private";
+        burst(perUser);
+        assertEquals(1, hits(perUser));
+    }
+
+    @Test
+    void authorizedResponsesNeedPublic() throws Exception {
+        // 登录用户的请求都带 Authorization：Key 不按用户区分时，上游声明 public 才共享
+        String path = "/coalesce/authorized";
+        burst(path);
+        assertEquals(CONCURRENCY, hits(path));
+
+        String publicPath = "/coalesce/authorized-public?cc=public";
+        burst(publicPath);
+        assertEquals(1, hits(publicPath));
+    }
+
+    /**
+     * 同时发出 CONCURRENCY 个相同请求：首个请求到达上游后稍等，让其余请求挂到它上面再放行
+     */
+    private List<HttpResponse<String>> burst(String path) throws Exception {
+        gate = new CountDownLatch(1);
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            futures.add(send(path));
+        }
+        awaitTrue(() -> hits(path) >= 1);
+        Thread.sleep(500);
+        gate.countDown();
+
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            responses.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return responses;
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String path) {
+        HttpRequest request = SignedRequests.sign(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int hits(String pathAndQuery) {
+        AtomicInteger count = hits.get(pathAndQuery);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static HttpServer stub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", RequestCoalescingTests::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        hits.computeIfAbsent(query == null ? path : path + "?" + query, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            gate.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String size = null;
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith("cc=")) {
+                    exchange.getResponseHeaders().set("Cache-Control", pair.substring(3));
+                } else if (pair.startsWith("size=")) {
+                    size = pair.substring(5);
+                }
+            }
+        }
+        byte[] body = size != null
+                ? "x".repeat(Integer.parseInt(size)).getBytes(StandardCharsets.UTF_8)
+                : ("body:" + path).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.rcpawn.filter;
+
+import com.rcpawn.SignedRequests;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路由级响应缓存：用本地 JDK HttpServer 模拟上游，按上游收到的请求数验证命中、合并回源与 Cache-Control 语义
+ * 上游行为由查询串控制：cc=Cache-Control，etag=ETag，size=响应体字节数，chunked=不带 Content-Length，gate=等待测试放行
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.cloud.nacos.discovery.register-enabled=false",
+        "spring.cloud.nacos.discovery.enabled=false",
+        "logging.level.root=WARN",
+        "logging.level.com.alibaba=OFF",
+        "gateway.cache.max-entry-bytes=1024"
+})
+class ResponseCacheTests {
+
+    private static final HttpServer upstream = stub();
+
+    // 上游按 路径 + 查询串 统计收到的请求数
+    private static final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    // 路径 -> 上游改为返回的状态码
+    private static final Map<String, Integer> statusOverrides = new ConcurrentHashMap<>();
+    private static volatile CountDownLatch gate = new CountDownLatch(0);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry properties) {
+        String uri = "http://127.0.0.1:" + upstream.getAddress().getPort();
+        properties.add("spring.cloud.gateway.routes[0].id", () -> "cache");
+        properties.add("spring.cloud.gateway.routes[0].uri", () -> uri);
+        properties.add("spring.cloud.gateway.routes[0].predicates[0]", () -> "Path=/cache/**");
+        properties.add("spring.cloud.gateway.routes[0].filters[0].name", () -> "ResponseCache");
+        properties.add("spring.cloud.gateway.routes[0].filters[0].args.ttl", () -> "30s");
+        // 按用户缓存
+        properties.add("spring.cloud.gateway.routes[1].id", () -> "cache-user");
+        properties.add("spring.cloud.gateway.routes[1].uri", () -> uri);
+        properties.add("spring.cloud.gateway.routes[1].predicates[0]", () -> "Path=/cache-user/**");
+        properties.add("spring.cloud.gateway.routes[1].filters[0].name", () -> "ResponseCache");
+        properties.add("spring.cloud.gateway.routes[1].filters[0].args.varyHeaders", () -> "X-User-Id");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        gate.countDown();
+        upstream.stop(0);
+    }
+
+    @Test
+    void hitAfterMiss() throws Exception {
+        String path = "/cache/hit?cc=public";
+        HttpResponse<String> miss = get(path);
+        assertEquals(200, miss.statusCode());
+        assertEquals("MISS", miss.headers().firstValue("X-Cache").orElse(null));
+
+        HttpResponse<String> hit = get(path);
+        assertEquals(200, hit.statusCode());
+        assertEquals("HIT", hit.headers().firstValue("X-Cache").orElse(null));
+        assertEquals(miss.body(), hit.body());
+        assertEquals(1, hits(path));
+    }
+
+    @Test
+    void concurrentMissesForwardOnce() throws Exception {
+        String path = "/cache/flight?gate=1&cc=public";
+        gate = new CountDownLatch(1);
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(send(path, SignedRequests.DEFAULT_USER, Map.of()));
+        }
+        // 等其余请求都挂到首个请求的回源结果上
+        awaitHits(path, 1);
+        Thread.sleep(500);
+        gate.countDown();
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            HttpResponse<String> result = response.get(10, TimeUnit.SECONDS);
+            assertEquals(200, result.statusCode());
+            assertEquals("body:/cache/flight", result.body());
+        }
+        assertEquals(1, hits(path));
+    }
+
+    @Test
+    void noStoreBypassesCache() throws Exception {
+        // 1. 请求声明 no-store：不读也不写缓存
+        String requestNoStore = "/cache/request-no-store?cc=public";
+        get(requestNoStore, Map.of("Cache-Control", "no-store"));
+        get(requestNoStore, Map.of("Cache-Control", "no-store"));
+        assertEquals(2, hits(requestNoStore));
+
+        // 2. 响应声明 no-store：不保存
+        String responseNoStore = "/cache/response-no-store?cc=no-store";
+        get(responseNoStore);
+        HttpResponse<String> second = get(responseNoStore);
+        assertNull(second.headers().firstValue("X-Cache").orElse(null));
+        assertEquals(2, hits(responseNoStore));
+    }
+
+    @Test
+    void etagAnswers304AndRevalidates() throws Exception {
+        // 1. 客户端带着相同的 ETag：新鲜命中直接 304
+        String path = "/cache/etag?etag=%22v1%22&cc=public";
+        get(path);
+        HttpResponse<String> notModified = get(path, Map.of("If-None-Match", "\"v1\""));
+        assertEquals(304, notModified.statusCode());
+        assertEquals("", notModified.body());
+        assertEquals(1, hits(path));
+
+        // 2. 条目过期 (max-age=0)：网关带 If-None-Match 回源，上游 304 时返回缓存的完整响应
+        String stale = "/cache/revalidate?etag=%22v2%22&cc=public%2Cmax-age%3D0";
+        get(stale);
+        HttpResponse<String> revalidated = get(stale);
+        assertEquals(200, revalidated.statusCode());
+        assertEquals("REVALIDATED", revalidated.headers().firstValue("X-Cache").orElse(null));
+        assertEquals("body:/cache/revalidate", revalidated.body());
+        assertEquals(2, hits(stale));
+    }
+
+    @Test
+    void servesStaleOn5xxWithCorsHeaders() throws Exception {
+        String path = "/cache/stale?cc=public%2Cmax-age%3D0";
+        get(path);
+        statusOverrides.put("/cache/stale", 500);
+
+        HttpResponse<String> stale = get(path, Map.of("Origin", "http://example.com"));
+        assertEquals(200, stale.statusCode());
+        assertEquals("STALE", stale.headers().firstValue("X-Cache").orElse(null));
+        assertEquals("body:/cache/stale", stale.body());
+        // 替换上游响应时保留 CorsWebFilter 写入的头
+        assertEquals("http://example.com", stale.headers().firstValue("Access-Control-Allow-Origin").orElse(null));
+        assertTrue(stale.headers().allValues("Vary").contains("Origin"));
+        assertEquals(2, hits(path));
+    }
+
+    @Test
+    void bodyOverCapIsNotStored() throws Exception {
+        // 1. Content-Length 已超过单条上限
+        String sized = "/cache/large?size=2048&cc=public";
+        get(sized);
+        assertEquals(2048, get(sized).body().length());
+        assertEquals(2, hits(sized));
+
+        // 2. 分块传输，边写边拷贝时才发现超限
+        String chunked = "/cache/large-chunked?size=2048&chunked=1&cc=public";
+        get(chunked);
+        assertEquals(2048, get(chunked).body().length());
+        assertEquals(2, hits(chunked));
+    }
+
+    @Test
+    void privateAndAuthorizedResponsesNeedPerUserKeyOrPublic() throws Exception {
+        // 1. private：Key 不按用户区分时不缓存
+        String shared = "/cache/private?cc=private";
+        get(shared);
+        get(shared);
+        assertEquals(2, hits(shared));
+
+        // 2. private：Key 含 X-User-Id (由网关从 Token 写入) 时按用户缓存
+        String perUser = "/cache-user/private?cc=private";
+        get(perUser, "1", Map.of());
+        assertEquals("HIT", get(perUser, "1", Map.of()).headers().firstValue("X-Cache").orElse(null));
+        get(perUser, "2", Map.of());
+        assertEquals(2, hits(perUser));
+
+        // 3. 带 Authorization 的请求 (登录用户)：Key 不按用户区分、上游没有声明 public / s-maxage 时不缓存
+        String authorized = "/cache/authorized";
+        get(authorized);
+        get(authorized);
+        assertEquals(2, hits(authorized));
+
+        String authorizedPublic = "/cache/authorized-public?cc=public";
+        get(authorizedPublic);
+        assertEquals("HIT", get(authorizedPublic).headers().firstValue("X-Cache").orElse(null));
+        assertEquals(1, hits(authorizedPublic));
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return get(path, Map.of());
+    }
+
+    private HttpResponse<String> get(String path, Map<String, String> headers) throws Exception {
+        return get(path, SignedRequests.DEFAULT_USER, headers);
+    }
+
+    private HttpResponse<String> get(String path, String userId, Map<String, String> headers) throws Exception {
+        return send(path, userId, headers).get(10, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String path, String userId, Map<String, String> headers) {
+        HttpRequest.Builder request = SignedRequests.sign(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)), userId)
+                .timeout(Duration.ofSeconds(10))
+                .GET();
+        headers.forEach(request::header);
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int hits(String pathAndQuery) {
+        AtomicInteger count = hits.get(pathAndQuery);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void awaitHits(String pathAndQuery, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hits(pathAndQuery) < expected) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static HttpServer stub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", ResponseCacheTests::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        hits.computeIfAbsent(query == null ? path : path + "?" + query, k -> new AtomicInteger()).incrementAndGet();
+        Map<String, String> params = params(query);
+        if (params.containsKey("gate")) {
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int status = statusOverrides.getOrDefault(path, 200);
+        String etag = params.get("etag");
+        if (params.containsKey("cc")) {
+            exchange.getResponseHeaders().set("Cache-Control", params.get("cc"));
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (status == 200 && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        byte[] body = params.containsKey("size")
+                ? "x".repeat(Integer.parseInt(params.get("size"))).getBytes(StandardCharsets.UTF_8)
+                : ("body:" + path).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, params.containsKey("chunked") ? 0 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> params(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,139 @@
+package com.rcpawn.gateway.loadbalance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 实例熔断器：并发写入时环形窗口的计数保持准确，HALF_OPEN 并发申请时放行的探测数不超过配置
+ * 时间由测试传入，不依赖真实时钟
+ */
+class InstanceCircuitBreakerTests {
+
+    private static final int THREADS = 8;
+    private static final int PERMITS = 3;
+    private static final long SLOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void windowCountsStayExactUnderConcurrentWrites() throws Exception {
+        InstanceCircuitBreaker breaker = breaker(100, Integer.MAX_VALUE);
+
+        // 1. 并发写满失败 + 慢调用
+        concurrently(i -> breaker.onResult(true, SLOW_NANOS, 0, () -> false), 2000);
+        assertEquals(100, breaker.getCalls());
+        assertEquals(100.0, breaker.getFailureRate());
+        assertEquals(100.0, breaker.getSlowCallRate());
+
+        // 2. 再并发写满成功：被覆盖的旧结果全部扣回，计数回到 0
+        concurrently(i -> breaker.onResult(false, 0, 0, () -> false), 2000);
+        assertEquals(0.0, breaker.getFailureRate());
+        assertEquals(0.0, breaker.getSlowCallRate());
+        assertEquals(InstanceCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenGrantsConfiguredPermitsUnderContention() throws Exception {
+        InstanceCircuitBreaker breaker = breaker(100, 1);
+        long now = 0;
+        assertEquals(InstanceCircuitBreaker.State.OPEN, breaker.onResult(true, 0, now, () -> true));
+
+        for (int round = 0; round < 2000; round++) {
+            // 1. 熔断到期，所有线程同时申请：只有一个线程开启探测，名额不被重复发放
+            now += OPEN_NANOS * 11;
+            long expired = now;
+            assertEquals(PERMITS, granted(breaker, expired), "round " + round);
+            assertEquals(InstanceCircuitBreaker.State.HALF_OPEN, breaker.getState());
+            assertFalse(breaker.isAvailable(expired));
+
+            // 2. 探测超时后重新发放，同样只发一轮
+            now += OPEN_NANOS + 1;
+            long timedOut = now;
+            assertEquals(PERMITS, granted(breaker, timedOut), "round " + round);
+
+            // 3. 探测失败重新熔断
+            assertEquals(InstanceCircuitBreaker.State.OPEN, breaker.onResult(true, 0, now, () -> true));
+            assertFalse(breaker.tryAcquire(now));
+        }
+    }
+
+    @Test
+    void allProbesSucceedingCloses() {
+        InstanceCircuitBreaker breaker = breaker(100, 1);
+        breaker.onResult(true, 0, 0, () -> true);
+        long now = OPEN_NANOS;
+        for (int i = 0; i < PERMITS; i++) {
+            assertTrue(breaker.tryAcquire(now));
+        }
+        assertFalse(breaker.tryAcquire(now));
+
+        // 取消的探测归还名额
+        breaker.onCancel();
+        assertTrue(breaker.tryAcquire(now));
+
+        assertNull(breaker.onResult(false, 0, now, () -> true));
+        assertNull(breaker.onResult(false, 0, now, () -> true));
+        assertEquals(InstanceCircuitBreaker.State.CLOSED, breaker.onResult(false, 0, now, () -> true));
+        assertEquals(0, breaker.getCalls());
+        assertTrue(breaker.tryAcquire(now));
+    }
+
+    /**
+     * 所有线程同时对同一时刻反复申请，返回放行的总数
+     */
+    private int granted(InstanceCircuitBreaker breaker, long now) throws Exception {
+        AtomicInteger granted = new AtomicInteger();
+        concurrently(i -> {
+            if (breaker.tryAcquire(now)) {
+                granted.incrementAndGet();
+            }
+        }, 50);
+        return granted.get();
+    }
+
+    /**
+     * THREADS 个线程在同一起点开始，各执行 times 次
+     */
+    private void concurrently(IntConsumer action, int times) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                for (int i = 0; i < times; i++) {
+                    action.accept(i);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static InstanceCircuitBreaker breaker(int windowSize, int consecutiveFailures) {
+        return new InstanceCircuitBreaker(new InstanceCircuitBreaker.Settings(
+                windowSize, 20, 50, 80, SLOW_NANOS, consecutiveFailures, OPEN_NANOS, PERMITS));
+    }
+}
@@ -0,0 +1,59 @@
+package com.rcpawn.gateway.loadbalance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Peak-EWMA 负载统计：连续失败的惩罚有上限，实例恢复后代价能降回来
+ */
+class InstanceStatsTests {
+
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long CEILING_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final InstanceStats stats = new InstanceStats("svc", new InstanceCircuitBreaker(
+            new InstanceCircuitBreaker.Settings(100, 20, 50, 80, CEILING_NANOS, 5, TimeUnit.SECONDS.toNanos(30), 3)), 0);
+
+    @Test
+    void consecutiveFailuresStopAtCeiling() {
+        long now = 0;
+        // 2000 次翻倍足以溢出为 Infinity
+        for (int i = 0; i < 2000; i++) {
+            now += 1_000_000;
+            stats.observe(FAST_NANOS, true, now, DECAY_NANOS, CEILING_NANOS);
+        }
+        double ewmaNanos = stats.getEwmaMillis() * 1_000_000;
+        assertTrue(Double.isFinite(ewmaNanos));
+        assertEquals(CEILING_NANOS, ewmaNanos, 1);
+
+        // 比上限更慢的失败仍按真实耗时计入
+        stats.observe(CEILING_NANOS * 3, true, now, DECAY_NANOS, CEILING_NANOS);
+        assertEquals(CEILING_NANOS * 3, stats.getEwmaMillis() * 1_000_000, 1);
+    }
+
+    @Test
+    void recoversAfterFailureBurst() {
+        long now = 0;
+        for (int i = 0; i < 500; i++) {
+            now += 1_000_000;
+            stats.observe(FAST_NANOS, true, now, DECAY_NANOS, CEILING_NANOS);
+        }
+        double penalized = stats.cost(now, DECAY_NANOS, 1e15);
+
+        // 1. 不被选中时，代价按时间衰减 (长时间后重新试探)
+        long later = now + TimeUnit.SECONDS.toNanos(60);
+        assertTrue(stats.cost(later, DECAY_NANOS, 1e15) < penalized / 100);
+
+        // 2. 持续的快速成功把 EWMA 拉回到真实延迟附近
+        for (int i = 0; i < 100; i++) {
+            now += TimeUnit.SECONDS.toNanos(1);
+            stats.observe(FAST_NANOS, false, now, DECAY_NANOS, CEILING_NANOS);
+        }
+        assertTrue(stats.getEwmaMillis() < 10, "EWMA 未恢复: " + stats.getEwmaMillis());
+    }
+}
@@ -0,0 +1,107 @@
+package com.rcpawn.gateway.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 集群限流器：后台补租在途时请求等待补租结果而不是直接拒绝；非法速率在加载配置时拒绝
+ * Redis 由桩替代：当场租借固定给 1 个令牌，后台 Pipeline 阻塞到测试放行后给 5 个
+ */
+class HybridRateLimiterTests {
+
+    private final CountDownLatch syncStarted = new CountDownLatch(1);
+    private final CountDownLatch syncRelease = new CountDownLatch(1);
+    private final AtomicInteger requestLeases = new AtomicInteger();
+
+    @Test
+    void requestJoinsBackgroundLease() throws Exception {
+        HybridRateLimiter limiter = limiter(10, 20);
+
+        // 1. 冷启动：当场租到 1 个令牌并用掉，本地桶低于水位
+        assertTrue(allowed(limiter.isAllowed("route", "k").toFuture()));
+        assertEquals(1, requestLeases.get());
+
+        // 2. 后台补租开始，Pipeline 阻塞在 Redis
+        CompletableFuture<Void> sync = CompletableFuture.runAsync(limiter::sync);
+        assertTrue(syncStarted.await(5, TimeUnit.SECONDS));
+
+        // 3. 此时到达的请求等待补租结果，不拒绝、也不再单独租借
+        CompletableFuture<RateLimiter.Response> waiting = limiter.isAllowed("route", "k").toFuture();
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        // 4. 补租完成后放行
+        syncRelease.countDown();
+        assertTrue(allowed(waiting));
+        sync.get(5, TimeUnit.SECONDS);
+        assertEquals(1, requestLeases.get());
+    }
+
+    @Test
+    void nonPositiveRatesAreRejected() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        HybridRateLimiter.Config config = new HybridRateLimiter.Config();
+        config.setReplenishRate(0);
+        config.setBurstCapacity(10);
+        assertEquals(1, validator.validate(config).size());
+        config.setReplenishRate(5);
+        assertTrue(validator.validate(config).isEmpty());
+
+        assertThrows(IllegalStateException.class, () -> limiter(0, 20));
+    }
+
+    private HybridRateLimiter limiter(int replenishRate, int burstCapacity) {
+        HybridRateLimiter limiter = new HybridRateLimiter(null);
+        ReflectionTestUtils.setField(limiter, "redisTemplate", new StringRedisTemplate() {
+            @Override
+            public List<Object> executePipelined(RedisCallback<?> action) {
+                syncStarted.countDown();
+                try {
+                    syncRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of(5L);
+            }
+        });
+        ReflectionTestUtils.setField(limiter, "reactiveRedisTemplate", new ReactiveStringRedisTemplate(new LettuceConnectionFactory()) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> Flux<T> execute(RedisScript<T> script, List<String> keys, List<?> args) {
+                requestLeases.incrementAndGet();
+                return (Flux<T>) Flux.just(1L);
+            }
+        });
+        ReflectionTestUtils.setField(limiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limiter, "syncIntervalMs", 100L);
+        ReflectionTestUtils.setField(limiter, "defaultReplenishRate", replenishRate);
+        ReflectionTestUtils.setField(limiter, "defaultBurstCapacity", burstCapacity);
+        limiter.init();
+        return limiter;
+    }
+
+    private static boolean allowed(CompletableFuture<RateLimiter.Response> response) throws Exception {
+        return response.get(5, TimeUnit.SECONDS).isAllowed();
+    }
+}
@@ -0,0 +1,63 @@
+package com.rcpawn.gateway.replay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nonce 布隆过滤器：窗口轮换与并发判重
+ */
+class NonceBloomFilterTests {
+
+    private static final long WINDOW = 60_000;
+
+    private final NonceBloomFilter filter = new NonceBloomFilter(WINDOW, 100_000, 0.001);
+
+    @Test
+    void keepsNonceForOneFullWindow() {
+        assertTrue(filter.add("n1", 0));
+        assertFalse(filter.add("n1", 1));
+        // 下一个窗口仍能在上一代中查到
+        assertFalse(filter.add("n1", WINDOW + 1));
+        // 跨过两个窗口后两代都已丢弃
+        assertTrue(filter.add("n1", WINDOW * 3));
+    }
+
+    @Test
+    void concurrentDuplicatesOnlyOneIsFresh() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                String nonce = "nonce-" + round;
+                CyclicBarrier barrier = new CyclicBarrier(threads);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    results.add(pool.submit(() -> {
+                        barrier.await(5, TimeUnit.SECONDS);
+                        return filter.add(nonce, 0);
+                    }));
+                }
+                int fresh = 0;
+                for (Future<Boolean> result : results) {
+                    if (result.get(5, TimeUnit.SECONDS)) {
+                        fresh++;
+                    }
+                }
+                assertEquals(1, fresh, "同一个 Nonce 并发写入只能有一个被判为没见过: " + nonce);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
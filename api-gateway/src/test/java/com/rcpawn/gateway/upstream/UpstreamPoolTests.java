@@ -0,0 +1,253 @@
+package com.rcpawn.gateway.upstream;
+
+import com.rcpawn.SignedRequests;
+import com.rcpawn.gateway.loadbalance.InstanceStatsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上游连接池：用本地的 JDK HttpServer / Reactor Netty h2c 服务模拟上游，验证连接池隔离、排队上限、h2c 与指标
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.cloud.nacos.discovery.register-enabled=false",
+        "spring.cloud.nacos.discovery.enabled=false",
+        "logging.level.root=WARN",
+        "logging.level.com.alibaba=OFF"
+})
+class UpstreamPoolTests {
+
+    private static final HttpServer slow = stub("slow");
+    private static final HttpServer fast = stub("fast");
+    private static final DisposableServer h2c = reactor.netty.http.server.HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .protocol(HttpProtocol.H2C, HttpProtocol.HTTP11)
+            .handle((request, response) -> response.sendString(Mono.just(
+                    // HTTP/2 流转换成 HTTP/1.1 对象时会带上流 ID 头
+                    request.requestHeaders().contains("x-http2-stream-id") ? "h2c" : "http/1.1")))
+            .bindNow();
+
+    // 慢上游收到请求后阻塞，直到测试放行
+    private static final AtomicInteger slowArrived = new AtomicInteger();
+    private static volatile CountDownLatch slowGate = new CountDownLatch(0);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UpstreamPoolRegistry registry;
+
+    @Autowired
+    private InstanceStatsRegistry instanceStatsRegistry;
+
+    @DynamicPropertySource
+    static void routes(DynamicPropertyRegistry properties) {
+        // 慢上游：每个实例 1 个连接、最多 1 个排队
+        route(properties, 0, "slow", "http://127.0.0.1:" + slow.getAddress().getPort(), "/slow/**");
+        properties.add("spring.cloud.gateway.routes[0].metadata.upstream-pool.max-connections", () -> "1");
+        properties.add("spring.cloud.gateway.routes[0].metadata.upstream-pool.pending-acquire-max-count", () -> "1");
+        route(properties, 1, "fast", "http://127.0.0.1:" + fast.getAddress().getPort(), "/fast/**");
+        route(properties, 2, "h2c", "http://127.0.0.1:" + h2c.port(), "/h2c/**");
+        properties.add("spring.cloud.gateway.routes[2].metadata.upstream-pool.h2c", () -> "true");
+        // 上游不支持 h2c 时退回 HTTP/1.1 (单独命名，不与 fast 路由共享连接池)
+        route(properties, 3, "fast-h2c", "http://127.0.0.1:" + fast.getAddress().getPort(), "/fast-h2c/**");
+        properties.add("spring.cloud.gateway.routes[3].metadata.upstream-pool.name", () -> "fast-h2c");
+        properties.add("spring.cloud.gateway.routes[3].metadata.upstream-pool.h2c", () -> "true");
+        // 经负载均衡转发到慢上游，连接池按服务名 pool-svc 独立
+        properties.add("spring.cloud.discovery.client.simple.instances.pool-svc[0].uri", () -> "http://127.0.0.1:" + slow.getAddress().getPort());
+        route(properties, 4, "pool-lb", "lb://pool-svc", "/pool-lb/**");
+        properties.add("spring.cloud.gateway.routes[4].metadata.upstream-pool.max-connections", () -> "1");
+        properties.add("spring.cloud.gateway.routes[4].metadata.upstream-pool.pending-acquire-max-count", () -> "1");
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        slowGate.countDown();
+        slow.stop(0);
+        fast.stop(0);
+        h2c.disposeNow();
+    }
+
+    @Test
+    void slowUpstreamOnlyExhaustsItsOwnPool() throws Exception {
+        slowGate = new CountDownLatch(1);
+        slowArrived.set(0);
+        String slowPool = "127.0.0.1:" + slow.getAddress().getPort();
+
+        // 1. 第一个请求占住唯一的连接，第二个请求排队
+        CompletableFuture<HttpResponse<String>> first = send("/slow/a");
+        awaitTrue(() -> slowArrived.get() == 1);
+        CompletableFuture<HttpResponse<String>> second = send("/slow/b");
+        awaitTrue(() -> Integer.valueOf(1).equals(pool(slowPool).get("pending")));
+
+        // 2. 队列已满：第三个请求直接 503，不等待
+        HttpResponse<String> rejected = send("/slow/c").get(5, TimeUnit.SECONDS);
+        assertEquals(503, rejected.statusCode());
+        assertTrue(rejected.body().contains("Upstream Pool Exhausted"));
+
+        // 3. 其他上游不受影响
+        HttpResponse<String> other = send("/fast/a").get(5, TimeUnit.SECONDS);
+        assertEquals(200, other.statusCode());
+        assertEquals("fast", other.body());
+
+        // 4. 放行后排队的请求复用同一个连接完成
+        slowGate.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, second.get(5, TimeUnit.SECONDS).statusCode());
+
+        Map<String, Object> stats = pool(slowPool);
+        assertEquals(1, stats.get("maxConnections"));
+        assertEquals(1L, stats.get("rejected"));
+        assertTrue(((Number) stats.get("acquireCount")).longValue() >= 2);
+        awaitTrue(() -> Integer.valueOf(0).equals(pool(slowPool).get("active")));
+        assertEquals(1, pool(slowPool).get("idle"));
+    }
+
+    @Test
+    void poolRejectionDoesNotCountAgainstInstance() throws Exception {
+        slowGate = new CountDownLatch(1);
+        slowArrived.set(0);
+
+        // 1. 占满连接和等待队列
+        CompletableFuture<HttpResponse<String>> first = send("/pool-lb/a");
+        awaitTrue(() -> slowArrived.get() == 1);
+        CompletableFuture<HttpResponse<String>> second = send("/pool-lb/b");
+        awaitTrue(() -> Integer.valueOf(1).equals(pool("pool-svc").get("pending")));
+
+        // 2. 连续拒绝次数超过 consecutive-failures (5)，实例仍不应熔断
+        for (int i = 0; i < 8; i++) {
+            assertEquals(503, send("/pool-lb/c").get(5, TimeUnit.SECONDS).statusCode());
+        }
+        slowGate.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, second.get(5, TimeUnit.SECONDS).statusCode());
+
+        Map<String, Object> instance = instanceStatsRegistry.snapshot().stream()
+                .filter(m -> "pool-svc".equals(m.get("service")))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("CLOSED", instance.get("state"));
+        assertEquals(0.0, instance.get("failureRate"));
+        assertEquals(2, instance.get("calls"));
+        assertEquals(0, instance.get("inflight"));
+        assertEquals(8L, pool("pool-svc").get("rejected"));
+    }
+
+    @Test
+    void h2cPoolUsesHttp2WhenUpstreamSupportsIt() throws Exception {
+        // 第一个请求在新连接上完成 h2c 升级，之后的请求作为 HTTP/2 流复用这个连接
+        assertEquals(200, send("/h2c/a").get(5, TimeUnit.SECONDS).statusCode());
+        HttpResponse<String> response = send("/h2c/b").get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals("h2c", response.body());
+        String h2cPool = "127.0.0.1:" + h2c.port();
+        assertEquals(true, pool(h2cPool).get("h2c"));
+        awaitTrue(() -> Integer.valueOf(0).equals(pool(h2cPool).get("active")));
+
+        HttpResponse<String> fallback = send("/fast-h2c/a").get(5, TimeUnit.SECONDS);
+        assertEquals(200, fallback.statusCode());
+        assertEquals("fast", fallback.body());
+        assertEquals(true, pool("fast-h2c").get("h2c"));
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String path) {
+        HttpRequest request = SignedRequests.sign(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Map<String, Object> pool(String name) {
+        List<Map<String, Object>> pools = registry.snapshot();
+        return pools.stream()
+                .filter(p -> name.equals(p.get("pool")))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("连接池不存在: " + name + " " + pools));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void route(DynamicPropertyRegistry properties, int index, String id, String uri, String path) {
+        String prefix = "spring.cloud.gateway.routes[" + index + "].";
+        properties.add(prefix + "id", () -> id);
+        properties.add(prefix + "uri", () -> uri);
+        properties.add(prefix + "predicates[0]", () -> "Path=" + path);
+    }
+
+    private static HttpServer stub(String body) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                if ("slow".equals(body)) {
+                    slowArrived.incrementAndGet();
+                    await(slowGate);
+                }
+                respond(exchange, body);
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.rcpawn.gateway.waf;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CIDR 规则解析与匹配：只接受完整的 IP 字面量，主机名、简写和空地址一律拒绝
+ */
+class CidrTrieTests {
+
+    @Test
+    void rejectsNonLiterals() {
+        String[] invalid = {
+                "", " ", "cafe", "localhost", "example.com", "/8", "1", "10.1", "1.2.3", "1.2.3.4.5",
+                "1.2.3.256", "1..2.3", "01.2.3.4", "1.2.3.4/", "1.2.3.4/33", "1.2.3.4/+8", "1.2.3.4/-1",
+                "::1::", ":1", "1:", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "12345::", "[::1]", "fe80::1%eth0",
+                "::g", "::/129", "1.2.3.4::", "::1.2.3", "::ffff:10.0.0.0/95"
+        };
+        for (String cidr : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> CidrTrie.parse(cidr), cidr);
+        }
+    }
+
+    @Test
+    void parsesLiterals() throws Exception {
+        assertCidr("10.0.0.0/8", "10.0.0.0", 8);
+        assertCidr(" 192.168.0.100 ", "192.168.0.100", 32);
+        assertCidr("0.0.0.0/0", "0.0.0.0", 0);
+        assertCidr("2001:db8::/32", "2001:db8::", 32);
+        assertCidr("::1", "::1", 128);
+        assertCidr("::", "::", 128);
+        assertCidr("1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7:8", 128);
+        assertCidr("1::", "1::", 128);
+        assertCidr("64:ff9b::192.0.2.1/120", "64:ff9b::c000:201", 120);
+        // IPv4 映射地址与对应的 IPv4 是同一个地址
+        assertCidr("::ffff:10.0.0.1", "10.0.0.1", 32);
+        assertCidr("::ffff:10.0.0.0/104", "10.0.0.0", 8);
+    }
+
+    @Test
+    void matchesByPrefix() throws Exception {
+        CidrTrie trie = new CidrTrie.Builder()
+                .add("10.0.0.0/8")
+                .add("192.168.1.7")
+                .add("2001:db8::/32")
+                .build();
+        assertEquals(3, trie.size());
+
+        assertTrue(trie.contains(InetAddress.getByName("10.255.0.1")));
+        assertTrue(trie.contains(InetAddress.getByName("192.168.1.7")));
+        assertTrue(trie.contains(InetAddress.getByName("2001:db8:1::1")));
+        assertFalse(trie.contains(InetAddress.getByName("11.0.0.1")));
+        assertFalse(trie.contains(InetAddress.getByName("192.168.1.8")));
+        assertFalse(trie.contains(InetAddress.getByName("2001:db9::1")));
+        assertFalse(CidrTrie.empty().contains(InetAddress.getByName("10.0.0.1")));
+        // 直接传地址字节
+        assertTrue(trie.contains(new byte[]{10, 1, 2, 3}));
+        assertFalse(trie.contains(new byte[]{11, 1, 2, 3}));
+    }
+
+    private static void assertCidr(String cidr, String expectedAddress, int expectedPrefix) throws Exception {
+        CidrTrie.Cidr parsed = CidrTrie.parse(cidr);
+        assertArrayEquals(InetAddress.getByName(expectedAddress).getAddress(), parsed.address(), cidr);
+        assertEquals(expectedPrefix, parsed.prefixLength(), cidr);
+    }
+}
@@ -0,0 +1,193 @@
+package com.rcpawn.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SkyWalking 拓扑缓存：用 JDK HttpServer 模拟 OAP 的 GraphQL 接口，不依赖真实的 SkyWalking
+ */
+class SkyWalkingServiceTests {
+
+    private static final long REFRESH_AFTER_MS = 300;
+
+    private HttpServer oap;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicReference<String> body = new AtomicReference<>();
+    private volatile long delayMs;
+
+    private SkyWalkingService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        oap = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        oap.createContext("/graphql", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status.get(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        oap.setExecutor(Executors.newCachedThreadPool());
+        oap.start();
+
+        body.set(topology("api-gateway", "order-service", "mysql"));
+
+        service = new SkyWalkingService();
+        ReflectionTestUtils.setField(service, "oapUrl", "http://127.0.0.1:" + oap.getAddress().getPort() + "/graphql");
+        ReflectionTestUtils.setField(service, "refreshAfterMs", REFRESH_AFTER_MS);
+        ReflectionTestUtils.setField(service, "maxStaleMs", 60_000L);
+        ReflectionTestUtils.setField(service, "timeoutMs", 3_000L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        oap.stop(0);
+    }
+
+    @Test
+    void concurrentMissesShareOneFetch() {
+        delayMs = 200;
+
+        List<Map<String, Object>> results = Flux.range(0, 20)
+                .flatMap(i -> service.getTopology())
+                .collectList()
+                .block();
+
+        assertEquals(1, requests.get());
+        assertEquals(20, results.size());
+        for (Map<String, Object> result : results) {
+            assertEquals(results.get(0).get("version"), result.get("version"));
+            assertEquals(3, ((List<?>) result.get("nodes")).size());
+        }
+    }
+
+    @Test
+    void servesStaleTopologyWhileRefreshingAndWhenOapFails() throws Exception {
+        Map<String, Object> first = service.getTopology().block();
+        assertEquals(1, requests.get());
+
+        // OAP 故障：过了刷新时间的访问仍立即拿到旧拓扑，刷新失败不影响缓存
+        status.set(500);
+        Thread.sleep(REFRESH_AFTER_MS + 100);
+        assertEquals(first.get("version"), service.getTopology().block().get("version"));
+        waitForRefresh(2);
+        // 失败的刷新结束后，下一次访问重新发起刷新，仍然先拿到旧拓扑
+        assertEquals(first.get("version"), service.getTopology().block().get("version"));
+        waitForRefresh(3);
+
+        // OAP 恢复且拓扑变化：触发刷新的那次访问拿到旧值，刷新完成后拿到新版本
+        status.set(200);
+        body.set(topology("api-gateway", "order-service", "redis"));
+        Thread.sleep(REFRESH_AFTER_MS + 100);
+        assertEquals(first.get("version"), service.getTopology().block().get("version"));
+        waitForRefresh(4);
+        assertFalse(first.get("version").equals(service.getTopology().block().get("version")));
+    }
+
+    @Test
+    void returnsOnlyChangedNodesAndLinksSinceVersion() throws Exception {
+        Map<String, Object> first = service.getTopology().block();
+        String v1 = (String) first.get("version");
+        assertTrue((boolean) first.get("full"));
+
+        // 内容不变：版本不变，增量为空
+        Thread.sleep(REFRESH_AFTER_MS + 100);
+        service.getTopology().block();
+        waitForRefresh(2);
+        Map<String, Object> same = service.getTopology(v1).block();
+        assertEquals(v1, same.get("version"));
+        assertFalse((boolean) same.get("full"));
+        assertTrue(((List<?>) same.get("nodes")).isEmpty());
+        assertTrue(((List<?>) same.get("links")).isEmpty());
+
+        // mysql 换成 redis：新增一个节点和一条连线，删除一个节点和一条连线
+        body.set(topology("api-gateway", "order-service", "redis"));
+        Thread.sleep(REFRESH_AFTER_MS + 100);
+        service.getTopology().block();
+        waitForRefresh(3);
+        Map<String, Object> diff = service.getTopology(v1).block();
+        assertFalse(v1.equals(diff.get("version")));
+        assertEquals(List.of("redis"), ((List<Map<String, Object>>) diff.get("nodes")).stream().map(n -> n.get("id")).toList());
+        assertEquals(List.of("mysql"), diff.get("removedNodes"));
+        assertEquals(1, ((List<?>) diff.get("links")).size());
+        assertEquals(1, ((List<?>) diff.get("removedLinks")).size());
+
+        // 未知版本：返回全量
+        assertTrue((boolean) service.getTopology(v1 + "0").block().get("full"));
+    }
+
+    @Test
+    void versionFromAnotherEpochGetsFullTopology() {
+        Map<String, Object> first = service.getTopology().block();
+
+        // 另一个节点 (或重启后的本节点)：序号同样从 1 开始，但版本号不同，拿旧版本号轮询时返回全量
+        SkyWalkingService other = new SkyWalkingService();
+        ReflectionTestUtils.setField(other, "oapUrl", ReflectionTestUtils.getField(service, "oapUrl"));
+        ReflectionTestUtils.setField(other, "refreshAfterMs", REFRESH_AFTER_MS);
+        ReflectionTestUtils.setField(other, "maxStaleMs", 60_000L);
+        ReflectionTestUtils.setField(other, "timeoutMs", 3_000L);
+        other.init();
+
+        Map<String, Object> fromOther = other.getTopology((String) first.get("version")).block();
+        assertFalse(first.get("version").equals(fromOther.get("version")));
+        assertTrue((boolean) fromOther.get("full"));
+        assertEquals(3, ((List<?>) fromOther.get("nodes")).size());
+    }
+
+    /**
+     * 等到 OAP 收到第 expected 次请求，并留出时间让这次刷新的结果写回缓存
+     */
+    private void waitForRefresh(int expected) throws InterruptedException {
+        waitForRequests(expected);
+        Thread.sleep(100);
+    }
+
+    private void waitForRequests(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3_000;
+        while (requests.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, requests.get());
+    }
+
+    /**
+     * gateway -> app -> storage 三个节点、两条调用
+     */
+    private static String topology(String gateway, String app, String storage) {
+        return "{\"data\":{\"topology\":{"
+                + "\"nodes\":["
+                + "{\"id\":\"" + gateway + "\",\"name\":\"" + gateway + "\",\"type\":\"SpringCloudGateway\",\"isReal\":true},"
+                + "{\"id\":\"" + app + "\",\"name\":\"" + app + "\",\"type\":\"SpringMVC\",\"isReal\":true},"
+                + "{\"id\":\"" + storage + "\",\"name\":\"" + storage + "\",\"type\":\"" + storage + "\",\"isReal\":false}],"
+                + "\"calls\":["
+                + "{\"source\":\"" + gateway + "\",\"target\":\"" + app + "\",\"detectPoints\":[\"CLIENT\"]},"
+                + "{\"source\":\"" + app + "\",\"target\":\"" + storage + "\",\"detectPoints\":[\"CLIENT\"]}]"
+                + "}}}";
+    }
+}
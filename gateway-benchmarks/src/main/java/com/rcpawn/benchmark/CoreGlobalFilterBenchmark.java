@@ -0,0 +1,80 @@
+package com.rcpawn.benchmark;
+
+import com.rcpawn.benchmark.support.GatewayFixture;
+import com.rcpawn.common.util.JwtUtil;
+import com.rcpawn.filter.CoreGlobalFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 核心过滤器 (鉴权 + 指标) 的三条典型路径：白名单放行 / 携带合法 Token / 未携带 Token (401)
+ * 合法 Token 在 Setup 中预先校验过一次，测的是命中校验缓存的稳态
+ * baseline 只创建 Exchange 并走完下游链路，其余结果减去它即为过滤器自身开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreGlobalFilterBenchmark {
+
+    private CoreGlobalFilter filter;
+    private MockServerHttpRequest whitelistRequest;
+    private MockServerHttpRequest authorizedRequest;
+    private MockServerHttpRequest unauthorizedRequest;
+
+    @Setup
+    public void setup() {
+        GatewayFixture fixture = new GatewayFixture();
+        filter = fixture.getCoreGlobalFilter();
+
+        String token = JwtUtil.generateToken("10001", "benchmark");
+        fixture.getJwtTokenCache().getUserId(token);
+
+        InetSocketAddress client = new InetSocketAddress("10.0.0.1", 50000);
+        whitelistRequest = MockServerHttpRequest.get("/dashboard/metrics/realtime")
+                .remoteAddress(client)
+                .build();
+        authorizedRequest = MockServerHttpRequest.get("/provider/hello")
+                .header("Authorization", "Bearer " + token)
+                .header("sw8", "1-abc-def-0-service-instance-/provider/hello-127.0.0.1:8080")
+                .remoteAddress(client)
+                .build();
+        unauthorizedRequest = MockServerHttpRequest.get("/provider/hello")
+                .remoteAddress(client)
+                .build();
+    }
+
+    @Benchmark
+    public Void baseline() {
+        return GatewayFixture.OK_CHAIN.filter(GatewayFixture.exchange(authorizedRequest)).block();
+    }
+
+    @Benchmark
+    public Void whitelist() {
+        return filter.filter(GatewayFixture.exchange(whitelistRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void authorized() {
+        return filter.filter(GatewayFixture.exchange(authorizedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void unauthorized() {
+        return filter.filter(GatewayFixture.exchange(unauthorizedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+}
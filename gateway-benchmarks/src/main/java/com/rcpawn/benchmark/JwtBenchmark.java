@@ -0,0 +1,66 @@
+package com.rcpawn.benchmark;
+
+import com.rcpawn.benchmark.support.GatewayFixture;
+import com.rcpawn.common.util.JwtUtil;
+import com.rcpawn.gateway.auth.JwtTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 校验：每次 HS512 验签 (JwtUtil) vs 本地校验缓存 (JwtTokenCache)
+ * tampered 为签名被篡改的 Token：直接验签会走异常路径，缓存则命中负向缓存
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtTokenCache tokenCache;
+    private String token;
+    private String tamperedToken;
+
+    @Setup
+    public void setup() {
+        tokenCache = new GatewayFixture().getJwtTokenCache();
+        token = JwtUtil.generateToken("10001", "benchmark");
+        // 改掉签名最后一个字符
+        char last = token.charAt(token.length() - 1);
+        tamperedToken = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+        // 预热缓存
+        tokenCache.getUserId(token);
+        tokenCache.getUserId(tamperedToken);
+    }
+
+    @Benchmark
+    public String parseValid() {
+        return JwtUtil.getUserId(token);
+    }
+
+    @Benchmark
+    public String parseTampered() {
+        return JwtUtil.getUserId(tamperedToken);
+    }
+
+    @Benchmark
+    public String cachedValid() {
+        return tokenCache.getUserId(token);
+    }
+
+    @Benchmark
+    public String cachedTampered() {
+        return tokenCache.getUserId(tamperedToken);
+    }
+}
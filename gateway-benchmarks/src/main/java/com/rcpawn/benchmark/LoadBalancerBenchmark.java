@@ -0,0 +1,115 @@
+package com.rcpawn.benchmark;
+
+import com.rcpawn.benchmark.support.GatewayFixture;
+import com.rcpawn.gateway.loadbalance.EwmaLoadBalancer;
+import com.rcpawn.gateway.loadbalance.InstanceStatsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 负载均衡模拟：Spring Cloud 默认轮询 vs Peak-EWMA 随机两选一
+ * 4 个桩实例各有 4 个工作线程 (信号量)，处理耗时由 instanceLatencyMs 指定，默认 3 快 1 慢 (模拟变慢/GC 停顿的实例)
+ * 16 个线程闭环压测，每次操作 = 选实例 + 在实例上排队/处理 + 回报耗时，SampleTime 直接给出端到端延迟的分布 (p50/p99)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(16)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBalancerBenchmark {
+
+    private static final String SERVICE_ID = "service-provider";
+    private static final int WORKERS_PER_INSTANCE = 4;
+
+    @Param({"round-robin", "ewma"})
+    private String strategy;
+
+    @Param({"2,2,2,20"})
+    private String instanceLatencyMs;
+
+    private ReactorServiceInstanceLoadBalancer loadBalancer;
+    private InstanceStatsRegistry registry;
+    private final Map<String, StubInstance> stubs = new HashMap<>();
+
+    @Setup
+    public void setup() {
+        List<ServiceInstance> instances = new ArrayList<>();
+        String[] latencies = instanceLatencyMs.split(",");
+        for (int i = 0; i < latencies.length; i++) {
+            String id = "instance-" + i;
+            instances.add(new DefaultServiceInstance(id, SERVICE_ID, "10.0.0." + (i + 1), 8080, false));
+            stubs.put(id, new StubInstance(Long.parseLong(latencies[i].trim())));
+        }
+
+        ServiceInstanceListSupplier supplier = ServiceInstanceListSuppliers.from(SERVICE_ID, instances.toArray(new ServiceInstance[0]));
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("supplier", supplier));
+        registry = GatewayFixture.newInstanceStatsRegistry();
+        loadBalancer = "ewma".equals(strategy)
+                ? new EwmaLoadBalancer(beanFactory.getBeanProvider(ServiceInstanceListSupplier.class), SERVICE_ID, registry)
+                : new RoundRobinLoadBalancer(beanFactory.getBeanProvider(ServiceInstanceListSupplier.class), SERVICE_ID);
+    }
+
+    @Benchmark
+    public ServiceInstance request() {
+        long start = System.nanoTime();
+        Response<ServiceInstance> response = loadBalancer.choose().block();
+        ServiceInstance instance = response.getServer();
+        stubs.get(instance.getInstanceId()).call();
+        // 与 CoreGlobalFilter 一致：请求结束后回报耗时 (轮询不使用)
+        registry.onComplete(instance, System.nanoTime() - start, false);
+        return instance;
+    }
+
+    /**
+     * 桩实例：固定数量的工作线程，忙时排队
+     */
+    private static final class StubInstance {
+        private final Semaphore workers = new Semaphore(WORKERS_PER_INSTANCE, true);
+        private final long serviceNanos;
+
+        StubInstance(long serviceMs) {
+            this.serviceNanos = TimeUnit.MILLISECONDS.toNanos(serviceMs);
+        }
+
+        void call() {
+            workers.acquireUninterruptibly();
+            try {
+                // parkNanos 可能被信号量残留的 unpark 提前唤醒，按截止时间补足
+                long deadline = System.nanoTime() + serviceNanos;
+                for (long remaining = serviceNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                    LockSupport.parkNanos(remaining);
+                }
+            } finally {
+                workers.release();
+            }
+        }
+    }
+}
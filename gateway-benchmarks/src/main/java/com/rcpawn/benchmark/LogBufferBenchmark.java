@@ -0,0 +1,49 @@
+package com.rcpawn.benchmark;
+
+import com.rcpawn.benchmark.support.GatewayFixture;
+import com.rcpawn.util.LogBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拦截日志写入 (WAF 拦截、鉴权失败等事件都会走这里)
+ * 热路径只做本地合并计数，Redis 写入在定时刷写中完成，不在测量范围内
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBufferBenchmark {
+
+    private LogBuffer logBuffer;
+
+    @Setup
+    public void setup() {
+        logBuffer = new GatewayFixture().getLogBuffer();
+    }
+
+    @Benchmark
+    public void record() {
+        logBuffer.record("10.0.0.1", "WAF", "IP Blocked by Firewall");
+    }
+
+    // 多个 IO 线程同时命中同一个 (来源, 类型)
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        logBuffer.record("10.0.0.1", "WAF", "IP Blocked by Firewall");
+    }
+}
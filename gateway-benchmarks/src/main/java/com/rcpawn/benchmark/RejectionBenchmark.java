@@ -0,0 +1,112 @@
+package com.rcpawn.benchmark;
+
+import com.alibaba.csp.sentinel.adapter.gateway.sc.callback.BlockRequestHandler;
+import com.alibaba.csp.sentinel.adapter.gateway.sc.callback.GatewayCallbackManager;
+import com.alibaba.csp.sentinel.slots.block.flow.FlowException;
+import com.rcpawn.benchmark.support.GatewayFixture;
+import com.rcpawn.filter.CoreGlobalFilter;
+import com.rcpawn.filter.ReplayAttackFilter;
+import com.rcpawn.filter.WafFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拒绝路径 (攻击/洪峰时的热路径)：401 鉴权失败 / 403 WAF 拦截 / 403 防重放拦截 / 429 Sentinel 限流
+ * 每个方法都包含响应体写出，衡量的是"拒绝一个请求"的完整成本
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RejectionBenchmark {
+
+    private static final FlowException FLOW_EXCEPTION = new FlowException("benchmark");
+
+    private CoreGlobalFilter coreGlobalFilter;
+    private WafFilter wafFilter;
+    private ReplayAttackFilter replayAttackFilter;
+    private BlockRequestHandler blockHandler;
+    private ServerResponse.Context responseContext;
+
+    private MockServerHttpRequest unauthorizedRequest;
+    private MockServerHttpRequest blockedRequest;
+    private MockServerHttpRequest noNonceRequest;
+
+    @Setup
+    public void setup() {
+        GatewayFixture fixture = new GatewayFixture();
+        fixture.enableWaf(List.of());
+        coreGlobalFilter = fixture.getCoreGlobalFilter();
+        wafFilter = fixture.getWafFilter();
+        replayAttackFilter = fixture.getReplayAttackFilter();
+        blockHandler = GatewayCallbackManager.getBlockHandler();
+
+        HandlerStrategies strategies = HandlerStrategies.withDefaults();
+        responseContext = new ServerResponse.Context() {
+            @Override
+            public List<HttpMessageWriter<?>> messageWriters() {
+                return strategies.messageWriters();
+            }
+
+            @Override
+            public List<ViewResolver> viewResolvers() {
+                return strategies.viewResolvers();
+            }
+        };
+
+        InetSocketAddress client = new InetSocketAddress("10.0.0.1", 50000);
+        unauthorizedRequest = MockServerHttpRequest.get("/provider/hello")
+                .remoteAddress(client)
+                .build();
+        // 内置规则 192.168.0.100/32
+        blockedRequest = MockServerHttpRequest.get("/provider/hello")
+                .remoteAddress(new InetSocketAddress("192.168.0.100", 50000))
+                .build();
+        noNonceRequest = MockServerHttpRequest.get("/provider/hello")
+                .remoteAddress(client)
+                .build();
+    }
+
+    @Benchmark
+    public Void unauthorized401() {
+        return coreGlobalFilter.filter(GatewayFixture.exchange(unauthorizedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void wafBlocked403() {
+        return wafFilter.filter(GatewayFixture.exchange(blockedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void replayRejected403() {
+        return replayAttackFilter.filter(GatewayFixture.exchange(noNonceRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void flowBlocked429() {
+        ServerWebExchange exchange = GatewayFixture.exchange(unauthorizedRequest);
+        return blockHandler.handleRequest(exchange, FLOW_EXCEPTION)
+                .flatMap(response -> response.writeTo(exchange, responseContext))
+                .block();
+    }
+}
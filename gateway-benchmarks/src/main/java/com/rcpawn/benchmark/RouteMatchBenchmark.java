@@ -0,0 +1,117 @@
+package com.rcpawn.benchmark;
+
+import com.rcpawn.gateway.route.RouteMatchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由查找：逐条断言 (网关默认) vs Path 前缀树索引
+ * 命中最后一条路由是逐条匹配的最坏情况；未命中时逐条匹配需要走完全部路由
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMatchBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int routeCount;
+
+    private List<Route> routes;
+    private RouteMatchIndex index;
+    private ServerWebExchange lastRouteExchange;
+    private ServerWebExchange missExchange;
+
+    @Setup
+    public void setup() {
+        PathRoutePredicateFactory factory = new PathRoutePredicateFactory();
+        routes = new ArrayList<>(routeCount);
+        Map<String, RouteDefinition> definitions = new HashMap<>();
+
+        for (int i = 0; i < routeCount; i++) {
+            String id = "route-" + i;
+            String pattern = "/service-" + i + "/**";
+
+            PathRoutePredicateFactory.Config config = new PathRoutePredicateFactory.Config();
+            config.setPatterns(List.of(pattern));
+            routes.add(Route.async()
+                    .id(id)
+                    .uri("lb://service-" + i)
+                    .asyncPredicate(factory.applyAsync(config))
+                    .build());
+
+            RouteDefinition definition = new RouteDefinition();
+            definition.setId(id);
+            definition.setUri(URI.create("lb://service-" + i));
+            definition.setPredicates(List.of(new PredicateDefinition("Path=" + pattern)));
+            definitions.put(id, definition);
+        }
+
+        index = RouteMatchIndex.build(routes, definitions);
+        lastRouteExchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/service-" + (routeCount - 1) + "/hello").build());
+        missExchange = MockServerWebExchange.from(MockServerHttpRequest.get("/unknown/hello").build());
+    }
+
+    @Benchmark
+    public Route linearLastRoute() {
+        return match(routes, lastRouteExchange);
+    }
+
+    @Benchmark
+    public Route indexedLastRoute() {
+        return match(candidates(lastRouteExchange), lastRouteExchange);
+    }
+
+    @Benchmark
+    public Route linearMiss() {
+        return match(routes, missExchange);
+    }
+
+    @Benchmark
+    public Route indexedMiss() {
+        return match(candidates(missExchange), missExchange);
+    }
+
+    private List<Route> candidates(ServerWebExchange exchange) {
+        return index.candidates(exchange.getRequest().getPath().pathWithinApplication(),
+                exchange.getRequest().getMethod(), exchange.getRequest().getHeaders().getFirst("Host"));
+    }
+
+    /**
+     * 与 RoutePredicateHandlerMapping.lookupRoute 相同的逐条断言流程
+     */
+    private static Route match(List<Route> candidates, ServerWebExchange exchange) {
+        return Flux.fromIterable(candidates)
+                .concatMap(route -> Mono.just(route).filterWhen(r -> r.getPredicate().apply(exchange)))
+                .next()
+                .block();
+    }
+}
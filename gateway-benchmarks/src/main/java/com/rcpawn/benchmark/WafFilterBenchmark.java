@@ -0,0 +1,84 @@
+package com.rcpawn.benchmark;
+
+import com.rcpawn.benchmark.support.GatewayFixture;
+import com.rcpawn.filter.WafFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WAF 过滤器：关闭 / 开启后放行 / 开启后拦截
+ * blacklistSize 为 Redis 黑名单中的 /24 网段数量，衡量前缀树匹配是否随规则数增长
+ * baseline 只创建 Exchange 并走完下游链路，其余结果减去它即为过滤器自身开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WafFilterBenchmark {
+
+    @Param({"1", "10000"})
+    private int blacklistSize;
+
+    private WafFilter disabledFilter;
+    private WafFilter enabledFilter;
+    private MockServerHttpRequest allowedRequest;
+    private MockServerHttpRequest blockedRequest;
+
+    @Setup
+    public void setup() {
+        disabledFilter = new GatewayFixture().getWafFilter();
+
+        GatewayFixture enabled = new GatewayFixture();
+        List<String> blacklist = new ArrayList<>(blacklistSize);
+        for (int i = 0; i < blacklistSize; i++) {
+            blacklist.add("10." + (i >> 8 & 0xFF) + "." + (i & 0xFF) + ".0/24");
+        }
+        enabled.enableWaf(blacklist);
+        enabledFilter = enabled.getWafFilter();
+
+        allowedRequest = MockServerHttpRequest.get("/provider/hello")
+                .remoteAddress(new InetSocketAddress("172.16.0.1", 50000))
+                .build();
+        // 内置规则 192.168.0.100/32
+        blockedRequest = MockServerHttpRequest.get("/provider/hello")
+                .remoteAddress(new InetSocketAddress("192.168.0.100", 50000))
+                .build();
+    }
+
+    @Benchmark
+    public Void baseline() {
+        return GatewayFixture.OK_CHAIN.filter(GatewayFixture.exchange(allowedRequest)).block();
+    }
+
+    @Benchmark
+    public Void disabled() {
+        return disabledFilter.filter(GatewayFixture.exchange(allowedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void enabledAllowed() {
+        return enabledFilter.filter(GatewayFixture.exchange(allowedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+
+    @Benchmark
+    public Void enabledBlocked() {
+        return enabledFilter.filter(GatewayFixture.exchange(blockedRequest), GatewayFixture.OK_CHAIN).block();
+    }
+}
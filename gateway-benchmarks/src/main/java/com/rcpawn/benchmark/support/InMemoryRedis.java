@@ -0,0 +1,169 @@
+package com.rcpawn.benchmark.support;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.ReactiveListOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基准测试用的内存版 Redis 替身
+ * 只实现网关热路径用到的少量命令 (GET/SET/MGET/INCR、SADD/SMEMBERS、LPUSH/LTRIM/LRANGE)，
+ * 其余命令直接抛 UnsupportedOperationException，避免基准悄悄走到没有模拟的分支
+ * 不涉及网络与序列化，测出来的是网关自身代码的开销
+ */
+public class InMemoryRedis {
+
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    private final Map<String, LinkedList<String>> lists = new ConcurrentHashMap<>();
+
+    private final StringRedisTemplate template = new StringRedisTemplate() {
+        private final ValueOperations<String, String> valueOps = proxy(ValueOperations.class);
+        private final SetOperations<String, String> setOps = proxy(SetOperations.class);
+        private final ListOperations<String, String> listOps = proxy(ListOperations.class);
+
+        @Override
+        public ValueOperations<String, String> opsForValue() {
+            return valueOps;
+        }
+
+        @Override
+        public SetOperations<String, String> opsForSet() {
+            return setOps;
+        }
+
+        @Override
+        public ListOperations<String, String> opsForList() {
+            return listOps;
+        }
+    };
+
+    private final ReactiveStringRedisTemplate reactiveTemplate =
+            new ReactiveStringRedisTemplate(proxy(ReactiveRedisConnectionFactory.class)) {
+                private final ReactiveValueOperations<String, String> valueOps = reactiveProxy(ReactiveValueOperations.class);
+                private final ReactiveListOperations<String, String> listOps = reactiveProxy(ReactiveListOperations.class);
+
+                @Override
+                public ReactiveValueOperations<String, String> opsForValue() {
+                    return valueOps;
+                }
+
+                @Override
+                public ReactiveListOperations<String, String> opsForList() {
+                    return listOps;
+                }
+            };
+
+    public StringRedisTemplate stringRedisTemplate() {
+        return template;
+    }
+
+    public ReactiveStringRedisTemplate reactiveStringRedisTemplate() {
+        return reactiveTemplate;
+    }
+
+    public int listSize(String key) {
+        LinkedList<String> list = lists.get(key);
+        if (list == null) return 0;
+        synchronized (list) {
+            return list.size();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(this, args);
+                    }
+                    return execute(method.getName(), args);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T reactiveProxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (p, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(this, args);
+                    }
+                    return Mono.justOrEmpty(execute(method.getName(), args));
+                });
+    }
+
+    private Object execute(String command, Object[] args) {
+        switch (command) {
+            case "get":
+                return strings.get((String) args[0]);
+            case "set":
+                strings.put((String) args[0], (String) args[1]);
+                return Boolean.TRUE;
+            case "multiGet": {
+                List<String> values = new ArrayList<>();
+                for (Object key : (Collection<?>) args[0]) {
+                    values.add(strings.get((String) key));
+                }
+                return values;
+            }
+            case "increment":
+                return Long.parseLong(strings.merge((String) args[0], "1",
+                        (old, one) -> String.valueOf(Long.parseLong(old) + 1)));
+            case "add": {
+                Set<String> set = sets.computeIfAbsent((String) args[0], k -> ConcurrentHashMap.newKeySet());
+                long added = 0;
+                for (Object member : (Object[]) args[1]) {
+                    if (set.add((String) member)) added++;
+                }
+                return added;
+            }
+            case "members": {
+                Set<String> set = sets.get((String) args[0]);
+                return set == null ? new HashSet<>() : new HashSet<>(set);
+            }
+            case "leftPush": {
+                LinkedList<String> list = lists.computeIfAbsent((String) args[0], k -> new LinkedList<>());
+                synchronized (list) {
+                    list.addFirst((String) args[1]);
+                    return (long) list.size();
+                }
+            }
+            case "trim": {
+                LinkedList<String> list = lists.get((String) args[0]);
+                if (list != null) {
+                    synchronized (list) {
+                        long end = (Long) args[2];
+                        while (list.size() > end + 1) {
+                            list.removeLast();
+                        }
+                    }
+                }
+                return Boolean.TRUE;
+            }
+            case "range": {
+                LinkedList<String> list = lists.get((String) args[0]);
+                if (list == null) return new ArrayList<>();
+                synchronized (list) {
+                    return new ArrayList<>(list);
+                }
+            }
+            default:
+                throw new UnsupportedOperationException("InMemoryRedis 未模拟命令: " + command);
+        }
+    }
+}
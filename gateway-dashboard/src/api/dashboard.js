@@ -8,6 +8,20 @@ export function getDashboardMetrics() {
     })
 }
 
+// 订阅实时监控推送 (SSE)，服务端每秒推送一次快照，连接建立后立即收到最近一份
+// 返回取消订阅函数；断线后浏览器会自动重连
+export function subscribeDashboardMetrics(onData) {
+    const source = new EventSource(request.defaults.baseURL + '/dashboard/metrics/stream')
+    source.addEventListener('metrics', event => {
+        try {
+            onData(JSON.parse(event.data))
+        } catch (e) {
+            console.warn('解析监控推送失败:', e)
+        }
+    })
+    return () => source.close()
+}
+
 // 1. 刷新
 export function refreshRoutes() {
     return request({ url: '/dashboard/ops/refresh-routes', method: 'post' })
@@ -32,7 +46,27 @@ export function cleanMetrics() {
     return request({ url: '/dashboard/ops/clean', method: 'post' })
 }
 
-// 获取网络拓扑
-export function getTopologyData() {
-    return request({ url: '/dashboard/metrics/topology', method: 'get' })
-}
\ No newline at end of file
+// 获取网络拓扑：since 为上次收到的 version，后端只返回变化的节点和连线 (full=false)
+export function getTopologyData(since) {
+    return request({ url: '/dashboard/metrics/topology', method: 'get', params: { since } })
+}
+
+// 获取各路由的自适应并发上限 (当前网关节点)
+export function getConcurrencyLimits() {
+    return request({ url: '/dashboard/metrics/concurrency', method: 'get' })
+}
+
+// 获取响应缓存的各路由命中率与堆内/堆外内存占用 (当前网关节点)
+export function getCacheStats() {
+    return request({ url: '/dashboard/metrics/cache', method: 'get' })
+}
+
+// 获取各上游实例的熔断状态与窗口内失败率/慢调用率 (当前网关节点)
+export function getBreakers() {
+    return request({ url: '/dashboard/metrics/breakers', method: 'get' })
+}
+
+// 获取各上游连接池的活跃/空闲/排队连接数与获取连接耗时 (当前网关节点)
+export function getUpstreamPools() {
+    return request({ url: '/dashboard/metrics/pools', method: 'get' })
+}
@@ -12,6 +12,9 @@ service.interceptors.request.use(
     config => {
         // 示例：如果有 token，加到 header
         // config.headers['Authorization'] = getToken()
+        // 网关防重放：每个请求带上当前时间戳和不重复的 Nonce
+        config.headers['Timestamp'] = Date.now()
+        config.headers['Nonce'] = `${Date.now()}-${Math.random().toString(36).slice(2)}`
         return config
     },
     error => {
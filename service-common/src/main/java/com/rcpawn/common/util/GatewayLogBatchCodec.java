@@ -0,0 +1,56 @@
+package com.rcpawn.common.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rcpawn.common.entity.GatewayLogDTO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 访问日志批量消息编解码 (网关发送端与 service-log 消费端共用)
+ * 消息体格式：GatewayLogDTO 的 JSON 数组，整体 GZIP 压缩
+ */
+public class GatewayLogBatchCodec {
+
+    // 批量日志队列 (与旧的单条日志队列 gateway_log_queue 区分)
+    public static final String QUEUE = "gateway_log_batch_queue";
+    public static final String CONTENT_TYPE = "application/json";
+    public static final String CONTENT_ENCODING = "gzip";
+    // 消息头：本批日志条数，便于消费端监控
+    public static final String HEADER_BATCH_SIZE = "x-batch-size";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<GatewayLogDTO>> LIST_TYPE = new TypeReference<>() {
+    };
+
+    private GatewayLogBatchCodec() {
+    }
+
+    public static byte[] encode(List<GatewayLogDTO> logs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(256, logs.size() * 64));
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            MAPPER.writeValue(out, logs);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 兼容旧的单条日志消息 (未压缩的单个 GatewayLogDTO JSON)
+     */
+    public static GatewayLogDTO decodeSingle(byte[] body) throws IOException {
+        return MAPPER.readValue(body, GatewayLogDTO.class);
+    }
+
+    public static List<GatewayLogDTO> decode(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return MAPPER.readValue(in, LIST_TYPE);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.rcpawn.common.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import java.util.Date;
@@ -12,6 +13,8 @@ public class JwtUtil {
     private static final String SECRET_KEY = "MySecretKey_rcpawn_gateway_demo_2026"; 
     // 过期时间 (24小时)
     private static final long EXPIRATION_TIME = 86400000L; 
+    // 解析器配置完成后只读，全局复用 (避免每次重新构建并 Base64 解码秘钥)
+    private static final JwtParser PARSER = Jwts.parser().setSigningKey(SECRET_KEY);
 
     // 1. 生成 Token
     public static String generateToken(String userId, String username) {
@@ -29,10 +32,7 @@ public class JwtUtil {
     // 2. 解析 Token 获取 Claims
     public static Claims parseToken(String token) {
         try {
-            return Jwts.parser()
-                    .setSigningKey(SECRET_KEY)
-                    .parseClaimsJws(token)
-                    .getBody();
+            return PARSER.parseClaimsJws(token).getBody();
         } catch (Exception e) {
             return null; // 解析失败（过期或篡改）
         }
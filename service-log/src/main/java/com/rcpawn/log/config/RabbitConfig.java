@@ -1,17 +1,46 @@
 package com.rcpawn.log.config;
 
+import com.rcpawn.common.util.GatewayLogBatchCodec;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitConfig {
-    
+
+    public static final String LOG_QUEUE = "gateway_log_queue";
+    // 多次入库失败的日志消息，排查后可以移回原队列重新消费
+    public static final String LOG_DEAD_LETTER_QUEUE = "gateway_log_dead_letter_queue";
+
+    // 一次交给监听器的消息条数 (每条消息可能本身就是网关攒好的一批日志)
+    @Value("${log.consumer.batch-size:50}")
+    private int batchSize;
+
+    // 攒批等待时间：超过该时间没有新消息，就把已收到的消息先交给监听器
+    @Value("${log.consumer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
     @Bean
     public Queue logQueue() {
-        return new Queue("gateway_log_queue", true); // true = 持久化队列
+        return new Queue(LOG_QUEUE, true); // true = 持久化队列
+    }
+
+    // 网关批量投递的访问日志 (GZIP 压缩的 JSON 数组)
+    @Bean
+    public Queue logBatchQueue() {
+        return new Queue(GatewayLogBatchCodec.QUEUE, true);
+    }
+
+    @Bean
+    public Queue logDeadLetterQueue() {
+        return new Queue(LOG_DEAD_LETTER_QUEUE, true);
     }
 
     // 这一步很关键！配置 JSON 序列化器，否则收到的是乱码
@@ -19,4 +48,22 @@ public class RabbitConfig {
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
     }
-}
\ No newline at end of file
+
+    /**
+     * 日志批量消费容器：攒满 batch-size 条或等待 flush-interval-ms 后整批交给监听器，手动 ACK (入库提交后再确认)
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory logBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(flushIntervalMs);
+        // 预取至少要覆盖一整批，否则永远攒不满
+        factory.setPrefetchCount(batchSize * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+}
@@ -5,11 +5,14 @@ import com.rcpawn.common.entity.GatewayLogDTO;
 import com.rcpawn.common.util.Result;
 import com.rcpawn.log.service.LogService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Date;
+
 @RestController
 @RequestMapping("/logs")
 public class LogController {
@@ -21,9 +24,12 @@ public class LogController {
     public Result<Page<GatewayLogDTO>> list(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) String path) {
+            @RequestParam(required = false) String path,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date endTime) {
 
-        Page<GatewayLogDTO> result = logService.pageQuery(page, size, path);
+        // 指定时间范围时只查询对应日期的日志表
+        Page<GatewayLogDTO> result = logService.pageQuery(page, size, path, startTime, endTime);
         return Result.success(result);
     }
 }
\ No newline at end of file
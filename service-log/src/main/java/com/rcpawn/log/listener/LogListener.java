@@ -1,25 +1,156 @@
 package com.rcpawn.log.listener;
 
+import com.rabbitmq.client.Channel;
 import com.rcpawn.common.entity.GatewayLogDTO;
-import com.rcpawn.log.mapper.GatewayLogMapper;
+import com.rcpawn.common.util.GatewayLogBatchCodec;
+import com.rcpawn.log.config.RabbitConfig;
+import com.rcpawn.log.service.LogService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 日志批量消费
+ * 核心逻辑：容器攒批 (batch-size 条消息或 flush-interval-ms) -> 解码所有日志 -> 一个事务内多行 INSERT -> 提交后一次性 ACK
+ * 1. 同时兼容网关批量消息 (GZIP JSON 数组) 与旧的单条日志消息
+ * 2. 无法解码的消息单独拒绝 (不重新入队)，不影响同批其他消息
+ * 3. 入库失败时整批重新投递到原队列 (重试次数记在消息头里)，超过 max-retries 次的消息转入死信队列，日志不会丢，也不会无限重试
+ *    不用队列的 x-dead-letter 参数：网关也声明了同名队列，参数不一致时声明会失败
+ */
+@Slf4j
 @Component
 public class LogListener {
 
     @Autowired
-    private GatewayLogMapper logMapper;
+    private LogService logService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${log.consumer.batch-size:50}")
+    private int batchSize;
+
+    @Value("${log.consumer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    // 入库失败后最多重新投递的次数，超过后转入死信队列
+    @Value("${log.consumer.max-retries:3}")
+    private int maxRetries;
+
+    static final String RETRY_HEADER = "x-log-retries";
+
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private Counter rowsCounter;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+    private Counter deadLetteredCounter;
+    private DistributionSummary batchRows;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() {
+        rowsCounter = Counter.builder("log.consumer.rows").description("已入库的日志行数").register(meterRegistry);
+        rejectedCounter = Counter.builder("log.consumer.rejected").description("无法解码被拒绝的消息数").register(meterRegistry);
+        failedCounter = Counter.builder("log.consumer.failed").description("入库失败重新投递的消息数").register(meterRegistry);
+        deadLetteredCounter = Counter.builder("log.consumer.dead_lettered").description("多次入库失败转入死信队列的消息数").register(meterRegistry);
+        batchRows = DistributionSummary.builder("log.consumer.batch.rows").description("每次批量入库的行数").register(meterRegistry);
+        flushTimer = Timer.builder("log.consumer.flush").description("批量入库 (含事务提交) 耗时").register(meterRegistry);
+        // 当前生效的攒批参数，便于在监控里对照吞吐
+        Gauge.builder("log.consumer.batch.size", () -> batchSize).register(meterRegistry);
+        Gauge.builder("log.consumer.flush.interval", () -> flushIntervalMs).baseUnit("milliseconds").register(meterRegistry);
+    }
 
-    @RabbitListener(queues = "gateway_log_queue")
-    public void receiveLog(GatewayLogDTO log) {
+    @RabbitListener(queues = {GatewayLogBatchCodec.QUEUE, RabbitConfig.LOG_QUEUE}, containerFactory = "logBatchContainerFactory")
+    public void receiveLogs(List<Message> messages, Channel channel) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // 1. 解码 (坏消息单独拒绝)
+        List<GatewayLogDTO> logs = new ArrayList<>();
+        List<Message> decoded = new ArrayList<>();
+        // 最后一条解码成功的消息，ACK 以它为准 (对已拒绝的 tag 再确认会导致信道被关闭)
+        long lastTag = 0;
+        for (Message message : messages) {
+            long tag = message.getMessageProperties().getDeliveryTag();
+            try {
+                if (GatewayLogBatchCodec.CONTENT_ENCODING.equals(message.getMessageProperties().getContentEncoding())) {
+                    logs.addAll(GatewayLogBatchCodec.decode(message.getBody()));
+                } else {
+                    logs.add(GatewayLogBatchCodec.decodeSingle(message.getBody()));
+                }
+                lastTag = Math.max(lastTag, tag);
+                decoded.add(message);
+            } catch (Exception e) {
+                rejectedCounter.increment();
+                log.warn("❌ [Log服务] 日志消息无法解码，已丢弃: {}", e.getMessage());
+                channel.basicReject(tag, false);
+            }
+        }
+
+        if (decoded.isEmpty()) {
+            return;
+        }
+
+        // 2. 一个事务内批量入库
         try {
-            // 直接插入数据库
-            logMapper.insert(log);
-            System.out.println("💾 [Log服务] 日志入库成功: " + log.getPath());
+            if (!logs.isEmpty()) {
+                int rows = flushTimer.recordCallable(() -> logService.saveBatch(logs));
+                rowsCounter.increment(rows);
+                batchRows.record(rows);
+            }
         } catch (Exception e) {
-            System.err.println("❌ [Log服务] 入库失败: " + e.getMessage());
+            int deadLettered = 0;
+            for (Message message : decoded) {
+                if (!retry(message, channel)) {
+                    deadLettered++;
+                }
+            }
+            log.error("❌ [Log服务] 批量入库失败，{} 条消息重新投递，{} 条超过重试次数转入死信队列: {}",
+                    decoded.size() - deadLettered, deadLettered, e.getMessage());
+            // 已经重新投递，确认原消息
+            channel.basicAck(lastTag, true);
+            return;
         }
+
+        // 3. 事务已提交，确认本批全部消息
+        channel.basicAck(lastTag, true);
+    }
+
+    /**
+     * 重试次数 +1 后投递回原队列；超过 max-retries 次时投递到死信队列
+     *
+     * @return false 表示已转入死信队列
+     */
+    private boolean retry(Message message, Channel channel) throws IOException {
+        MessageProperties properties = message.getMessageProperties();
+        Integer retries = properties.getHeader(RETRY_HEADER);
+        int attempt = retries == null ? 1 : retries + 1;
+        properties.setHeader(RETRY_HEADER, attempt);
+
+        boolean retry = attempt <= maxRetries;
+        String queue = retry ? properties.getConsumerQueue() : RabbitConfig.LOG_DEAD_LETTER_QUEUE;
+        (retry ? failedCounter : deadLetteredCounter).increment();
+        channel.basicPublish("", queue, propertiesConverter.fromMessageProperties(properties, StandardCharsets.UTF_8.name()),
+                message.getBody());
+        return retry;
     }
-}
\ No newline at end of file
+}
@@ -3,9 +3,66 @@ package com.rcpawn.log.mapper;
 import com.baomidou.mybatisplus.annotation.TableName;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.rcpawn.common.entity.GatewayLogDTO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 日志按天分表 (gateway_log_yyyyMMdd)，表名只来自 LogPartitionManager 生成的固定格式，不接受外部输入
+ */
 @Mapper
 //@TableName("gateway_log")
 public interface GatewayLogMapper extends BaseMapper<GatewayLogDTO> {
-}
\ No newline at end of file
+
+    String PARTITION_FILTER = "<where>" +
+            "<if test='start != null'>AND request_time &gt;= #{start}</if>" +
+            "<if test='end != null'>AND request_time &lt; #{end}</if>" +
+            "<if test='path != null and path != \"\"'>AND path LIKE CONCAT('%', #{path}, '%')</if>" +
+            "</where>";
+
+    @Update("CREATE TABLE IF NOT EXISTS ${table} (" +
+            "id BIGINT NOT NULL AUTO_INCREMENT, " +
+            "trace_id VARCHAR(64), " +
+            "user_id VARCHAR(64), " +
+            "ip VARCHAR(64), " +
+            "path VARCHAR(512), " +
+            "method VARCHAR(16), " +
+            "status INT, " +
+            "response_time BIGINT, " +
+            "request_time DATETIME NOT NULL, " +
+            "PRIMARY KEY (id), " +
+            "KEY idx_${table}_request_time (request_time))")
+    void createPartition(@Param("table") String table);
+
+    @Update("DROP TABLE IF EXISTS ${table}")
+    void dropPartition(@Param("table") String table);
+
+    /**
+     * 多行 INSERT：一条 SQL 写入一批日志 (单批行数由调用方控制，避免超过 max_allowed_packet)
+     */
+    @Insert("<script>" +
+            "INSERT INTO ${table} (trace_id, user_id, ip, path, method, status, response_time, request_time) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.traceId}, #{l.userId}, #{l.ip}, #{l.path}, #{l.method}, #{l.status}, #{l.responseTime}, #{l.requestTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("table") String table, @Param("logs") List<GatewayLogDTO> logs);
+
+    @Select("<script>SELECT COUNT(*) FROM ${table}" + PARTITION_FILTER + "</script>")
+    long countPartition(@Param("table") String table, @Param("path") String path,
+                        @Param("start") Date start, @Param("end") Date end);
+
+    @Select("<script>" +
+            "SELECT trace_id, user_id, ip, path, method, status, response_time, request_time FROM ${table}" +
+            PARTITION_FILTER +
+            " ORDER BY request_time DESC LIMIT #{limit} OFFSET #{offset}" +
+            "</script>")
+    List<GatewayLogDTO> selectPartition(@Param("table") String table, @Param("path") String path,
+                                        @Param("start") Date start, @Param("end") Date end,
+                                        @Param("offset") long offset, @Param("limit") long limit);
+}
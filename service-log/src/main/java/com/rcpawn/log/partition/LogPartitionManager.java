@@ -0,0 +1,178 @@
+package com.rcpawn.log.partition;
+
+import com.rcpawn.log.mapper.GatewayLogMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 日志按天分表管理
+ * 核心逻辑：每天一张表 gateway_log_yyyyMMdd -> 写入按 request_time 路由到对应日表 -> 过期数据整表 DROP
+ * 1. 相比 DELETE ... WHERE request_time < ?，DROP TABLE 是元数据操作，不产生行锁和碎片
+ * 2. 查询按时间范围只访问落在范围内的日表 (分区裁剪)
+ * 3. 已存在的日表缓存在内存里，写入时只有新的一天第一次写入才会执行建表语句
+ * 4. 建表是 DDL (MySQL 会隐式提交事务)，只能在写入事务之外调用 ensurePartition
+ */
+@Slf4j
+@Component
+public class LogPartitionManager {
+
+    public static final String TABLE_PREFIX = "gateway_log_";
+    private static final DateTimeFormatter SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern TABLE_PATTERN = Pattern.compile("gateway_log_(\\d{8})");
+
+    @Autowired
+    private GatewayLogMapper logMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // 日志保留天数 (含今天)
+    @Value("${log.partition.retention-days:7}")
+    private int retentionDays;
+
+    // 提前建好未来几天的日表，避免零点时多个消费线程同时建表
+    @Value("${log.partition.precreate-days:1}")
+    private int precreateDays;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Set<LocalDate> knownPartitions = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        try {
+            knownPartitions.addAll(listPartitions());
+            precreate(LocalDate.now(zone));
+        } catch (Exception e) {
+            // 数据库暂不可用时不阻止启动，写入时会按需建表
+            log.warn("日志分表初始化失败: {}", e.getMessage());
+        }
+    }
+
+    public static String tableName(LocalDate day) {
+        return TABLE_PREFIX + day.format(SUFFIX_FORMATTER);
+    }
+
+    public LocalDate dayOf(Date time) {
+        return time == null ? LocalDate.now(zone) : time.toInstant().atZone(zone).toLocalDate();
+    }
+
+    public Date startOf(LocalDate day) {
+        return Date.from(day.atStartOfDay(zone).toInstant());
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    /**
+     * 确保某天的日表存在，返回表名
+     */
+    public String ensurePartition(LocalDate day) {
+        String table = tableName(day);
+        if (!knownPartitions.contains(day)) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new IllegalStateException("不能在事务内建日志分表: " + table);
+            }
+            logMapper.createPartition(table);
+            knownPartitions.add(day);
+        }
+        return table;
+    }
+
+    /**
+     * 从今天开始预建 precreateDays 天的日表
+     */
+    public void precreate(LocalDate today) {
+        for (int i = 0; i <= precreateDays; i++) {
+            ensurePartition(today.plusDays(i));
+        }
+    }
+
+    /**
+     * 保留期内最早的一天，早于这一天的日表会被删除
+     */
+    public LocalDate oldestKept(LocalDate today) {
+        return today.minusDays(retentionDays - 1L);
+    }
+
+    /**
+     * 删除保留期之外的日表，返回删除的表数量
+     */
+    public int dropExpired(LocalDate today) {
+        LocalDate oldestKept = oldestKept(today);
+        int dropped = 0;
+        for (LocalDate day : listPartitions()) {
+            if (day.isBefore(oldestKept)) {
+                logMapper.dropPartition(tableName(day));
+                knownPartitions.remove(day);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * 与时间范围 [start, end) 有交集的日表，按日期倒序 (新 -> 旧)
+     */
+    public List<LocalDate> partitionsBetween(Date start, Date end) {
+        LocalDate from = start == null ? null : dayOf(start);
+        // end 为开区间：正好是零点时不包含当天
+        LocalDate to = end == null ? null : dayOf(new Date(end.getTime() - 1));
+
+        List<LocalDate> result = new ArrayList<>();
+        for (LocalDate day : listPartitions()) {
+            if ((from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to))) {
+                result.add(day);
+            }
+        }
+        result.sort(Comparator.reverseOrder());
+        return result;
+    }
+
+    /**
+     * 数据库中实际存在的日表 (通过 JDBC 元数据读取，兼容 MySQL / H2)
+     */
+    public List<LocalDate> listPartitions() {
+        List<LocalDate> days = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String pattern = TABLE_PREFIX + "%";
+            if (metaData.storesUpperCaseIdentifiers()) {
+                pattern = pattern.toUpperCase(Locale.ROOT);
+            }
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, pattern, new String[]{"TABLE"})) {
+                while (tables.next()) {
+                    Matcher matcher = TABLE_PATTERN.matcher(tables.getString("TABLE_NAME").toLowerCase(Locale.ROOT));
+                    if (matcher.matches()) {
+                        days.add(LocalDate.parse(matcher.group(1), SUFFIX_FORMATTER));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取日志分表失败", e);
+        }
+        return days;
+    }
+}
@@ -3,6 +3,17 @@ package com.rcpawn.log.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.rcpawn.common.entity.GatewayLogDTO;
 
+import java.util.Date;
+import java.util.List;
+
 public interface LogService {
-    Page<GatewayLogDTO> pageQuery(int page, int size, String path);
+    /**
+     * 分页查询日志，时间范围 [startTime, endTime) 为空表示不限
+     */
+    Page<GatewayLogDTO> pageQuery(int page, int size, String path, Date startTime, Date endTime);
+
+    /**
+     * 批量写入日志 (事务外建表，同一事务内按块执行多行 INSERT；保留期之外的日志丢弃)，返回写入行数
+     */
+    int saveBatch(List<GatewayLogDTO> logs);
 }
\ No newline at end of file
@@ -1,30 +1,118 @@
 package com.rcpawn.log.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.rcpawn.common.entity.GatewayLogDTO;
 import com.rcpawn.log.mapper.GatewayLogMapper;
+import com.rcpawn.log.partition.LogPartitionManager;
 import com.rcpawn.log.service.LogService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Slf4j
 @Service
 public class LogServiceImpl implements LogService {
 
     @Autowired
     private GatewayLogMapper logMapper;
 
+    @Autowired
+    private LogPartitionManager partitionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 单条 INSERT 语句最多包含的行数
+    @Value("${log.consumer.insert-chunk-size:500}")
+    private int insertChunkSize;
+
+    /**
+     * 跨日表分页：按日期倒序逐表统计条数，只从落在当前页范围内的日表取数据
+     */
+    @Override
+    public Page<GatewayLogDTO> pageQuery(int page, int size, String path, Date startTime, Date endTime) {
+        long offset = (long) Math.max(page - 1, 0) * size;
+        long remaining = size;
+        long total = 0;
+        List<GatewayLogDTO> records = new ArrayList<>(size);
+
+        // 1. 分区裁剪：只访问与时间范围有交集的日表
+        for (LocalDate day : partitionManager.partitionsBetween(startTime, endTime)) {
+            String table = LogPartitionManager.tableName(day);
+            long count = logMapper.countPartition(table, path, startTime, endTime);
+            total += count;
+
+            // 2. 当前页还没取满：跳过 offset 之前的日表，从命中的日表里取数据
+            if (remaining > 0) {
+                if (offset < count) {
+                    List<GatewayLogDTO> rows = logMapper.selectPartition(table, path, startTime, endTime,
+                            offset, Math.min(remaining, count - offset));
+                    records.addAll(rows);
+                    remaining -= rows.size();
+                    offset = 0;
+                } else {
+                    offset -= count;
+                }
+            }
+        }
+
+        Page<GatewayLogDTO> result = new Page<>(page, size, total);
+        result.setRecords(records);
+        return result;
+    }
+
+    /**
+     * 建表在事务之外，INSERT 在同一事务内
+     * 1. MySQL 的 DDL 会隐式提交当前事务，CREATE TABLE 放在事务里会把前面已插入的块提前提交，回滚失效
+     * 2. 保留期之外的日志 (消息积压、重投) 直接丢弃，不再为已经删除的日表重新建表
+     */
     @Override
-    public Page<GatewayLogDTO> pageQuery(int page, int size, String path) {
-        Page<GatewayLogDTO> pageParam = new Page<>(page, size);
-        
-        LambdaQueryWrapper<GatewayLogDTO> wrapper = new LambdaQueryWrapper<>();
-        wrapper.orderByDesc(GatewayLogDTO::getRequestTime); // 按时间倒序
-        
-        if (path != null && !path.isEmpty()) {
-            wrapper.like(GatewayLogDTO::getPath, path);
+    public int saveBatch(List<GatewayLogDTO> logs) {
+        // 1. 按 request_time 所在日期分组，丢弃保留期之外的日志
+        LocalDate oldestKept = partitionManager.oldestKept(partitionManager.dayOf(new Date()));
+        Map<LocalDate, List<GatewayLogDTO>> byDay = new TreeMap<>();
+        int expired = 0;
+        for (GatewayLogDTO item : logs) {
+            if (item.getRequestTime() == null) {
+                item.setRequestTime(new Date());
+            }
+            LocalDate day = partitionManager.dayOf(item.getRequestTime());
+            if (day.isBefore(oldestKept)) {
+                expired++;
+                continue;
+            }
+            byDay.computeIfAbsent(day, k -> new ArrayList<>()).add(item);
+        }
+        if (expired > 0) {
+            log.warn("⚠️ [Log服务] {} 条日志早于保留期 ({} 之前)，已丢弃", expired, oldestKept);
         }
-        
-        return logMapper.selectPage(pageParam, wrapper);
+
+        // 2. 事务之外确保日表存在 (通常已由定时任务预建，这里只是兜底)
+        Map<String, List<GatewayLogDTO>> byTable = new LinkedHashMap<>();
+        byDay.forEach((day, dayLogs) -> byTable.put(partitionManager.ensurePartition(day), dayLogs));
+
+        // 3. 一个事务内每个日表分块多行 INSERT
+        Integer rows = transactionTemplate.execute(status -> {
+            int inserted = 0;
+            for (Map.Entry<String, List<GatewayLogDTO>> entry : byTable.entrySet()) {
+                List<GatewayLogDTO> tableLogs = entry.getValue();
+                for (int from = 0; from < tableLogs.size(); from += insertChunkSize) {
+                    int to = Math.min(from + insertChunkSize, tableLogs.size());
+                    inserted += logMapper.insertBatch(entry.getKey(), tableLogs.subList(from, to));
+                }
+            }
+            return inserted;
+        });
+        return rows == null ? 0 : rows;
     }
-}
\ No newline at end of file
+}
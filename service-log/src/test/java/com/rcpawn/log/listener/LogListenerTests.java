@@ -0,0 +1,110 @@
+package com.rcpawn.log.listener;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rcpawn.common.entity.GatewayLogDTO;
+import com.rcpawn.common.util.GatewayLogBatchCodec;
+import com.rcpawn.log.config.RabbitConfig;
+import com.rcpawn.log.service.LogService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 日志批量消费：数据库持续不可用时，消息按次数重新投递，超过 max-retries 后转入死信队列
+ * RabbitMQ 信道用动态代理记录 basicPublish / basicAck 调用
+ */
+class LogListenerTests {
+
+    private final LogListener listener = new LogListener();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // 信道上的调用：[方法名, 队列或 tag, 重试次数]
+    private final List<Object[]> calls = new ArrayList<>();
+    private final Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "basicPublish" -> calls.add(new Object[]{"publish", args[1],
+                            ((AMQP.BasicProperties) args[2]).getHeaders().get(LogListener.RETRY_HEADER)});
+                    case "basicAck", "basicNack", "basicReject" -> calls.add(new Object[]{method.getName(), args[0], null});
+                    default -> {
+                    }
+                }
+                return null;
+            });
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(listener, "logService", new FailingLogService());
+        ReflectionTestUtils.setField(listener, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(listener, "batchSize", 50);
+        ReflectionTestUtils.setField(listener, "flushIntervalMs", 200L);
+        ReflectionTestUtils.setField(listener, "maxRetries", 2);
+        listener.init();
+    }
+
+    @Test
+    void failedBatchIsRepublishedWithRetryCount() throws Exception {
+        listener.receiveLogs(List.of(message(1, null), message(2, 1)), channel);
+
+        // 重新投递到原队列 (次数 +1)，然后确认原消息，不再 NACK 重新入队
+        assertEquals(3, calls.size());
+        assertCall(calls.get(0), "publish", GatewayLogBatchCodec.QUEUE, 1);
+        assertCall(calls.get(1), "publish", GatewayLogBatchCodec.QUEUE, 2);
+        assertCall(calls.get(2), "basicAck", 2L, null);
+        assertEquals(2, meterRegistry.get("log.consumer.failed").counter().count());
+    }
+
+    @Test
+    void exhaustedMessageGoesToDeadLetterQueue() throws Exception {
+        listener.receiveLogs(List.of(message(1, 2)), channel);
+
+        assertEquals(2, calls.size());
+        assertCall(calls.get(0), "publish", RabbitConfig.LOG_DEAD_LETTER_QUEUE, 3);
+        assertCall(calls.get(1), "basicAck", 1L, null);
+        assertEquals(1, meterRegistry.get("log.consumer.dead_lettered").counter().count());
+    }
+
+    private static void assertCall(Object[] call, String method, Object target, Integer retries) {
+        assertEquals(method, call[0]);
+        assertEquals(target, call[1]);
+        assertEquals(retries, call[2]);
+    }
+
+    private static Message message(long tag, Integer retries) throws Exception {
+        GatewayLogDTO log = new GatewayLogDTO();
+        log.setPath("/test");
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(tag);
+        properties.setConsumerQueue(GatewayLogBatchCodec.QUEUE);
+        properties.setContentEncoding(GatewayLogBatchCodec.CONTENT_ENCODING);
+        if (retries != null) {
+            properties.setHeader(LogListener.RETRY_HEADER, retries);
+        }
+        return new Message(GatewayLogBatchCodec.encode(List.of(log)), properties);
+    }
+
+    private static class FailingLogService implements LogService {
+
+        @Override
+        public Page<GatewayLogDTO> pageQuery(int page, int size, String path, Date startTime, Date endTime) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int saveBatch(List<GatewayLogDTO> logs) {
+            throw new IllegalStateException("数据库不可用");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.rcpawn.log.partition;
+
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusAutoConfiguration;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.rcpawn.common.entity.GatewayLogDTO;
+import com.rcpawn.log.service.LogService;
+import com.rcpawn.log.service.impl.LogServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 日志按天分表：用 H2 (MySQL 兼容模式) 代替 MySQL，只加载数据源 + MyBatis-Plus，不依赖 Nacos/RabbitMQ
+ */
+@SpringBootTest(classes = LogPartitionTests.TestConfig.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:gateway_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "log.partition.retention-days=3",
+        "log.partition.precreate-days=1",
+        "log.consumer.insert-chunk-size=2"
+})
+class LogPartitionTests {
+
+    @Configuration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, DataSourceTransactionManagerAutoConfiguration.class,
+            TransactionAutoConfiguration.class, MybatisPlusAutoConfiguration.class})
+    @MapperScan("com.rcpawn.log.mapper")
+    @Import({LogPartitionManager.class, LogServiceImpl.class})
+    static class TestConfig {
+    }
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private LogPartitionManager partitionManager;
+
+    @Autowired
+    private LogService logService;
+
+    private final LocalDate today = LocalDate.now(ZONE);
+
+    @BeforeEach
+    void clean() {
+        // 保留期之外 = 全部删除
+        partitionManager.dropExpired(today.plusYears(1));
+    }
+
+    @Test
+    void writesAreRoutedToDailyTables() {
+        List<GatewayLogDTO> logs = new ArrayList<>();
+        logs.add(log("/a", today.atTime(10, 0)));
+        logs.add(log("/b", today.atTime(11, 0)));
+        logs.add(log("/c", today.atTime(12, 0)));
+        logs.add(log("/d", today.minusDays(1).atTime(23, 59)));
+
+        assertEquals(4, logService.saveBatch(logs));
+
+        List<LocalDate> partitions = partitionManager.listPartitions();
+        assertTrue(partitions.contains(today));
+        assertTrue(partitions.contains(today.minusDays(1)));
+
+        Page<GatewayLogDTO> page = logService.pageQuery(1, 10, null, null, null);
+        assertEquals(4, page.getTotal());
+        // 跨日表仍按时间倒序
+        assertEquals(List.of("/c", "/b", "/a", "/d"), page.getRecords().stream().map(GatewayLogDTO::getPath).toList());
+    }
+
+    @Test
+    void pageQueryPrunesPartitionsByTimeRange() {
+        List<GatewayLogDTO> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(log("/day0/" + i, today.atTime(9, i)));
+            logs.add(log("/day1/" + i, today.minusDays(1).atTime(9, i)));
+            logs.add(log("/day2/" + i, today.minusDays(2).atTime(9, i)));
+        }
+        logService.saveBatch(logs);
+
+        Date start = partitionManager.startOf(today.minusDays(1));
+        Date end = partitionManager.startOf(today);
+        assertEquals(List.of(today.minusDays(1)), partitionManager.partitionsBetween(start, end));
+
+        Page<GatewayLogDTO> page = logService.pageQuery(1, 10, null, start, end);
+        assertEquals(3, page.getTotal());
+        assertTrue(page.getRecords().stream().allMatch(l -> l.getPath().startsWith("/day1/")));
+
+        // 第二页跨越日表边界：前 4 条 = 今天 3 条 + 昨天第 1 条
+        Page<GatewayLogDTO> second = logService.pageQuery(2, 4, null, null, null);
+        assertEquals(9, second.getTotal());
+        assertEquals(List.of("/day1/1", "/day1/0", "/day2/2", "/day2/1"),
+                second.getRecords().stream().map(GatewayLogDTO::getPath).toList());
+
+        Page<GatewayLogDTO> filtered = logService.pageQuery(1, 10, "day2", null, null);
+        assertEquals(3, filtered.getTotal());
+    }
+
+    @Test
+    void retentionDropsWholeTables() {
+        List<GatewayLogDTO> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(log("/old/" + i, today.minusDays(i).atTime(8, 0)));
+        }
+        logService.saveBatch(logs);
+        // 保留期之前写入的旧日表
+        partitionManager.ensurePartition(today.minusDays(3));
+        partitionManager.ensurePartition(today.minusDays(4));
+
+        // 保留 3 天：今天、昨天、前天
+        assertEquals(2, partitionManager.dropExpired(today));
+
+        List<LocalDate> partitions = partitionManager.listPartitions();
+        assertFalse(partitions.contains(today.minusDays(3)));
+        assertFalse(partitions.contains(today.minusDays(4)));
+        assertEquals(3, logService.pageQuery(1, 10, null, null, null).getTotal());
+
+        // 迟到的过期日志直接丢弃，不会重新建出已删除的日表
+        assertEquals(1, logService.saveBatch(List.of(
+                log("/late", today.minusDays(4).atTime(8, 0)),
+                log("/kept", today.minusDays(2).atTime(8, 0)))));
+        assertFalse(partitionManager.listPartitions().contains(today.minusDays(4)));
+        assertEquals(4, logService.pageQuery(1, 10, null, null, null).getTotal());
+    }
+
+    @Test
+    void precreateBuildsUpcomingTables() {
+        partitionManager.precreate(today);
+        List<LocalDate> partitions = partitionManager.listPartitions();
+        assertTrue(partitions.contains(today));
+        assertTrue(partitions.contains(today.plusDays(1)));
+    }
+
+    private static GatewayLogDTO log(String path, LocalDateTime time) {
+        GatewayLogDTO log = new GatewayLogDTO();
+        log.setPath(path);
+        log.setMethod("GET");
+        log.setIp("127.0.0.1");
+        log.setStatus(200);
+        log.setResponseTime(5L);
+        log.setRequestTime(Date.from(time.atZone(ZONE).toInstant()));
+        return log;
+    }
+}